@@ -11,7 +11,7 @@ import org.springframework.context.annotation.Configuration;
  */
 @Configuration
 @ComponentScan(value = {"com.consistency"})
-@MapperScan(basePackages = {"com.consistency"})
+@MapperScan(basePackages = {"com.consistency.mapper"})
 public interface ComponentScanConfig {
 
 }
@@ -1,5 +1,7 @@
 package com.consistency.annotation;
 
+import com.consistency.custom.backoff.BackoffPolicy;
+import com.consistency.custom.backoff.LinearBackoffPolicy;
 import com.consistency.enums.PerformanceEnum;
 import com.consistency.enums.ThreadWayEnum;
 
@@ -74,4 +76,40 @@ public @interface ConsistencyTask {
      * @return 线程模型
      */
     ThreadWayEnum threadWay() default ThreadWayEnum.ASYNC;
+    
+    /**
+     * 每秒最多执行的任务数 小于等于0表示不限制
+     *
+     * @return 每秒最多执行的任务数
+     */
+    double maxRatePerSecond() default 0;
+    
+    /**
+     * 同时执行的最大任务数 小于等于0表示不限制
+     *
+     * @return 同时执行的最大任务数
+     */
+    int maxConcurrency() default 0;
+    
+    /**
+     * 失败重试的退避策略 框架内置FixedBackoffPolicy、LinearBackoffPolicy、ExponentialBackoffPolicy、DecorrelatedJitterBackoffPolicy
+     *
+     * @return 退避策略的Class类
+     */
+    Class<? extends BackoffPolicy> backoffPolicy() default LinearBackoffPolicy.class;
+    
+    /**
+     * 失败重试的最大执行间隔 单位秒 小于等于0表示不限制，与引入退避策略之前的线性重试间隔一致
+     * 使用ExponentialBackoffPolicy、DecorrelatedJitterBackoffPolicy时建议配置，否则重试间隔会快速增长
+     *
+     * @return 最大执行间隔
+     */
+    int maxExecuteIntervalSec() default 0;
+    
+    /**
+     * 任务执行超时时间 单位毫秒 超时后会中断任务并按执行失败处理 小于等于0表示不限制
+     *
+     * @return 任务执行超时时间
+     */
+    long timeoutMs() default 0;
 }
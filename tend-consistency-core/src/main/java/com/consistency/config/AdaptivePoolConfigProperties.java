@@ -0,0 +1,46 @@
+package com.consistency.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 执行任务线程池自适应调整相关配置
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ConfigurationProperties(prefix = "tend.consistency.parallel.pool.adaptive")
+public class AdaptivePoolConfigProperties {
+
+    /**
+     * 是否根据任务耗时、队列积压、拒绝次数和数据库连接等待自动调整线程数
+     */
+    public Boolean enabled = false;
+    /**
+     * 自动调整的最小线程数
+     */
+    public Integer minPoolSize = 2;
+    /**
+     * 自动调整的最大线程数
+     */
+    public Integer maxPoolSize = 50;
+    /**
+     * 调整间隔 单位毫秒
+     */
+    public Long intervalMs = 5000L;
+    /**
+     * 任务平均耗时超过基线耗时的该倍数时减少线程
+     */
+    public Double latencyToleranceRatio = 2.0D;
+    /**
+     * 减少线程时保留的比例
+     */
+    public Double decreaseRatio = 0.8D;
+
+}
@@ -0,0 +1,34 @@
+package com.consistency.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 告警聚合相关配置
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ConfigurationProperties(prefix = "tend.consistency.alert")
+public class AlertConfigProperties {
+
+    /**
+     * 告警聚合窗口 单位毫秒 窗口内同一任务的告警合并为一次通知
+     */
+    public Long aggregateWindowMs = 10000L;
+    /**
+     * 一个窗口内最多聚合的告警分组数 超出后新分组的告警将被丢弃
+     */
+    public Integer maxAggregateGroups = 1000;
+    /**
+     * 每个告警分组保留的任务实例采样数
+     */
+    public Integer maxSamplesPerGroup = 10;
+
+}
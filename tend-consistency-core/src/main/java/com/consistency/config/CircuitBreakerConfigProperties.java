@@ -0,0 +1,54 @@
+package com.consistency.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 任务熔断器相关配置 熔断粒度为任务的方法签名
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ConfigurationProperties(prefix = "tend.consistency.breaker")
+public class CircuitBreakerConfigProperties {
+
+    /**
+     * 是否开启熔断
+     */
+    public Boolean enabled = true;
+    /**
+     * 失败率阈值 百分比 达到该值时熔断器打开
+     */
+    public Integer failureRateThreshold = 50;
+    /**
+     * 慢调用率阈值 百分比 达到该值时熔断器打开
+     */
+    public Integer slowCallRateThreshold = 100;
+    /**
+     * 慢调用的耗时阈值 单位毫秒
+     */
+    public Long slowCallDurationThresholdMs = 60000L;
+    /**
+     * 统计窗口大小 按最近的调用次数统计
+     */
+    public Integer slidingWindowSize = 20;
+    /**
+     * 计算失败率前窗口内至少需要的调用次数
+     */
+    public Integer minimumNumberOfCalls = 10;
+    /**
+     * 熔断器打开后的等待时间 超过该时间后进入半开状态 单位毫秒
+     */
+    public Long waitDurationInOpenStateMs = 60000L;
+    /**
+     * 半开状态下允许试探执行的次数
+     */
+    public Integer permittedNumberOfCallsInHalfOpenState = 3;
+
+}
@@ -23,9 +23,34 @@ public class Constant {
     public static final String ALERT_THREAD_POOL_PREFIX = "AlertThreadPool_";
     
     /**
-     * 任务幂等性redis key前缀
+     * 超时控制线程名称的前缀
      */
-    public static final String KEY_FORMAT = "TEND:TASK:%";
+    public static final String TIMEOUT_THREAD_POOL_PREFIX = "TimeoutThreadPool_";
+    
+    /**
+     * 框架后台定时任务线程名称的前缀
+     */
+    public static final String SCHEDULED_THREAD_POOL_PREFIX = "CTScheduledPool_";
+    
+    /**
+     * 任务入库组提交线程的名称
+     */
+    public static final String GROUP_COMMIT_THREAD_NAME = "CTGroupCommitWriter";
+    
+    /**
+     * 任务完成结果批量写入线程的名称
+     */
+    public static final String COMPLETION_THREAD_NAME = "CTCompletionCollector";
+    
+    /**
+     * 任务幂等性redis key前缀 格式：前缀 + 任务id + 分片键，分片后各分片的任务id可能重复
+     */
+    public static final String KEY_FORMAT = "TEND:TASK:%d:%d";
+    
+    /**
+     * 集群限流redis key前缀 格式：前缀 + 方法签名 + 秒级时间戳
+     */
+    public static final String RATE_LIMIT_KEY_FORMAT = "TEND:RATE:%s:%d";
     
     /**
      * zk命名空间
@@ -37,4 +62,14 @@ public class Constant {
      */
     public static final String LOCK_ROOT_PATH = "/tasklock";
     
+    /**
+     * zk分片键生成器机器id租约目录 每个节点持有一个以机器id命名的临时节点
+     */
+    public static final String WORKER_ID_PATH = "/workerid";
+    
+    /**
+     * zk分片键号段计数器路径
+     */
+    public static final String SHARD_KEY_SEGMENT_PATH = "/shardkeysegment";
+    
 }
@@ -0,0 +1,42 @@
+package com.consistency.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 死信相关配置
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ConfigurationProperties(prefix = "tend.consistency.dead-letter")
+public class DeadLetterConfigProperties {
+
+    /**
+     * 是否开启死信 开启后超过最大执行次数或最长存活时间的失败任务会被移入死信表，不再参与调度
+     */
+    public Boolean enabled = false;
+    /**
+     * 最大执行次数 执行次数达到该值的失败任务移入死信表
+     */
+    public Integer maxAttempts = 20;
+    /**
+     * 最长存活时间 单位毫秒 创建时间早于该时长的失败任务移入死信表
+     */
+    public Long maxAgeMs = 7 * 24 * 3600 * 1000L;
+    /**
+     * 移入死信表的间隔 单位毫秒
+     */
+    public Long intervalMs = 60000L;
+    /**
+     * 每批移入死信表的最大任务数
+     */
+    public Integer batchSize = 500;
+
+}
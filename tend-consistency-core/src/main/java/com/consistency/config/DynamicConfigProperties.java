@@ -0,0 +1,30 @@
+package com.consistency.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * zk动态配置相关配置
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ConfigurationProperties(prefix = "tend.consistency.dynamic-config")
+public class DynamicConfigProperties {
+
+    /**
+     * 是否监听zk节点上的动态配置 节点内容为JSON，修改后在各节点实时生效
+     */
+    public Boolean enabled = false;
+    /**
+     * 动态配置的zk节点路径 位于框架的zk命名空间下
+     */
+    public String path = "/config";
+
+}
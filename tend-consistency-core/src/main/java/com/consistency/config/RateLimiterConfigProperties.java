@@ -0,0 +1,26 @@
+package com.consistency.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 任务限流相关配置
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ConfigurationProperties(prefix = "tend.consistency.limiter")
+public class RateLimiterConfigProperties {
+
+    /**
+     * 是否开启集群限流 开启后maxRatePerSecond通过redis在所有节点间共享
+     */
+    public Boolean clusterMode = false;
+
+}
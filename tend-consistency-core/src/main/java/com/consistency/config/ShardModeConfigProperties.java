@@ -6,6 +6,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 任务分库相关的配置
  *
@@ -26,5 +29,62 @@ public class ShardModeConfigProperties {
      * 生成任务表分片key的ClassName 这里要配置类型全路径且类要实现com.consistency.custom.shard.ShardingKeyGenerator接口
      */
     private String shardingKeyGeneratorClassName = "";
+    /**
+     * 未配置分片键生成类时使用的分片键生成器 snowflake或segment
+     */
+    private String keyGeneratorType = "snowflake";
+    /**
+     * segment生成器每次租用的号段大小
+     */
+    private Integer segmentSize = 10000;
+    /**
+     * segment生成器的预取比例 当前号段使用到该比例时异步租用下一个号段
+     */
+    private Double segmentPrefetchRatio = 0.8D;
+    /**
+     * 默认分片键生成器的机器id 取值范围[0, 1024)，关闭机器id租约时同一集群的节点需配置不同的值
+     */
+    private Long workerId = 0L;
+    /**
+     * 是否从zk租用集群内唯一的机器id 开启后workerId只作为优先尝试的机器id
+     */
+    private Boolean workerIdLeaseEnabled = true;
+    /**
+     * 默认分片键生成器的序列号分段位数 取值范围[0, 6]，大于0时各线程按线程id使用不同的序列号分段，减少并发冲突
+     */
+    private Integer sequenceStripeBits = 0;
+    /**
+     * 每个库中的任务分表数 大于1时分表名为 consistency.tend_consistency_task_{下标}
+     */
+    private Integer tableCount = 1;
+    /**
+     * 业务数据源之外的任务分库数据源 业务数据源固定为第0个库
+     */
+    private List<ShardDataSourceProperties> dataSources = new ArrayList<>();
+
+    /**
+     * 任务分库的数据源配置
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ShardDataSourceProperties {
+        /**
+         * 数据库连接地址
+         */
+        private String url;
+        /**
+         * 用户名
+         */
+        private String username;
+        /**
+         * 密码
+         */
+        private String password;
+        /**
+         * 驱动类名
+         */
+        private String driverClassName = "org.postgresql.Driver";
+    }
 
 }
@@ -0,0 +1,38 @@
+package com.consistency.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 执行中任务的租约相关配置
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ConfigurationProperties(prefix = "tend.consistency.lease")
+public class TaskLeaseConfigProperties {
+
+    /**
+     * 任务租约时长 单位毫秒 超过该时间未续约的执行中任务会被回收
+     */
+    public Long leaseDurationMs = 60000L;
+    /**
+     * 续约心跳的间隔 单位毫秒
+     */
+    public Long heartbeatIntervalMs = 20000L;
+    /**
+     * 回收过期租约任务的间隔 单位毫秒
+     */
+    public Long reaperIntervalMs = 30000L;
+    /**
+     * 每次回收的最大任务数
+     */
+    public Integer reaperBatchSize = 500;
+
+}
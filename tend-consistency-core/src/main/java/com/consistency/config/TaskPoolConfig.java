@@ -1,5 +1,6 @@
 package com.consistency.config;
 
+import com.consistency.manager.InstrumentedThreadPoolExecutor;
 import com.consistency.model.ConsistencyTaskInstance;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
@@ -8,6 +9,8 @@ import org.springframework.context.annotation.Configuration;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -30,22 +33,32 @@ public class TaskPoolConfig {
     private final TendConsistencyConfiguration tendConsistencyConfiguration;
     
     /**
-     * 并行任务执行线程池
+     * 并行任务执行线程池 记录任务耗时和拒绝次数，供自适应调整使用
      *
      * @return 并行任务执行线程池
      */
     @Bean
-    public CompletionService<ConsistencyTaskInstance> consistencyTaskPool() {
+    public InstrumentedThreadPoolExecutor consistencyTaskExecutor() {
         LinkedBlockingQueue<Runnable> asyncConsistencyTaskThreadPoolQueue =
                 new LinkedBlockingQueue<>(tendConsistencyConfiguration.threadPoolQueueSize);
-        ThreadPoolExecutor asyncReleaseResourceExecutorPool = new ThreadPoolExecutor(
+        return new InstrumentedThreadPoolExecutor(
                 tendConsistencyConfiguration.getThreadCorePoolSize(),
                 tendConsistencyConfiguration.getThreadMaxPoolSize(),
                 tendConsistencyConfiguration.getThreadPoolKeepAliveTime(),
                 TimeUnit.valueOf(tendConsistencyConfiguration.getThreadPoolKeepAliveTimeUnit()),
                 asyncConsistencyTaskThreadPoolQueue,
                 createThreadFactory(CONSISTENCY_TASK_THREAD_POOL_PREFIX));
-        return new ExecutorCompletionService<>(asyncReleaseResourceExecutorPool);
+    }
+    
+    /**
+     * 并行任务执行的CompletionService
+     *
+     * @param consistencyTaskExecutor 并行任务执行线程池
+     * @return 并行任务执行的CompletionService
+     */
+    @Bean
+    public CompletionService<ConsistencyTaskInstance> consistencyTaskPool(InstrumentedThreadPoolExecutor consistencyTaskExecutor) {
+        return new ExecutorCompletionService<>(consistencyTaskExecutor);
     }
     
     /**
@@ -66,6 +79,35 @@ public class TaskPoolConfig {
                 createThreadFactory(ALERT_THREAD_POOL_PREFIX));
     }
     
+    /**
+     * 带超时时间任务的执行线程池 不排队，超时的任务被中断后线程即可回收
+     *
+     * @return 带超时时间任务的执行线程池
+     */
+    @Bean
+    public ThreadPoolExecutor consistencyTimeoutPool() {
+        return new ThreadPoolExecutor(
+                0,
+                tendConsistencyConfiguration.getTimeoutThreadMaxPoolSize(),
+                60,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                createThreadFactory(TIMEOUT_THREAD_POOL_PREFIX));
+    }
+    
+    /**
+     * 框架后台定时任务线程池 如租约续约、过期任务回收
+     *
+     * @return 框架后台定时任务线程池
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledThreadPoolExecutor consistencyScheduledPool() {
+        ScheduledThreadPoolExecutor scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(2,
+                createThreadFactory(SCHEDULED_THREAD_POOL_PREFIX));
+        scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+        return scheduledThreadPoolExecutor;
+    }
+    
     /**
      * 线程池工厂
      *
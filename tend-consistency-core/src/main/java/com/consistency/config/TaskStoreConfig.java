@@ -0,0 +1,149 @@
+package com.consistency.config;
+
+import com.consistency.custom.store.InMemoryTaskStore;
+import com.consistency.custom.store.JdbcTaskStore;
+import com.consistency.custom.store.MybatisTaskStore;
+import com.consistency.custom.store.NormalizedTaskStore;
+import com.consistency.custom.store.PartitionedTaskStore;
+import com.consistency.custom.store.PayloadDedupTaskStore;
+import com.consistency.custom.store.ShardingTaskStore;
+import com.consistency.custom.store.TaskDefinitionStore;
+import com.consistency.custom.store.TaskPayloadStore;
+import com.consistency.custom.store.TaskStore;
+import com.consistency.enums.TaskPartitionUnitEnum;
+import com.consistency.enums.TaskStoreTypeEnum;
+import com.consistency.exceptions.ConsistencyException;
+import com.consistency.mapper.TaskOperateService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 任务存储配置类
+ *
+ * @author wzw
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class TaskStoreConfig {
+    
+    /**
+     * 框架配置
+     */
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+    
+    /**
+     * 任务存储 业务服务注入了自定义的TaskStore时不再创建
+     *
+     * @param taskOperateService MyBatis-Plus数据库操作
+     * @param dataSource         数据源
+     * @return 任务存储
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(TaskStore.class)
+    public TaskStore consistencyTaskStore(TaskOperateService taskOperateService, ObjectProvider<DataSource> dataSource) {
+        TaskStoreTypeEnum storeType = TaskStoreTypeEnum.of(tendConsistencyConfiguration.getStoreType());
+        log.info("[consistency framework] use {} task store", storeType);
+        TaskStore taskStore = createTaskStore(storeType, taskOperateService, dataSource);
+        if (TaskStoreTypeEnum.MEMORY.equals(storeType)) {
+            return taskStore;
+        }
+        // 任务定义表和入参表在业务数据源上 分库时各分片共用
+        if (tendConsistencyConfiguration.getStorePayloadDedupEnabled()) {
+            TaskPayloadStore taskPayloadStore = new TaskPayloadStore(new JdbcTemplate(dataSource.getObject()),
+                    tendConsistencyConfiguration.getStorePayloadCacheSize());
+            taskStore = new PayloadDedupTaskStore(taskStore, taskPayloadStore,
+                    tendConsistencyConfiguration.getStorePayloadDedupMinLength());
+        }
+        if (tendConsistencyConfiguration.getStoreDefinitionNormalized()) {
+            TaskDefinitionStore taskDefinitionStore = new TaskDefinitionStore(new JdbcTemplate(dataSource.getObject()));
+            taskDefinitionStore.loadAll();
+            taskStore = new NormalizedTaskStore(taskStore, taskDefinitionStore);
+        }
+        return taskStore;
+    }
+    
+    private TaskStore createTaskStore(TaskStoreTypeEnum storeType, TaskOperateService taskOperateService,
+            ObjectProvider<DataSource> dataSource) {
+        if (isShardingEnabled()) {
+            // 分片存储的各个分片固定使用JdbcTemplate实现 不支持按时间分区和内存存储
+            if (TaskStoreTypeEnum.PARTITIONED.equals(storeType) || TaskStoreTypeEnum.MEMORY.equals(storeType)) {
+                throw new ConsistencyException(String.format("任务存储类型%s不支持分片，请关闭任务分片或使用mybatis、jdbc存储", storeType));
+            }
+            return createShardingTaskStore(dataSource.getObject());
+        }
+        if (TaskStoreTypeEnum.JDBC.equals(storeType)) {
+            return new JdbcTaskStore(new JdbcTemplate(dataSource.getObject()));
+        }
+        if (TaskStoreTypeEnum.PARTITIONED.equals(storeType)) {
+            return new PartitionedTaskStore(new JdbcTemplate(dataSource.getObject()),
+                    TaskPartitionUnitEnum.of(tendConsistencyConfiguration.getStorePartitionUnit()));
+        }
+        if (TaskStoreTypeEnum.MEMORY.equals(storeType)) {
+            return new InMemoryTaskStore();
+        }
+        return new MybatisTaskStore(taskOperateService);
+    }
+    
+    /**
+     * 开启分片且配置了多个分库或分表时才进行路由 否则仍然使用单表
+     *
+     * @return 是否路由到多个分片
+     */
+    private boolean isShardingEnabled() {
+        return tendConsistencyConfiguration.getTaskSharded()
+                && (tendConsistencyConfiguration.getShardTableCount() > 1
+                || !tendConsistencyConfiguration.getShardDataSources().isEmpty());
+    }
+    
+    /**
+     * 创建分片任务存储 业务数据源上的分表在前，其余分库按配置顺序依次排列
+     *
+     * @param dataSource 业务数据源
+     * @return 分片任务存储
+     */
+    private ShardingTaskStore createShardingTaskStore(DataSource dataSource) {
+        int tableCount = tendConsistencyConfiguration.getShardTableCount();
+        List<TaskStore> shards = new ArrayList<>();
+        // 分库的连接池不是spring bean 由分片存储在关闭时释放
+        List<AutoCloseable> shardDataSources = new ArrayList<>();
+        addShards(shards, dataSource, tableCount);
+        for (ShardModeConfigProperties.ShardDataSourceProperties properties : tendConsistencyConfiguration.getShardDataSources()) {
+            DataSource shardDataSource = DataSourceBuilder.create()
+                    .driverClassName(properties.getDriverClassName())
+                    .url(properties.getUrl())
+                    .username(properties.getUsername())
+                    .password(properties.getPassword())
+                    .build();
+            if (shardDataSource instanceof AutoCloseable) {
+                shardDataSources.add((AutoCloseable) shardDataSource);
+            }
+            addShards(shards, shardDataSource, tableCount);
+        }
+        log.info("[consistency framework] task store is sharded into {} databases and {} tables per database",
+                tendConsistencyConfiguration.getShardDataSources().size() + 1, tableCount);
+        return new ShardingTaskStore(shards, tableCount, shardDataSources);
+    }
+    
+    private void addShards(List<TaskStore> shards, DataSource dataSource, int tableCount) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        if (tableCount == 1) {
+            shards.add(new JdbcTaskStore(jdbcTemplate));
+            return;
+        }
+        for (int i = 0; i < tableCount; i++) {
+            shards.add(new JdbcTaskStore(jdbcTemplate, JdbcTaskStore.DEFAULT_TABLE_NAME + "_" + i));
+        }
+    }
+    
+}
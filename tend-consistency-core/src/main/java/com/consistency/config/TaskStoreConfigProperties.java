@@ -0,0 +1,94 @@
+package com.consistency.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 任务存储相关配置
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ConfigurationProperties(prefix = "tend.consistency.store")
+public class TaskStoreConfigProperties {
+
+    /**
+     * 可选值:[mybatis,jdbc,memory,partitioned] 任务存储的实现 也可以自行实现com.consistency.custom.store.TaskStore接口并注入spring容器
+     */
+    public String type = "mybatis";
+    /**
+     * 是否开启组提交 开启后非事务中的任务入库请求会被合并为一次批量写入
+     */
+    public Boolean groupCommitEnabled = false;
+    /**
+     * 组提交的收集窗口 单位毫秒
+     */
+    public Long groupCommitWindowMs = 5L;
+    /**
+     * 组提交每批最多写入的任务数
+     */
+    public Integer groupCommitMaxBatchSize = 200;
+    /**
+     * 是否批量写入任务的完成结果 关闭后每个任务执行结束时立即写入
+     */
+    public Boolean completionBatchEnabled = true;
+    /**
+     * 完成结果的批量写入间隔 单位毫秒
+     */
+    public Long completionFlushIntervalMs = 5L;
+    /**
+     * 每批最多写入的完成结果数
+     */
+    public Integer completionMaxBatchSize = 500;
+    /**
+     * 批量入队时每批写入的任务数
+     */
+    public Integer bulkBatchSize = 1000;
+    /**
+     * 批量入队时是否使用PostgreSQL的COPY写入 非PostgreSQL数据源使用JDBC批量写入
+     */
+    public Boolean bulkCopyEnabled = true;
+    /**
+     * 是否规范化存储任务定义 开启后方法签名、告警和降级等字符串只保存在任务定义表中，任务表中只保存任务定义id
+     */
+    public Boolean definitionNormalized = false;
+    /**
+     * 是否对任务入参去重存储 开启后相同的入参只在入参表中保存一份，任务表中只保存入参的哈希
+     */
+    public Boolean payloadDedupEnabled = false;
+    /**
+     * 去重存储的入参最小长度 较短的入参直接保存在任务表中
+     */
+    public Integer payloadDedupMinLength = 256;
+    /**
+     * 进程内缓存的入参数量
+     */
+    public Integer payloadCacheSize = 10000;
+    /**
+     * 可选值:[DAY,HOUR] 分区存储（type=partitioned）按任务创建时间分区的粒度
+     */
+    public String partitionUnit = "DAY";
+    /**
+     * 提前创建的分区数
+     */
+    public Integer partitionPrecreateCount = 3;
+    /**
+     * 保留的分区数 更早的分区中的任务全部完成后会被摘除
+     */
+    public Integer partitionRetentionCount = 7;
+    /**
+     * 摘除分区后是否删除分区表 关闭时只摘除，由DBA归档后自行删除
+     */
+    public Boolean partitionDropDetached = true;
+    /**
+     * 分区维护间隔 单位毫秒
+     */
+    public Long partitionMaintainIntervalMs = 600000L;
+
+}
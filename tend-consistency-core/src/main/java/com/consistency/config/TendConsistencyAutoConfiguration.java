@@ -1,7 +1,13 @@
 package com.consistency.config;
 
 import com.consistency.custom.query.TaskTimeRangeQuery;
+import com.consistency.custom.shard.CasSnowflakeShardingKeyGenerator;
+import com.consistency.custom.shard.SegmentShardingKeyGenerator;
 import com.consistency.custom.shard.ShardingKeyGenerator;
+import com.consistency.custom.shard.ZookeeperShardKeySegmentSource;
+import com.consistency.enums.ShardKeyGeneratorTypeEnum;
+import com.consistency.enums.TaskPartitionUnitEnum;
+import com.consistency.enums.TaskStoreTypeEnum;
 import com.consistency.exceptions.ConsistencyException;
 import com.consistency.utils.ReflectTools;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
@@ -31,11 +37,14 @@ import org.springframework.util.StringUtils;
 import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisPoolConfig;
 
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static com.consistency.config.Constant.NAMESPACE;
+import static com.consistency.config.Constant.SHARD_KEY_SEGMENT_PATH;
 import static com.consistency.utils.DefaultValueUtils.getOrDefault;
 
 /**
@@ -51,7 +60,15 @@ import static com.consistency.utils.DefaultValueUtils.getOrDefault;
         TendConsistencyFallbackConfigProperties.class,
         ShardModeConfigProperties.class,
         CuratorConfigProperties.class,
-        RedisConfigProperties.class
+        RedisConfigProperties.class,
+        CircuitBreakerConfigProperties.class,
+        RateLimiterConfigProperties.class,
+        TaskLeaseConfigProperties.class,
+        DeadLetterConfigProperties.class,
+        AlertConfigProperties.class,
+        TaskStoreConfigProperties.class,
+        AdaptivePoolConfigProperties.class,
+        DynamicConfigProperties.class
 })
 public class TendConsistencyAutoConfiguration {
     
@@ -75,6 +92,38 @@ public class TendConsistencyAutoConfiguration {
      * redis参数配置
      */
     private final RedisConfigProperties redisConfigProperties;
+    /**
+     * 熔断器参数配置
+     */
+    private final CircuitBreakerConfigProperties circuitBreakerConfigProperties;
+    /**
+     * 限流参数配置
+     */
+    private final RateLimiterConfigProperties rateLimiterConfigProperties;
+    /**
+     * 任务租约参数配置
+     */
+    private final TaskLeaseConfigProperties taskLeaseConfigProperties;
+    /**
+     * 死信参数配置
+     */
+    private final DeadLetterConfigProperties deadLetterConfigProperties;
+    /**
+     * 告警聚合参数配置
+     */
+    private final AlertConfigProperties alertConfigProperties;
+    /**
+     * 任务存储参数配置
+     */
+    private final TaskStoreConfigProperties taskStoreConfigProperties;
+    /**
+     * 线程池自适应调整参数配置
+     */
+    private final AdaptivePoolConfigProperties adaptivePoolConfigProperties;
+    /**
+     * 动态配置参数配置
+     */
+    private final DynamicConfigProperties dynamicConfigProperties;
     
     /**
      * 框架级配置
@@ -84,16 +133,81 @@ public class TendConsistencyAutoConfiguration {
     @Bean
     public TendConsistencyConfiguration tendConsistencyConfigService() {
         doConfigCheck(tendConsistencyParallelTaskConfigProperties, shardModeConfigProperties);
+        doStoreConfigCheck(taskStoreConfigProperties);
+        doAdaptivePoolConfigCheck(adaptivePoolConfigProperties);
+        if (!StringUtils.isEmpty(dynamicConfigProperties.getPath()) && !dynamicConfigProperties.getPath().startsWith("/")) {
+            throw new ConsistencyException("tend.consistency.dynamic-config.path配置错误，需以/开头");
+        }
         return TendConsistencyConfiguration.builder()
                 .threadCorePoolSize(getOrDefault(tendConsistencyParallelTaskConfigProperties.getThreadCorePoolSize(), 5))
                 .threadMaxPoolSize(getOrDefault(tendConsistencyParallelTaskConfigProperties.getThreadMaxPoolSize(), 5))
                 .threadPoolQueueSize(getOrDefault(tendConsistencyParallelTaskConfigProperties.getThreadPoolQueueSize(), 100))
+                .threadPoolAdmissionHighWatermark(getOrDefault(tendConsistencyParallelTaskConfigProperties.getAdmissionHighWatermark(), 0.8D))
+                .poolAdaptiveEnabled(getOrDefault(adaptivePoolConfigProperties.getEnabled(), false))
+                .poolAdaptiveMinPoolSize(getOrDefault(adaptivePoolConfigProperties.getMinPoolSize(), 2))
+                .poolAdaptiveMaxPoolSize(getOrDefault(adaptivePoolConfigProperties.getMaxPoolSize(), 50))
+                .poolAdaptiveIntervalMs(getOrDefault(adaptivePoolConfigProperties.getIntervalMs(), 5000L))
+                .poolAdaptiveLatencyToleranceRatio(getOrDefault(adaptivePoolConfigProperties.getLatencyToleranceRatio(), 2.0D))
+                .poolAdaptiveDecreaseRatio(getOrDefault(adaptivePoolConfigProperties.getDecreaseRatio(), 0.8D))
                 .threadPoolKeepAliveTime(getOrDefault(tendConsistencyParallelTaskConfigProperties.getThreadPoolKeepAliveTime(), 60l))
                 .threadPoolKeepAliveTimeUnit(getOrDefault(tendConsistencyParallelTaskConfigProperties.getThreadPoolKeepAliveTimeUnit(), "SECONDS"))
+                .timeoutThreadMaxPoolSize(getOrDefault(tendConsistencyParallelTaskConfigProperties.getTimeoutThreadMaxPoolSize(), 50))
+                .timeoutGraceMs(getOrDefault(tendConsistencyParallelTaskConfigProperties.getTimeoutGraceMs(), 30000L))
                 .failCountThreshold(getOrDefault(tendConsistencyFallbackConfigProperties.getFailCountThreshold(), 5))
                 .taskSharded(getOrDefault(shardModeConfigProperties.taskSharded, false))
                 .taskScheduleTimeRangeClassName(getOrDefault(tendConsistencyParallelTaskConfigProperties.getTaskScheduleTimeRangeClassName(), ""))
+                .taskScheduleScanLimit(getOrDefault(tendConsistencyParallelTaskConfigProperties.getTaskScheduleScanLimit(), 1000L))
                 .shardingKeyGeneratorClassName(getOrDefault(shardModeConfigProperties.getShardingKeyGeneratorClassName(), ""))
+                .shardKeyGeneratorType(getOrDefault(shardModeConfigProperties.getKeyGeneratorType(), ShardKeyGeneratorTypeEnum.SNOWFLAKE.getCode()))
+                .shardSegmentSize(getOrDefault(shardModeConfigProperties.getSegmentSize(), 10000))
+                .shardSegmentPrefetchRatio(getOrDefault(shardModeConfigProperties.getSegmentPrefetchRatio(), 0.8D))
+                .shardWorkerId(getOrDefault(shardModeConfigProperties.getWorkerId(), 0L))
+                .shardWorkerIdLeaseEnabled(getOrDefault(shardModeConfigProperties.getWorkerIdLeaseEnabled(), true))
+                .shardSequenceStripeBits(getOrDefault(shardModeConfigProperties.getSequenceStripeBits(), 0))
+                .shardTableCount(getOrDefault(shardModeConfigProperties.getTableCount(), 1))
+                .shardDataSources(shardModeConfigProperties.getDataSources() == null
+                        ? new ArrayList<>() : shardModeConfigProperties.getDataSources())
+                .breakerEnabled(getOrDefault(circuitBreakerConfigProperties.getEnabled(), true))
+                .breakerFailureRateThreshold(getOrDefault(circuitBreakerConfigProperties.getFailureRateThreshold(), 50))
+                .breakerSlowCallRateThreshold(getOrDefault(circuitBreakerConfigProperties.getSlowCallRateThreshold(), 100))
+                .breakerSlowCallDurationThresholdMs(getOrDefault(circuitBreakerConfigProperties.getSlowCallDurationThresholdMs(), 60000L))
+                .breakerSlidingWindowSize(getOrDefault(circuitBreakerConfigProperties.getSlidingWindowSize(), 20))
+                .breakerMinimumNumberOfCalls(getOrDefault(circuitBreakerConfigProperties.getMinimumNumberOfCalls(), 10))
+                .breakerWaitDurationInOpenStateMs(getOrDefault(circuitBreakerConfigProperties.getWaitDurationInOpenStateMs(), 60000L))
+                .breakerPermittedNumberOfCallsInHalfOpenState(getOrDefault(circuitBreakerConfigProperties.getPermittedNumberOfCallsInHalfOpenState(), 3))
+                .rateLimitClusterMode(getOrDefault(rateLimiterConfigProperties.getClusterMode(), false))
+                .dynamicConfigEnabled(getOrDefault(dynamicConfigProperties.getEnabled(), false))
+                .dynamicConfigPath(getOrDefault(dynamicConfigProperties.getPath(), "/config"))
+                .leaseDurationMs(getOrDefault(taskLeaseConfigProperties.getLeaseDurationMs(), 60000L))
+                .leaseHeartbeatIntervalMs(getOrDefault(taskLeaseConfigProperties.getHeartbeatIntervalMs(), 20000L))
+                .leaseReaperIntervalMs(getOrDefault(taskLeaseConfigProperties.getReaperIntervalMs(), 30000L))
+                .leaseReaperBatchSize(getOrDefault(taskLeaseConfigProperties.getReaperBatchSize(), 500))
+                .deadLetterEnabled(getOrDefault(deadLetterConfigProperties.getEnabled(), false))
+                .deadLetterMaxAttempts(getOrDefault(deadLetterConfigProperties.getMaxAttempts(), 20))
+                .deadLetterMaxAgeMs(getOrDefault(deadLetterConfigProperties.getMaxAgeMs(), 7 * 24 * 3600 * 1000L))
+                .deadLetterIntervalMs(getOrDefault(deadLetterConfigProperties.getIntervalMs(), 60000L))
+                .deadLetterBatchSize(getOrDefault(deadLetterConfigProperties.getBatchSize(), 500))
+                .alertAggregateWindowMs(getOrDefault(alertConfigProperties.getAggregateWindowMs(), 10000L))
+                .alertMaxAggregateGroups(getOrDefault(alertConfigProperties.getMaxAggregateGroups(), 1000))
+                .alertMaxSamplesPerGroup(getOrDefault(alertConfigProperties.getMaxSamplesPerGroup(), 10))
+                .storeType(getOrDefault(taskStoreConfigProperties.getType(), TaskStoreTypeEnum.MYBATIS.getCode()))
+                .storeGroupCommitEnabled(getOrDefault(taskStoreConfigProperties.getGroupCommitEnabled(), false))
+                .storeGroupCommitWindowMs(getOrDefault(taskStoreConfigProperties.getGroupCommitWindowMs(), 5L))
+                .storeGroupCommitMaxBatchSize(getOrDefault(taskStoreConfigProperties.getGroupCommitMaxBatchSize(), 200))
+                .storeCompletionBatchEnabled(getOrDefault(taskStoreConfigProperties.getCompletionBatchEnabled(), true))
+                .storeCompletionFlushIntervalMs(getOrDefault(taskStoreConfigProperties.getCompletionFlushIntervalMs(), 5L))
+                .storeCompletionMaxBatchSize(getOrDefault(taskStoreConfigProperties.getCompletionMaxBatchSize(), 500))
+                .storeBulkBatchSize(getOrDefault(taskStoreConfigProperties.getBulkBatchSize(), 1000))
+                .storeBulkCopyEnabled(getOrDefault(taskStoreConfigProperties.getBulkCopyEnabled(), true))
+                .storeDefinitionNormalized(getOrDefault(taskStoreConfigProperties.getDefinitionNormalized(), false))
+                .storePayloadDedupEnabled(getOrDefault(taskStoreConfigProperties.getPayloadDedupEnabled(), false))
+                .storePayloadDedupMinLength(getOrDefault(taskStoreConfigProperties.getPayloadDedupMinLength(), 256))
+                .storePayloadCacheSize(getOrDefault(taskStoreConfigProperties.getPayloadCacheSize(), 10000))
+                .storePartitionUnit(getOrDefault(taskStoreConfigProperties.getPartitionUnit(), TaskPartitionUnitEnum.DAY.name()))
+                .storePartitionPrecreateCount(getOrDefault(taskStoreConfigProperties.getPartitionPrecreateCount(), 3))
+                .storePartitionRetentionCount(getOrDefault(taskStoreConfigProperties.getPartitionRetentionCount(), 7))
+                .storePartitionDropDetached(getOrDefault(taskStoreConfigProperties.getPartitionDropDetached(), true))
+                .storePartitionMaintainIntervalMs(getOrDefault(taskStoreConfigProperties.getPartitionMaintainIntervalMs(), 600000L))
                 .build();
         
     }
@@ -103,7 +217,7 @@ public class TendConsistencyAutoConfiguration {
      *
      * @return consistencyCuratorFramework
      */
-    @Bean
+    @Bean(initMethod = "start", destroyMethod = "close")
     public CuratorFramework consistencyCuratorFramework() {
         doCuratorConfigCheck(curatorConfigProperties);
         return CuratorFrameworkFactory.builder()
@@ -115,6 +229,27 @@ public class TendConsistencyAutoConfiguration {
                 .build();
     }
     
+    /**
+     * 默认的分片键生成器 未配置任务分片键生成类时使用
+     *
+     * @param consistencyCuratorFramework zk客户端
+     * @param consistencyScheduledPool    框架后台定时任务线程池 用于预取号段
+     * @return consistencyShardingKeyGenerator
+     */
+    @Bean
+    public ShardingKeyGenerator consistencyShardingKeyGenerator(CuratorFramework consistencyCuratorFramework,
+                                                                ScheduledThreadPoolExecutor consistencyScheduledPool) {
+        if (ShardKeyGeneratorTypeEnum.SEGMENT == ShardKeyGeneratorTypeEnum.of(shardModeConfigProperties.getKeyGeneratorType())) {
+            return new SegmentShardingKeyGenerator(
+                    new ZookeeperShardKeySegmentSource(consistencyCuratorFramework, SHARD_KEY_SEGMENT_PATH),
+                    getOrDefault(shardModeConfigProperties.getSegmentSize(), 10000),
+                    getOrDefault(shardModeConfigProperties.getSegmentPrefetchRatio(), 0.8D),
+                    consistencyScheduledPool);
+        }
+        return new CasSnowflakeShardingKeyGenerator(getOrDefault(shardModeConfigProperties.getWorkerId(), 0L),
+                getOrDefault(shardModeConfigProperties.getSequenceStripeBits(), 0));
+    }
+    
     /**
      * redisTemplate
      *
@@ -253,6 +388,16 @@ public class TendConsistencyAutoConfiguration {
             }
         }
         
+        Double admissionHighWatermark = consistencyParallelTaskConfigProperties.getAdmissionHighWatermark();
+        if (admissionHighWatermark != null && (admissionHighWatermark < 0 || admissionHighWatermark > 1)) {
+            throw new ConsistencyException("tend.consistency.parallel.pool.admissionHighWatermark配置错误，取值范围为[0, 1]");
+        }
+        
+        Long timeoutGraceMs = consistencyParallelTaskConfigProperties.getTimeoutGraceMs();
+        if (timeoutGraceMs != null && timeoutGraceMs < 0) {
+            throw new ConsistencyException("tend.consistency.parallel.pool.timeoutGraceMs配置错误，不能小于0");
+        }
+        
         if (!StringUtils.isEmpty(consistencyParallelTaskConfigProperties.getTaskScheduleTimeRangeClassName())) {
             // 校验是否存在该类
             Class<?> taskScheduleTimeRangeClass = ReflectTools.checkClassByName(
@@ -290,6 +435,81 @@ public class TendConsistencyAutoConfiguration {
                 throw new ConsistencyException(errMsg);
             }
         }
+        
+        if (!StringUtils.isEmpty(shardModeConfigProperties.getKeyGeneratorType())
+                && ShardKeyGeneratorTypeEnum.of(shardModeConfigProperties.getKeyGeneratorType()) == null) {
+            String errMsg = String.format("分片键生成器类型配置错误：%s 注意：请在[snowflake,segment]任选其中之一",
+                    shardModeConfigProperties.getKeyGeneratorType());
+            throw new ConsistencyException(errMsg);
+        }
+        if (shardModeConfigProperties.getSegmentSize() != null && shardModeConfigProperties.getSegmentSize() < 1) {
+            throw new ConsistencyException("tend.consistency.shard.segmentSize配置错误，号段大小不能小于1");
+        }
+        Double prefetchRatio = shardModeConfigProperties.getSegmentPrefetchRatio();
+        if (prefetchRatio != null && (prefetchRatio <= 0 || prefetchRatio > 1)) {
+            throw new ConsistencyException("tend.consistency.shard.segmentPrefetchRatio配置错误，取值范围为(0, 1]");
+        }
+        Long workerId = shardModeConfigProperties.getWorkerId();
+        if (workerId != null && (workerId < 0 || workerId >= CasSnowflakeShardingKeyGenerator.WORKER_ID_MAX_VALUE)) {
+            throw new ConsistencyException("tend.consistency.shard.workerId配置错误，取值范围为[0, "
+                    + CasSnowflakeShardingKeyGenerator.WORKER_ID_MAX_VALUE + ")");
+        }
+        Integer stripeBits = shardModeConfigProperties.getSequenceStripeBits();
+        if (stripeBits != null && (stripeBits < 0 || stripeBits > CasSnowflakeShardingKeyGenerator.MAX_STRIPE_BITS)) {
+            throw new ConsistencyException("tend.consistency.shard.sequenceStripeBits配置错误，取值范围为[0, "
+                    + CasSnowflakeShardingKeyGenerator.MAX_STRIPE_BITS + "]");
+        }
+        if (shardModeConfigProperties.getTableCount() != null && shardModeConfigProperties.getTableCount() < 1) {
+            throw new ConsistencyException("tend.consistency.shard.tableCount配置错误，分表数不能小于1");
+        }
+        if (shardModeConfigProperties.getDataSources() != null) {
+            for (ShardModeConfigProperties.ShardDataSourceProperties dataSource : shardModeConfigProperties.getDataSources()) {
+                if (StringUtils.isEmpty(dataSource.getUrl())) {
+                    throw new ConsistencyException("tend.consistency.shard.dataSources配置错误，数据库连接地址不能为空");
+                }
+            }
+        }
+    }
+    
+    /**
+     * 线程池自适应调整配置检查
+     *
+     * @param adaptivePoolConfigProperties 线程池自适应调整配置
+     */
+    private void doAdaptivePoolConfigCheck(AdaptivePoolConfigProperties adaptivePoolConfigProperties) {
+        int minPoolSize = getOrDefault(adaptivePoolConfigProperties.getMinPoolSize(), 2);
+        int maxPoolSize = getOrDefault(adaptivePoolConfigProperties.getMaxPoolSize(), 50);
+        if (minPoolSize < 1 || maxPoolSize < minPoolSize) {
+            throw new ConsistencyException("tend.consistency.parallel.pool.adaptive配置错误，最小线程数不能小于1且不能大于最大线程数");
+        }
+        Double decreaseRatio = adaptivePoolConfigProperties.getDecreaseRatio();
+        if (decreaseRatio != null && (decreaseRatio <= 0 || decreaseRatio >= 1)) {
+            throw new ConsistencyException("tend.consistency.parallel.pool.adaptive.decreaseRatio配置错误，取值范围为(0, 1)");
+        }
+        Double latencyToleranceRatio = adaptivePoolConfigProperties.getLatencyToleranceRatio();
+        if (latencyToleranceRatio != null && latencyToleranceRatio <= 1) {
+            throw new ConsistencyException("tend.consistency.parallel.pool.adaptive.latencyToleranceRatio配置错误，需大于1");
+        }
+    }
+    
+    /**
+     * 任务存储配置检查
+     *
+     * @param taskStoreConfigProperties 任务存储配置类
+     */
+    private void doStoreConfigCheck(TaskStoreConfigProperties taskStoreConfigProperties) {
+        if (!StringUtils.isEmpty(taskStoreConfigProperties.getType())
+                && TaskStoreTypeEnum.of(taskStoreConfigProperties.getType()) == null) {
+            String errMsg = String.format("任务存储类型配置错误：%s 注意：请在[mybatis,jdbc,memory,partitioned]任选其中之一",
+                    taskStoreConfigProperties.getType());
+            throw new ConsistencyException(errMsg);
+        }
+        if (!StringUtils.isEmpty(taskStoreConfigProperties.getPartitionUnit())
+                && TaskPartitionUnitEnum.of(taskStoreConfigProperties.getPartitionUnit()) == null) {
+            String errMsg = String.format("任务分区粒度配置错误：%s 注意：请在[DAY,HOUR]任选其中之一",
+                    taskStoreConfigProperties.getPartitionUnit());
+            throw new ConsistencyException(errMsg);
+        }
     }
     
     /**
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * 框架级配置参数
  *
@@ -28,6 +30,34 @@ public class TendConsistencyConfiguration {
      * 调度型任务线程池的队列大小
      */
     public Integer threadPoolQueueSize;
+    /**
+     * 调度器可使用的队列比例
+     */
+    public Double threadPoolAdmissionHighWatermark;
+    /**
+     * 是否自动调整调度型任务线程池的线程数
+     */
+    public Boolean poolAdaptiveEnabled = false;
+    /**
+     * 自动调整的最小线程数
+     */
+    public Integer poolAdaptiveMinPoolSize;
+    /**
+     * 自动调整的最大线程数
+     */
+    public Integer poolAdaptiveMaxPoolSize;
+    /**
+     * 自动调整的间隔 单位毫秒
+     */
+    public Long poolAdaptiveIntervalMs;
+    /**
+     * 任务平均耗时超过基线耗时的该倍数时减少线程
+     */
+    public Double poolAdaptiveLatencyToleranceRatio;
+    /**
+     * 减少线程时保留的比例
+     */
+    public Double poolAdaptiveDecreaseRatio;
     /**
      * 线程池中无任务时线程存活时间
      */
@@ -36,6 +66,14 @@ public class TendConsistencyConfiguration {
      * 可选值:[SECONDS,MINUTES,HOURS,DAYS,NANOSECONDS,MICROSECONDS,MILLISECONDS] 线程池中无任务时线程存活时间单位
      */
     public String threadPoolKeepAliveTimeUnit;
+    /**
+     * 执行带超时时间任务的线程池的最大线程数
+     */
+    public Integer timeoutThreadMaxPoolSize;
+    /**
+     * 任务超时后等待任务体结束的宽限期 单位毫秒
+     */
+    public Long timeoutGraceMs;
     /**
      * 触发降级逻辑的阈值 任务执行次数 如果大于该值 就会进行降级
      */
@@ -48,9 +86,209 @@ public class TendConsistencyConfiguration {
      * 这里要配置类型全路径且类要实现com.consistency.query.TaskTimeRangeQuery接口 如：com.xxx.TaskTimeLineQuery
      */
     private String taskScheduleTimeRangeClassName = "";
+    /**
+     * 每次调度最多扫描的未完成任务数
+     */
+    public Long taskScheduleScanLimit;
     /**
      * 生成任务表分片key的ClassName 这里要配置类型全路径且类要实现com.consistency.custom.shard.ShardingKeyGenerator接口
      */
     private String shardingKeyGeneratorClassName = "";
+    /**
+     * 未配置分片键生成类时使用的分片键生成器
+     */
+    private String shardKeyGeneratorType;
+    /**
+     * segment生成器每次租用的号段大小
+     */
+    public Integer shardSegmentSize;
+    /**
+     * segment生成器的预取比例
+     */
+    public Double shardSegmentPrefetchRatio;
+    /**
+     * 默认分片键生成器的机器id
+     */
+    public Long shardWorkerId;
+    /**
+     * 是否从zk租用集群内唯一的机器id
+     */
+    public Boolean shardWorkerIdLeaseEnabled;
+    /**
+     * 默认分片键生成器的序列号分段位数
+     */
+    public Integer shardSequenceStripeBits;
+    /**
+     * 每个库中的任务分表数
+     */
+    public Integer shardTableCount;
+    /**
+     * 业务数据源之外的任务分库数据源
+     */
+    private List<ShardModeConfigProperties.ShardDataSourceProperties> shardDataSources;
+    /**
+     * 是否开启任务熔断
+     */
+    public Boolean breakerEnabled = true;
+    /**
+     * 熔断的失败率阈值 百分比
+     */
+    public Integer breakerFailureRateThreshold;
+    /**
+     * 熔断的慢调用率阈值 百分比
+     */
+    public Integer breakerSlowCallRateThreshold;
+    /**
+     * 慢调用的耗时阈值 单位毫秒
+     */
+    public Long breakerSlowCallDurationThresholdMs;
+    /**
+     * 熔断统计窗口大小
+     */
+    public Integer breakerSlidingWindowSize;
+    /**
+     * 计算失败率前窗口内至少需要的调用次数
+     */
+    public Integer breakerMinimumNumberOfCalls;
+    /**
+     * 熔断器打开后进入半开状态前的等待时间 单位毫秒
+     */
+    public Long breakerWaitDurationInOpenStateMs;
+    /**
+     * 半开状态下允许试探执行的次数
+     */
+    public Integer breakerPermittedNumberOfCallsInHalfOpenState;
+    /**
+     * 是否开启集群限流
+     */
+    public Boolean rateLimitClusterMode = false;
+    /**
+     * 是否开启zk动态配置
+     */
+    public Boolean dynamicConfigEnabled = false;
+    /**
+     * 动态配置的zk节点路径
+     */
+    private String dynamicConfigPath;
+    /**
+     * 任务租约时长 单位毫秒
+     */
+    public Long leaseDurationMs;
+    /**
+     * 续约心跳的间隔 单位毫秒
+     */
+    public Long leaseHeartbeatIntervalMs;
+    /**
+     * 回收过期租约任务的间隔 单位毫秒
+     */
+    public Long leaseReaperIntervalMs;
+    /**
+     * 每次回收的最大任务数
+     */
+    public Integer leaseReaperBatchSize;
+    /**
+     * 是否开启死信
+     */
+    public Boolean deadLetterEnabled = false;
+    /**
+     * 移入死信表的最大执行次数
+     */
+    public Integer deadLetterMaxAttempts;
+    /**
+     * 移入死信表的最长存活时间 单位毫秒
+     */
+    public Long deadLetterMaxAgeMs;
+    /**
+     * 移入死信表的间隔 单位毫秒
+     */
+    public Long deadLetterIntervalMs;
+    /**
+     * 每批移入死信表的最大任务数
+     */
+    public Integer deadLetterBatchSize;
+    /**
+     * 告警聚合窗口 单位毫秒
+     */
+    public Long alertAggregateWindowMs;
+    /**
+     * 一个窗口内最多聚合的告警分组数
+     */
+    public Integer alertMaxAggregateGroups;
+    /**
+     * 每个告警分组保留的任务实例采样数
+     */
+    public Integer alertMaxSamplesPerGroup;
+    /**
+     * 可选值:[mybatis,jdbc,memory] 任务存储的实现
+     */
+    public String storeType;
+    /**
+     * 是否开启任务入库的组提交
+     */
+    public Boolean storeGroupCommitEnabled = false;
+    /**
+     * 组提交的收集窗口 单位毫秒
+     */
+    public Long storeGroupCommitWindowMs;
+    /**
+     * 组提交每批最多写入的任务数
+     */
+    public Integer storeGroupCommitMaxBatchSize;
+    /**
+     * 是否批量写入任务的完成结果
+     */
+    public Boolean storeCompletionBatchEnabled = true;
+    /**
+     * 完成结果的批量写入间隔 单位毫秒
+     */
+    public Long storeCompletionFlushIntervalMs;
+    /**
+     * 每批最多写入的完成结果数
+     */
+    public Integer storeCompletionMaxBatchSize;
+    /**
+     * 批量入队时每批写入的任务数
+     */
+    public Integer storeBulkBatchSize;
+    /**
+     * 批量入队时是否使用PostgreSQL的COPY写入
+     */
+    public Boolean storeBulkCopyEnabled = true;
+    /**
+     * 是否规范化存储任务定义
+     */
+    public Boolean storeDefinitionNormalized = false;
+    /**
+     * 是否对任务入参去重存储
+     */
+    public Boolean storePayloadDedupEnabled = false;
+    /**
+     * 去重存储的入参最小长度
+     */
+    public Integer storePayloadDedupMinLength;
+    /**
+     * 进程内缓存的入参数量
+     */
+    public Integer storePayloadCacheSize;
+    /**
+     * 分区存储的分区粒度
+     */
+    private String storePartitionUnit;
+    /**
+     * 提前创建的分区数
+     */
+    public Integer storePartitionPrecreateCount;
+    /**
+     * 保留的分区数
+     */
+    public Integer storePartitionRetentionCount;
+    /**
+     * 摘除分区后是否删除分区表
+     */
+    public Boolean storePartitionDropDetached = true;
+    /**
+     * 分区维护间隔 单位毫秒
+     */
+    public Long storePartitionMaintainIntervalMs;
 
-}
\ No newline at end of file
+}
@@ -30,6 +30,10 @@ public class TendConsistencyParallelTaskConfigProperties {
      * 调度型任务线程池的队列大小
      */
     public Integer threadPoolQueueSize = 100;
+    /**
+     * 调度器可使用的队列比例 队列超过该比例时调度器停止派发，剩余容量留给立即执行的任务
+     */
+    public Double admissionHighWatermark = 0.8D;
     /**
      * 线程池中无任务时线程存活时间
      */
@@ -42,5 +46,17 @@ public class TendConsistencyParallelTaskConfigProperties {
      * 这里要配置类型全路径且类要实现com.ruyuan.consistency.custom.query.TaskTimeRangeQuery接口 如：com.xxx.TaskTimeLineQuery
      */
     private String taskScheduleTimeRangeClassName = "";
+    /**
+     * 未配置taskScheduleTimeRangeClassName时 每次调度最多扫描的未完成任务数
+     */
+    public Long taskScheduleScanLimit = 1000L;
+    /**
+     * 执行带超时时间任务的线程池的最大线程数
+     */
+    public Integer timeoutThreadMaxPoolSize = 50;
+    /**
+     * 任务超时后等待不响应中断的任务体结束的宽限期 单位毫秒 超过后不再等待，记录失败并释放租约和并发许可
+     */
+    public Long timeoutGraceMs = 30000L;
 
 }
@@ -1,7 +1,10 @@
 package com.consistency.custom.alerter;
 
+import com.consistency.model.ConsistencyTaskAlertSummary;
 import com.consistency.model.ConsistencyTaskInstance;
 
+import java.util.List;
+
 /**
  * 一致性框架告警接口
  * 具体告警通知动作由业务服务实现
@@ -18,4 +21,18 @@ public interface ConsistencyFrameworkAlerter {
      */
     void sendAlertNotice(ConsistencyTaskInstance consistencyTaskInstance);
 
+    /**
+     * 发送聚合后的告警通知 框架在每个聚合窗口内对同一任务只调用一次
+     * 默认以窗口内最后一次告警的任务实例调用sendAlertNotice，如需发送汇总信息，覆盖该方法即可
+     *
+     * @param alertSummary 告警汇总信息
+     */
+    default void sendAlertNotice(ConsistencyTaskAlertSummary alertSummary) {
+        List<ConsistencyTaskInstance> sampleInstances = alertSummary.getSampleInstances();
+        if (sampleInstances == null || sampleInstances.isEmpty()) {
+            return;
+        }
+        sendAlertNotice(sampleInstances.get(sampleInstances.size() - 1));
+    }
+
 }
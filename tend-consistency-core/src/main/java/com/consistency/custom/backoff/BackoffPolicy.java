@@ -0,0 +1,44 @@
+package com.consistency.custom.backoff;
+
+import com.consistency.model.ConsistencyTaskInstance;
+
+/**
+ * 任务重试退避策略接口
+ * 如业务服务需要定制，实现该接口并在@ConsistencyTask的backoffPolicy中指定即可 实现类可以是spring bean，也可以提供无参构造
+ *
+ * @author wzw
+ **/
+public interface BackoffPolicy {
+
+    /**
+     * 获取任务失败后距离下一次执行的间隔
+     *
+     * @param taskInstance      执行失败的任务实例 executeTimes为已执行的次数
+     * @param intervalMillis    任务配置的执行间隔 单位毫秒
+     * @param maxIntervalMillis 任务配置的最大执行间隔 单位毫秒
+     * @return 下一次执行的间隔 单位毫秒
+     */
+    long getNextDelayMillis(ConsistencyTaskInstance taskInstance, long intervalMillis, long maxIntervalMillis);
+
+    /**
+     * 是否达到降级阈值 默认为执行次数大于框架配置的降级阈值
+     *
+     * @param taskInstance       执行失败的任务实例
+     * @param failCountThreshold 框架配置的降级阈值
+     * @return 是否执行降级
+     */
+    default boolean isFallbackThresholdReached(ConsistencyTaskInstance taskInstance, int failCountThreshold) {
+        return taskInstance.getExecuteTimes() > failCountThreshold;
+    }
+
+    /**
+     * 是否达到告警阈值 达到后才会继续解析任务的告警表达式 默认总是解析
+     *
+     * @param taskInstance 执行失败的任务实例
+     * @return 是否告警
+     */
+    default boolean isAlertThresholdReached(ConsistencyTaskInstance taskInstance) {
+        return true;
+    }
+
+}
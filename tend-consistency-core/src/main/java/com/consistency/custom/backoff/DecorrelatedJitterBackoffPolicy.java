@@ -0,0 +1,26 @@
+package com.consistency.custom.backoff;
+
+import com.consistency.model.ConsistencyTaskInstance;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 去相关抖动退避策略：在[执行间隔, 上一次间隔 * 3)之间随机取值 不超过最大执行间隔
+ * 同一时刻失败的大量任务会被打散到不同的时间点重试，上一次间隔按指数退避估算
+ *
+ * @author wzw
+ **/
+public class DecorrelatedJitterBackoffPolicy implements BackoffPolicy {
+
+    @Override
+    public long getNextDelayMillis(ConsistencyTaskInstance taskInstance, long intervalMillis, long maxIntervalMillis) {
+        long previousDelay = ExponentialBackoffPolicy.exponentialDelay(intervalMillis, maxIntervalMillis,
+                taskInstance.getExecuteTimes() - 2);
+        long upperBound = previousDelay > Long.MAX_VALUE / 3 ? Long.MAX_VALUE : previousDelay * 3;
+        if (upperBound <= intervalMillis) {
+            return Math.min(intervalMillis, maxIntervalMillis);
+        }
+        return Math.min(ThreadLocalRandom.current().nextLong(intervalMillis, upperBound), maxIntervalMillis);
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.consistency.custom.backoff;
+
+import com.consistency.model.ConsistencyTaskInstance;
+
+/**
+ * 指数退避策略：执行间隔 * 2^(执行次数 - 1) 不超过最大执行间隔
+ *
+ * @author wzw
+ **/
+public class ExponentialBackoffPolicy implements BackoffPolicy {
+
+    @Override
+    public long getNextDelayMillis(ConsistencyTaskInstance taskInstance, long intervalMillis, long maxIntervalMillis) {
+        return exponentialDelay(intervalMillis, maxIntervalMillis, taskInstance.getExecuteTimes() - 1);
+    }
+
+    /**
+     * 计算指数退避间隔
+     *
+     * @param intervalMillis    执行间隔
+     * @param maxIntervalMillis 最大执行间隔
+     * @param exponent          指数
+     * @return 退避间隔
+     */
+    static long exponentialDelay(long intervalMillis, long maxIntervalMillis, int exponent) {
+        if (exponent <= 0) {
+            return Math.min(intervalMillis, maxIntervalMillis);
+        }
+        // 防止移位溢出
+        if (exponent >= Long.numberOfLeadingZeros(Math.max(1L, intervalMillis)) - 1) {
+            return maxIntervalMillis;
+        }
+        return Math.min(intervalMillis << exponent, maxIntervalMillis);
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.consistency.custom.backoff;
+
+import com.consistency.model.ConsistencyTaskInstance;
+
+/**
+ * 固定间隔退避策略：每次失败后间隔固定的执行间隔再执行
+ *
+ * @author wzw
+ **/
+public class FixedBackoffPolicy implements BackoffPolicy {
+
+    @Override
+    public long getNextDelayMillis(ConsistencyTaskInstance taskInstance, long intervalMillis, long maxIntervalMillis) {
+        return Math.min(intervalMillis, maxIntervalMillis);
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.consistency.custom.backoff;
+
+import com.consistency.model.ConsistencyTaskInstance;
+
+/**
+ * 线性退避策略 框架默认策略：（执行次数 + 1） * 执行间隔
+ *
+ * @author wzw
+ **/
+public class LinearBackoffPolicy implements BackoffPolicy {
+
+    @Override
+    public long getNextDelayMillis(ConsistencyTaskInstance taskInstance, long intervalMillis, long maxIntervalMillis) {
+        // 第一次执行失败之后，会用第一次执行之前的时间 + （1 + 1） * 20s = 第一次执行时间往后推40s
+        return Math.min((taskInstance.getExecuteTimes() + 1) * intervalMillis, maxIntervalMillis);
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.consistency.custom.shard;
+
+import com.consistency.exceptions.ConsistencyException;
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁的snowflake分片键生成器 分片键的位布局与{@link SnowflakeShardingKeyGenerator}相同
+ * 时间戳和序列号打包在一个long中，通过CAS更新，不需要加锁
+ * 同一毫秒的序列号用完时借用下一毫秒，时间戳领先系统时间不超过容忍值，不会忙等
+ * 可以把序列号的高位划分为多个分段，线程按线程id使用各自的分段，减少并发生成时的CAS冲突
+ * 机器id租约失效时暂停生成，等待重新租到机器id，避免与租到同一机器id的其他节点生成重复的分片键
+ *
+ * @author wzw
+ **/
+public class CasSnowflakeShardingKeyGenerator implements ShardingKeyGenerator {
+
+    private static final long SEQUENCE_BITS = 12L;
+
+    private static final long WORKER_ID_BITS = 10L;
+
+    private static final long WORKER_ID_LEFT_SHIFT_BITS = SEQUENCE_BITS;
+
+    private static final long TIMESTAMP_LEFT_SHIFT_BITS = WORKER_ID_LEFT_SHIFT_BITS + WORKER_ID_BITS;
+
+    public static final long WORKER_ID_MAX_VALUE = 1L << WORKER_ID_BITS;
+
+    /**
+     * 最多的分段位数 每个分段每毫秒至少还有64个序列号
+     */
+    public static final int MAX_STRIPE_BITS = 6;
+
+    private static final int MAX_TOLERATE_TIME_DIFFERENCE_MILLISECONDS = 10;
+
+    /**
+     * 各分段状态在数组中的间隔 避免不同分段的状态落在同一缓存行
+     */
+    private static final int STATE_STRIDE = 8;
+
+    /**
+     * 暂停生成时最多等待重新租到机器id的时间
+     */
+    private static final long SUSPEND_WAIT_MILLISECONDS = 5000L;
+
+    private final TimeService timeService;
+
+    /**
+     * 左移后的机器id 设置时计算一次
+     */
+    private volatile long workerIdBits;
+
+    /**
+     * 机器id是否有效 租约失效时为false
+     */
+    private volatile boolean workerIdValid = true;
+
+    private final int stripeBits;
+
+    private final int stripeMask;
+
+    /**
+     * 分段内序列号的位数
+     */
+    private final long counterBits;
+
+    private final long counterMask;
+
+    private final long maxTolerateTimeDifferenceMilliseconds;
+
+    /**
+     * 各分段的状态 高位为相对EPOCH的时间戳，低位为分段内的序列号
+     */
+    private final AtomicLongArray states;
+
+    public CasSnowflakeShardingKeyGenerator() {
+        this(0L, 0);
+    }
+
+    public CasSnowflakeShardingKeyGenerator(long workerId, int stripeBits) {
+        this(workerId, stripeBits, MAX_TOLERATE_TIME_DIFFERENCE_MILLISECONDS, new TimeService());
+    }
+
+    public CasSnowflakeShardingKeyGenerator(long workerId, int stripeBits, long maxTolerateTimeDifferenceMilliseconds,
+                                            TimeService timeService) {
+        Preconditions.checkArgument(stripeBits >= 0 && stripeBits <= MAX_STRIPE_BITS,
+                "stripe bits must be in [0, %s], but is %s", MAX_STRIPE_BITS, stripeBits);
+        this.timeService = timeService;
+        setWorkerId(workerId);
+        this.stripeBits = stripeBits;
+        this.stripeMask = (1 << stripeBits) - 1;
+        this.counterBits = SEQUENCE_BITS - stripeBits;
+        this.counterMask = (1L << counterBits) - 1;
+        this.maxTolerateTimeDifferenceMilliseconds = maxTolerateTimeDifferenceMilliseconds;
+        this.states = new AtomicLongArray((1 << stripeBits) * STATE_STRIDE);
+    }
+
+    /**
+     * 设置机器id 由机器id租约在租到或重新租到机器id时调用
+     *
+     * @param workerId 机器id
+     */
+    public void setWorkerId(long workerId) {
+        Preconditions.checkArgument(workerId >= 0L && workerId < WORKER_ID_MAX_VALUE,
+                "worker id must be in [0, %s), but is %s", WORKER_ID_MAX_VALUE, workerId);
+        this.workerIdBits = workerId << WORKER_ID_LEFT_SHIFT_BITS;
+        this.workerIdValid = true;
+    }
+
+    /**
+     * 暂停生成 由机器id租约在租约失效时调用，重新设置机器id或调用{@link #resume()}后恢复
+     */
+    public void suspend() {
+        this.workerIdValid = false;
+    }
+
+    /**
+     * 恢复生成 由机器id租约在确认原机器id仍然有效时调用
+     */
+    public void resume() {
+        this.workerIdValid = true;
+    }
+
+    public long getWorkerId() {
+        return workerIdBits >>> WORKER_ID_LEFT_SHIFT_BITS;
+    }
+
+    /**
+     * 生产一致性任务分片键
+     *
+     * @return 一致性任务分片键
+     */
+    @Override
+    public long generateShardKey() {
+        if (!workerIdValid) {
+            awaitWorkerId();
+        }
+        int stripe = stripeBits == 0 ? 0 : (int) Thread.currentThread().getId() & stripeMask;
+        int index = stripe * STATE_STRIDE;
+        while (true) {
+            long current = states.get(index);
+            long lastTimestamp = current >>> counterBits;
+            long now = timeService.getCurrentMillis() - SnowflakeShardingKeyGenerator.EPOCH;
+            long next;
+            if (now > lastTimestamp) {
+                // 新的毫秒 起始序列号在0和1之间交替，避免分片键总是偶数
+                next = (now << counterBits) | (now & 1L);
+            } else if (lastTimestamp - now > maxTolerateTimeDifferenceMilliseconds) {
+                throw new ConsistencyException(String.format("Clock is moving backwards, last time is %d milliseconds, "
+                        + "current time is %d milliseconds", lastTimestamp + SnowflakeShardingKeyGenerator.EPOCH,
+                        now + SnowflakeShardingKeyGenerator.EPOCH));
+            } else if ((current & counterMask) < counterMask) {
+                // 同一毫秒 或时钟回拨在容忍范围内时沿用上次的时间戳
+                next = current + 1;
+            } else if (lastTimestamp + 1 - now <= maxTolerateTimeDifferenceMilliseconds) {
+                // 序列号用完 借用下一毫秒
+                next = (lastTimestamp + 1) << counterBits;
+            } else {
+                // 借用的时间已达容忍值 等系统时间追上
+                LockSupport.parkNanos(100_000L);
+                continue;
+            }
+            if (states.compareAndSet(index, current, next)) {
+                long sequence = ((long) stripe << counterBits) | (next & counterMask);
+                return ((next >>> counterBits) << TIMESTAMP_LEFT_SHIFT_BITS) | workerIdBits | sequence;
+            }
+        }
+    }
+
+    private void awaitWorkerId() {
+        long deadline = System.currentTimeMillis() + SUSPEND_WAIT_MILLISECONDS;
+        while (!workerIdValid) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new ConsistencyException("worker id is not leased, can not generate shard key");
+            }
+            LockSupport.parkNanos(1_000_000L);
+        }
+    }
+}
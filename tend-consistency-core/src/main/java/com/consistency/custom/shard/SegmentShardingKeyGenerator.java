@@ -0,0 +1,127 @@
+package com.consistency.custom.shard;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 号段分片键生成器 从{@link ShardKeySegmentSource}批量租用连续的分片键，在本地通过原子计数器分配
+ * 当前号段使用到预取比例时异步租用下一个号段，号段用完时直接切换，只有预取未完成时才同步等待
+ * 生成的分片键连续且递增，可以按范围路由；节点重启后未用完的号段作废
+ *
+ * @author wzw
+ **/
+@Slf4j
+public class SegmentShardingKeyGenerator implements ShardingKeyGenerator {
+
+    private static final Segment EMPTY = new Segment(0L, 0, 1.0D);
+
+    private final ShardKeySegmentSource segmentSource;
+
+    private final int segmentSize;
+
+    private final double prefetchRatio;
+
+    private final Executor prefetchExecutor;
+
+    private volatile Segment current = EMPTY;
+
+    /**
+     * 预取中的下一个号段
+     */
+    private final AtomicReference<CompletableFuture<Segment>> next = new AtomicReference<>();
+
+    public SegmentShardingKeyGenerator(ShardKeySegmentSource segmentSource, int segmentSize, double prefetchRatio,
+                                       Executor prefetchExecutor) {
+        this.segmentSource = segmentSource;
+        this.segmentSize = segmentSize;
+        this.prefetchRatio = prefetchRatio;
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    /**
+     * 生产一致性任务分片键
+     *
+     * @return 一致性任务分片键
+     */
+    @Override
+    public long generateShardKey() {
+        while (true) {
+            Segment segment = current;
+            long shardKey = segment.cursor.getAndIncrement();
+            if (shardKey < segment.end) {
+                if (shardKey == segment.prefetchAt) {
+                    prefetch();
+                }
+                return shardKey;
+            }
+            switchSegment(segment);
+        }
+    }
+
+    private void prefetch() {
+        CompletableFuture<Segment> future = new CompletableFuture<>();
+        if (!next.compareAndSet(null, future)) {
+            return;
+        }
+        try {
+            prefetchExecutor.execute(() -> {
+                try {
+                    future.complete(lease());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 切换到下一个号段 只有一个线程切换，其他线程等待后使用新号段
+     *
+     * @param exhausted 已用完的号段
+     */
+    private synchronized void switchSegment(Segment exhausted) {
+        if (current != exhausted) {
+            return;
+        }
+        CompletableFuture<Segment> future = next.getAndSet(null);
+        Segment segment = null;
+        if (future != null) {
+            try {
+                segment = future.join();
+            } catch (RuntimeException e) {
+                log.warn("[consistency framework] prefetch shard key segment fail, lease it synchronously", e);
+            }
+        }
+        current = segment == null ? lease() : segment;
+    }
+
+    private Segment lease() {
+        long start = segmentSource.lease(segmentSize);
+        log.info("[consistency framework] shard key segment [{}, {}) is leased", start, start + segmentSize);
+        return new Segment(start, segmentSize, prefetchRatio);
+    }
+
+    private static final class Segment {
+
+        private final AtomicLong cursor;
+
+        private final long end;
+
+        /**
+         * 分配到该分片键时预取下一个号段
+         */
+        private final long prefetchAt;
+
+        private Segment(long start, int size, double prefetchRatio) {
+            this.cursor = new AtomicLong(start);
+            this.end = start + size;
+            this.prefetchAt = start + (long) (size * prefetchRatio);
+        }
+    }
+}
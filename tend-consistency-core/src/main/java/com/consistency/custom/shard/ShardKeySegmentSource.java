@@ -0,0 +1,18 @@
+package com.consistency.custom.shard;
+
+/**
+ * 分片键号段来源 每次租用一段集群内不重复的连续分片键
+ *
+ * @author wzw
+ **/
+@FunctionalInterface
+public interface ShardKeySegmentSource {
+
+    /**
+     * 租用一个号段
+     *
+     * @param size 号段大小
+     * @return 号段的起始分片键 号段为[起始分片键, 起始分片键 + size)
+     */
+    long lease(int size);
+}
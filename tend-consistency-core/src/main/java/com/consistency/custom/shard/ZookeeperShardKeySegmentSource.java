@@ -0,0 +1,35 @@
+package com.consistency.custom.shard;
+
+import com.consistency.exceptions.ConsistencyException;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.atomic.AtomicValue;
+import org.apache.curator.framework.recipes.atomic.DistributedAtomicLong;
+import org.apache.curator.retry.RetryNTimes;
+
+/**
+ * 基于zk分布式计数器的号段来源 计数器的值为已租出的最大分片键
+ *
+ * @author wzw
+ **/
+public class ZookeeperShardKeySegmentSource implements ShardKeySegmentSource {
+
+    private final DistributedAtomicLong counter;
+
+    public ZookeeperShardKeySegmentSource(CuratorFramework curatorFramework, String path) {
+        this.counter = new DistributedAtomicLong(curatorFramework, path, new RetryNTimes(10, 10));
+    }
+
+    @Override
+    public long lease(int size) {
+        AtomicValue<Long> value;
+        try {
+            value = counter.add((long) size);
+        } catch (Exception e) {
+            throw new ConsistencyException(e);
+        }
+        if (!value.succeeded()) {
+            throw new ConsistencyException("lease shard key segment fail, too much contention on the counter");
+        }
+        return value.preValue() + 1;
+    }
+}
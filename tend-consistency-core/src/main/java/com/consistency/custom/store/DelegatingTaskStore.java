@@ -0,0 +1,140 @@
+package com.consistency.custom.store;
+
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.model.DeadLetterQuery;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 包装其他任务存储的基类 默认所有操作都交给被包装的存储，子类只覆盖需要改写的操作
+ *
+ * @author wzw
+ **/
+public abstract class DelegatingTaskStore implements TaskStore {
+
+    private final TaskStore delegate;
+
+    protected DelegatingTaskStore(TaskStore delegate) {
+        this.delegate = delegate;
+    }
+
+    public TaskStore getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 逐层拆开包装 查找指定类型的任务存储
+     *
+     * @param taskStore 任务存储
+     * @param type      要查找的类型
+     * @param <T>       任务存储类型
+     * @return 指定类型的任务存储 不存在时返回null
+     */
+    public static <T extends TaskStore> T unwrap(TaskStore taskStore, Class<T> type) {
+        TaskStore current = taskStore;
+        while (current != null) {
+            if (type.isInstance(current)) {
+                return type.cast(current);
+            }
+            current = current instanceof DelegatingTaskStore ? ((DelegatingTaskStore) current).getDelegate() : null;
+        }
+        return null;
+    }
+
+    @Override
+    public int insert(ConsistencyTaskInstance taskInstance) {
+        return delegate.insert(taskInstance);
+    }
+
+    @Override
+    public int insertBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return delegate.insertBatch(taskInstances);
+    }
+
+    @Override
+    public ConsistencyTaskInstance get(Long id, Long shardKey) {
+        return delegate.get(id, shardKey);
+    }
+
+    @Override
+    public boolean claim(ConsistencyTaskInstance taskInstance) {
+        return delegate.claim(taskInstance);
+    }
+
+    @Override
+    public boolean claimInit(ConsistencyTaskInstance taskInstance) {
+        return delegate.claimInit(taskInstance);
+    }
+
+    @Override
+    public boolean unclaim(ConsistencyTaskInstance taskInstance, int previousStatus, long previousExecuteTime) {
+        return delegate.unclaim(taskInstance, previousStatus, previousExecuteTime);
+    }
+
+    @Override
+    public boolean renewLease(Collection<ConsistencyTaskInstance> taskInstances, long leaseExpireTime) {
+        return delegate.renewLease(taskInstances, leaseExpireTime);
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> listExpiredLease(long now, long orphanBefore, int batchSize) {
+        return delegate.listExpiredLease(now, orphanBefore, batchSize);
+    }
+
+    @Override
+    public int reapExpiredLease(Collection<ConsistencyTaskInstance> taskInstances, long now, long orphanBefore) {
+        return delegate.reapExpiredLease(taskInstances, now, orphanBefore);
+    }
+
+    @Override
+    public int complete(ConsistencyTaskInstance taskInstance) {
+        return delegate.complete(taskInstance);
+    }
+
+    @Override
+    public int completeBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return delegate.completeBatch(taskInstances);
+    }
+
+    @Override
+    public boolean fail(ConsistencyTaskInstance taskInstance) {
+        return delegate.fail(taskInstance);
+    }
+
+    @Override
+    public int failBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return delegate.failBatch(taskInstances);
+    }
+
+    @Override
+    public boolean failFallback(ConsistencyTaskInstance taskInstance) {
+        return delegate.failFallback(taskInstance);
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> scan(long startTime, long endTime, long limitTaskCount) {
+        return delegate.scan(startTime, endTime, limitTaskCount);
+    }
+
+    @Override
+    public void scanRefs(long startTime, long endTime, long limitTaskCount, TaskRefConsumer consumer) {
+        delegate.scanRefs(startTime, endTime, limitTaskCount, consumer);
+    }
+
+    @Override
+    public int moveToDeadLetter(int maxAttempts, Date createdBefore, int batchSize) {
+        return delegate.moveToDeadLetter(maxAttempts, createdBefore, batchSize);
+    }
+
+    @Override
+    public int replayDeadLetter(DeadLetterQuery query, long executeTime) {
+        return delegate.replayDeadLetter(query, executeTime);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,280 @@
+package com.consistency.custom.store;
+
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.model.DeadLetterQuery;
+import org.springframework.beans.BeanUtils;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 内存任务存储 任务不持久化，仅用于单节点和测试
+ * 存取时都会复制任务实例，调用方修改任务实例不会影响已存储的任务
+ *
+ * @author wzw
+ **/
+public class InMemoryTaskStore implements TaskStore {
+
+    /**
+     * 任务id -> 任务实例
+     */
+    private final Map<Long, ConsistencyTaskInstance> taskMap = new ConcurrentHashMap<>();
+
+    /**
+     * 任务id -> 死信任务实例
+     */
+    private final Map<Long, DeadLetter> deadLetterMap = new ConcurrentHashMap<>();
+
+    private final AtomicLong idGenerator = new AtomicLong();
+
+    @Override
+    public int insert(ConsistencyTaskInstance taskInstance) {
+        taskInstance.setId(idGenerator.incrementAndGet());
+        taskMap.put(taskInstance.getId(), copy(taskInstance));
+        return 1;
+    }
+
+    @Override
+    public int insertBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        taskInstances.forEach(this::insert);
+        return taskInstances.size();
+    }
+
+    @Override
+    public ConsistencyTaskInstance get(Long id, Long shardKey) {
+        ConsistencyTaskInstance stored = taskMap.get(id);
+        return stored == null || !stored.getShardKey().equals(shardKey) ? null : copy(stored);
+    }
+
+    @Override
+    public boolean claim(ConsistencyTaskInstance taskInstance) {
+        return update(taskInstance, stored -> stored.getTaskStatus() != 1, stored -> {
+            stored.setTaskStatus(taskInstance.getTaskStatus());
+            stored.setExecuteTimes(stored.getExecuteTimes() + 1);
+            stored.setExecuteTime(taskInstance.getExecuteTime());
+            stored.setLeaseExpireTime(taskInstance.getLeaseExpireTime());
+        });
+    }
+
+    @Override
+    public boolean claimInit(ConsistencyTaskInstance taskInstance) {
+        return update(taskInstance, stored -> stored.getTaskStatus() == 0 && stored.getExecuteTimes() == 0, stored -> {
+            stored.setTaskStatus(taskInstance.getTaskStatus());
+            stored.setExecuteTimes(taskInstance.getExecuteTimes());
+            stored.setExecuteTime(taskInstance.getExecuteTime());
+            stored.setLeaseExpireTime(taskInstance.getLeaseExpireTime());
+        });
+    }
+
+    @Override
+    public boolean unclaim(ConsistencyTaskInstance taskInstance, int previousStatus, long previousExecuteTime) {
+        return update(taskInstance, stored -> stored.getTaskStatus() == 1
+                && stored.getExecuteTimes() == taskInstance.getExecuteTimes()
+                && stored.getExecuteTime().equals(taskInstance.getExecuteTime()), stored -> {
+            stored.setTaskStatus(previousStatus);
+            stored.setExecuteTimes(stored.getExecuteTimes() - 1);
+            stored.setExecuteTime(previousExecuteTime);
+            stored.setLeaseExpireTime(null);
+        });
+    }
+
+    @Override
+    public boolean renewLease(Collection<ConsistencyTaskInstance> taskInstances, long leaseExpireTime) {
+        boolean result = false;
+        for (ConsistencyTaskInstance taskInstance : taskInstances) {
+            result |= update(taskInstance, stored -> stored.getTaskStatus() == 1,
+                    stored -> stored.setLeaseExpireTime(leaseExpireTime));
+        }
+        return result;
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> listExpiredLease(long now, long orphanBefore, int batchSize) {
+        return taskMap.values().stream()
+                .filter(stored -> isLeaseExpired(stored, now, orphanBefore))
+                .limit(batchSize)
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public int reapExpiredLease(Collection<ConsistencyTaskInstance> taskInstances, long now, long orphanBefore) {
+        int count = 0;
+        for (ConsistencyTaskInstance taskInstance : taskInstances) {
+            boolean reaped = update(taskInstance, stored -> isLeaseExpired(stored, now, orphanBefore), stored -> {
+                stored.setTaskStatus(2);
+                stored.setErrorMsg(taskInstance.getErrorMsg());
+                stored.setLeaseExpireTime(null);
+                stored.setExecuteTime(taskInstance.getExecuteTime());
+            });
+            if (reaped) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isLeaseExpired(ConsistencyTaskInstance stored, long now, long orphanBefore) {
+        return stored.getTaskStatus() == 1 && (stored.getLeaseExpireTime() != null ? stored.getLeaseExpireTime() < now
+                : stored.getGmtModified() != null && stored.getGmtModified().getTime() < orphanBefore);
+    }
+
+    @Override
+    public int complete(ConsistencyTaskInstance taskInstance) {
+        ConsistencyTaskInstance stored = taskMap.get(taskInstance.getId());
+        if (stored == null || !stored.getShardKey().equals(taskInstance.getShardKey())) {
+            return 0;
+        }
+        return taskMap.remove(taskInstance.getId(), stored) ? 1 : 0;
+    }
+
+    @Override
+    public int completeBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return taskInstances.stream().mapToInt(this::complete).sum();
+    }
+
+    @Override
+    public boolean fail(ConsistencyTaskInstance taskInstance) {
+        return update(taskInstance, stored -> true, stored -> {
+            stored.setTaskStatus(2);
+            stored.setErrorMsg(taskInstance.getErrorMsg());
+            stored.setExecuteTime(taskInstance.getExecuteTime());
+        });
+    }
+
+    @Override
+    public int failBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return (int) taskInstances.stream().filter(this::fail).count();
+    }
+
+    @Override
+    public boolean failFallback(ConsistencyTaskInstance taskInstance) {
+        return update(taskInstance, stored -> true, stored -> stored.setErrorMsg(taskInstance.getErrorMsg()));
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> scan(long startTime, long endTime, long limitTaskCount) {
+        return taskMap.values().stream()
+                .filter(stored -> stored.getTaskStatus() == 0 || stored.getTaskStatus() == 2)
+                .filter(stored -> stored.getExecuteTime() >= startTime && stored.getExecuteTime() <= endTime)
+                .sorted(Comparator.comparing(ConsistencyTaskInstance::getExecuteTime).reversed())
+                .limit(limitTaskCount)
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public int moveToDeadLetter(int maxAttempts, Date createdBefore, int batchSize) {
+        int count = 0;
+        for (ConsistencyTaskInstance stored : taskMap.values()) {
+            if (count >= batchSize) {
+                break;
+            }
+            boolean expired = stored.getExecuteTimes() >= maxAttempts
+                    || stored.getGmtCreate() != null && stored.getGmtCreate().before(createdBefore);
+            if (stored.getTaskStatus() == 2 && expired && taskMap.remove(stored.getId(), stored)) {
+                deadLetterMap.put(stored.getId(), new DeadLetter(stored, new Date()));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int replayDeadLetter(DeadLetterQuery query, long executeTime) {
+        int count = 0;
+        for (DeadLetter deadLetter : deadLetterMap.values()) {
+            if (!deadLetter.matches(query) || !deadLetterMap.remove(deadLetter.taskInstance.getId(), deadLetter)) {
+                continue;
+            }
+            ConsistencyTaskInstance replayed = copy(deadLetter.taskInstance);
+            replayed.setTaskStatus(0);
+            replayed.setExecuteTimes(0);
+            replayed.setExecuteTime(executeTime);
+            replayed.setErrorMsg("");
+            replayed.setFallbackErrorMsg("");
+            replayed.setLeaseExpireTime(null);
+            replayed.setGmtCreate(new Date());
+            replayed.setGmtModified(replayed.getGmtCreate());
+            taskMap.put(replayed.getId(), replayed);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 满足条件时原子地修改已存储的任务
+     *
+     * @param taskInstance 任务实例
+     * @param condition    修改条件
+     * @param modifier     修改动作
+     * @return 是否修改成功
+     */
+    private boolean update(ConsistencyTaskInstance taskInstance, Predicate<ConsistencyTaskInstance> condition,
+            Consumer<ConsistencyTaskInstance> modifier) {
+        boolean[] updated = new boolean[1];
+        taskMap.computeIfPresent(taskInstance.getId(), (id, stored) -> {
+            if (!stored.getShardKey().equals(taskInstance.getShardKey()) || !condition.test(stored)) {
+                return stored;
+            }
+            ConsistencyTaskInstance modified = copy(stored);
+            modifier.accept(modified);
+            updated[0] = true;
+            return modified;
+        });
+        return updated[0];
+    }
+
+    private ConsistencyTaskInstance copy(ConsistencyTaskInstance source) {
+        ConsistencyTaskInstance target = new ConsistencyTaskInstance();
+        BeanUtils.copyProperties(source, target, "args");
+        return target;
+    }
+
+    /**
+     * 死信任务
+     */
+    private static class DeadLetter {
+
+        private final ConsistencyTaskInstance taskInstance;
+
+        private final Date deadTime;
+
+        DeadLetter(ConsistencyTaskInstance taskInstance, Date deadTime) {
+            this.taskInstance = taskInstance;
+            this.deadTime = deadTime;
+        }
+
+        /**
+         * 是否满足重放条件 错误信息的匹配模式按SQL LIKE处理
+         *
+         * @param query 重放条件
+         * @return 是否满足
+         */
+        boolean matches(DeadLetterQuery query) {
+            if (query.getTaskId() != null && !query.getTaskId().equals(taskInstance.getTaskId())) {
+                return false;
+            }
+            if (query.getDeadTimeFrom() != null && deadTime.before(query.getDeadTimeFrom())) {
+                return false;
+            }
+            if (query.getDeadTimeTo() != null && deadTime.after(query.getDeadTimeTo())) {
+                return false;
+            }
+            if (query.getErrorMsgPattern() == null) {
+                return true;
+            }
+            String regex = Pattern.quote(query.getErrorMsgPattern()).replace("%", "\\E.*\\Q").replace("_", "\\E.\\Q");
+            return taskInstance.getErrorMsg() != null && taskInstance.getErrorMsg().matches(regex);
+        }
+    }
+}
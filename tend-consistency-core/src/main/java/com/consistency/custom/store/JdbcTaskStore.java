@@ -0,0 +1,364 @@
+package com.consistency.custom.store;
+
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.model.DeadLetterQuery;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 基于JdbcTemplate的任务存储
+ * 所有语句都是创建时拼好的参数化SQL，批量操作使用JDBC批处理，不需要每次生成SQL
+ *
+ * @author wzw
+ **/
+public class JdbcTaskStore implements TaskStore {
+
+    /**
+     * 默认的任务表
+     */
+    public static final String DEFAULT_TABLE_NAME = "consistency.tend_consistency_task";
+
+    /**
+     * 租约过期 或引入租约之前遗留的没有租约的执行中任务
+     */
+    private static final String EXPIRED_LEASE_CONDITION =
+            "(lease_expire_time < ? OR lease_expire_time IS NULL AND gmt_modified < ?)";
+
+    protected static final String COLUMNS = "id,task_id,method_sign_name,method_name,parameter_types,task_parameter,"
+            + "task_status,execute_interval_sec,delay_time,execute_times,execute_time,error_msg,performance_way,"
+            + "thread_way,alert_expression,alert_action_bean_name,fallback_class_name,fallback_error_msg,shard_key,"
+            + "lease_expire_time,definition_id,gmt_create,gmt_modified";
+
+    protected static final RowMapper<ConsistencyTaskInstance> ROW_MAPPER = JdbcTaskStore::mapRow;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String tableName;
+
+    private final String insertSql;
+
+    private final String getSql;
+
+    private final String claimSql;
+
+    private final String claimInitSql;
+
+    private final String unclaimSql;
+
+    private final String renewLeaseSql;
+
+    private final String listExpiredLeaseSql;
+
+    private final String reapExpiredLeaseSql;
+
+    private final String completeSql;
+
+    private final String failSql;
+
+    private final String failFallbackSql;
+
+    private final String scanSql;
+
+    private final String scanRefsSql;
+
+    private final String moveToDeadLetterSql;
+
+    private final String replayDeadLetterSql;
+
+    public JdbcTaskStore(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, DEFAULT_TABLE_NAME);
+    }
+
+    public JdbcTaskStore(JdbcTemplate jdbcTemplate, String tableName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+        this.insertSql = "INSERT INTO " + tableName + " (task_id,method_sign_name,method_name,"
+                + "parameter_types,task_parameter,task_status,execute_interval_sec,delay_time,execute_times,execute_time,"
+                + "error_msg,performance_way,thread_way,alert_expression,alert_action_bean_name,fallback_class_name,"
+                + "fallback_error_msg,shard_key,lease_expire_time,definition_id,gmt_create,gmt_modified) "
+                + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+        this.getSql = "SELECT " + COLUMNS + " FROM " + tableName + " WHERE id = ? AND shard_key = ?";
+        this.claimSql = "UPDATE " + tableName + " SET task_status = ?, execute_times = execute_times + 1,"
+                + " execute_time = ?, lease_expire_time = ? WHERE id = ? AND shard_key = ? AND task_status IN (0, 2)";
+        this.claimInitSql = "UPDATE " + tableName + " SET task_status = ?, execute_times = ?,"
+                + " execute_time = ?, lease_expire_time = ? WHERE id = ? AND shard_key = ? AND task_status = 0 AND execute_times = 0";
+        this.unclaimSql = "UPDATE " + tableName + " SET task_status = ?, execute_times = execute_times - 1,"
+                + " execute_time = ?, lease_expire_time = NULL"
+                + " WHERE id = ? AND shard_key = ? AND task_status = 1 AND execute_times = ? AND execute_time = ?";
+        this.renewLeaseSql = "UPDATE " + tableName + " SET lease_expire_time = ?"
+                + " WHERE id = ? AND shard_key = ? AND task_status = 1";
+        this.listExpiredLeaseSql = "SELECT " + COLUMNS + " FROM " + tableName
+                + " WHERE task_status = 1 AND " + EXPIRED_LEASE_CONDITION + " LIMIT ?";
+        this.reapExpiredLeaseSql = "UPDATE " + tableName + " SET task_status = 2, error_msg = ?, execute_time = ?,"
+                + " lease_expire_time = NULL WHERE id = ? AND shard_key = ? AND task_status = 1 AND " + EXPIRED_LEASE_CONDITION;
+        this.completeSql = "DELETE FROM " + tableName + " WHERE id = ? AND shard_key = ?";
+        this.failSql = "UPDATE " + tableName + " SET task_status = 2, error_msg = ?, execute_time = ?"
+                + " WHERE id = ? AND shard_key = ?";
+        this.failFallbackSql = "UPDATE " + tableName + " SET error_msg = ? WHERE id = ? AND shard_key = ?";
+        this.scanSql = "SELECT " + COLUMNS + " FROM " + tableName
+                + " WHERE task_status IN (0, 2) AND execute_time >= ? AND execute_time <= ? ORDER BY execute_time DESC LIMIT ?";
+        this.scanRefsSql = "SELECT id, shard_key, execute_time FROM " + tableName
+                + " WHERE task_status IN (0, 2) AND execute_time >= ? AND execute_time <= ? ORDER BY execute_time DESC LIMIT ?";
+        String deadLetterTableName = tableName + "_dead_letter";
+        this.moveToDeadLetterSql = "WITH moved AS (DELETE FROM " + tableName + " WHERE (id, shard_key) IN ("
+                + "SELECT id, shard_key FROM " + tableName + " WHERE task_status = 2 AND (execute_times >= ? OR gmt_create < ?)"
+                + " LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING " + COLUMNS + ")"
+                + " INSERT INTO " + deadLetterTableName + " (" + COLUMNS + ",dead_time) SELECT " + COLUMNS + ",now() FROM moved";
+        // 条件部分在重放时拼接 %s
+        this.replayDeadLetterSql = "WITH replayed AS (DELETE FROM " + deadLetterTableName + " WHERE %s RETURNING " + COLUMNS + ")"
+                + " INSERT INTO " + tableName + " (" + COLUMNS + ") SELECT id,task_id,method_sign_name,method_name,"
+                + "parameter_types,task_parameter,0,execute_interval_sec,delay_time,0,?,'',performance_way,thread_way,"
+                + "alert_expression,alert_action_bean_name,fallback_class_name,'',shard_key,NULL,definition_id,now(),now() FROM replayed";
+    }
+
+    /**
+     * 任务表名
+     *
+     * @return 任务表名
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    protected JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    @Override
+    public int insert(ConsistencyTaskInstance taskInstance) {
+        return insertBatch(Collections.singletonList(taskInstance));
+    }
+
+    @Override
+    public int insertBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        if (taskInstances.isEmpty()) {
+            return 0;
+        }
+        Integer result = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(insertSql, new String[]{"id"})) {
+                for (ConsistencyTaskInstance taskInstance : taskInstances) {
+                    setInsertParameters(statement, taskInstance);
+                    statement.addBatch();
+                }
+                int rowCount = sum(statement.executeBatch());
+                // 按写入顺序回填主键
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    Iterator<ConsistencyTaskInstance> iterator = taskInstances.iterator();
+                    while (generatedKeys.next() && iterator.hasNext()) {
+                        iterator.next().setId(generatedKeys.getLong(1));
+                    }
+                }
+                return rowCount;
+            }
+        });
+        return result == null ? 0 : result;
+    }
+
+    @Override
+    public ConsistencyTaskInstance get(Long id, Long shardKey) {
+        List<ConsistencyTaskInstance> taskInstances = jdbcTemplate.query(getSql, ROW_MAPPER, id, shardKey);
+        return taskInstances.isEmpty() ? null : taskInstances.get(0);
+    }
+
+    @Override
+    public boolean claim(ConsistencyTaskInstance taskInstance) {
+        return jdbcTemplate.update(claimSql, taskInstance.getTaskStatus(), taskInstance.getExecuteTime(),
+                taskInstance.getLeaseExpireTime(), taskInstance.getId(), taskInstance.getShardKey()) > 0;
+    }
+
+    @Override
+    public boolean claimInit(ConsistencyTaskInstance taskInstance) {
+        return jdbcTemplate.update(claimInitSql, taskInstance.getTaskStatus(), taskInstance.getExecuteTimes(),
+                taskInstance.getExecuteTime(), taskInstance.getLeaseExpireTime(), taskInstance.getId(),
+                taskInstance.getShardKey()) > 0;
+    }
+
+    @Override
+    public boolean unclaim(ConsistencyTaskInstance taskInstance, int previousStatus, long previousExecuteTime) {
+        return jdbcTemplate.update(unclaimSql, previousStatus, previousExecuteTime, taskInstance.getId(),
+                taskInstance.getShardKey(), taskInstance.getExecuteTimes(), taskInstance.getExecuteTime()) > 0;
+    }
+
+    @Override
+    public boolean renewLease(Collection<ConsistencyTaskInstance> taskInstances, long leaseExpireTime) {
+        List<Object[]> batchArgs = new ArrayList<>(taskInstances.size());
+        for (ConsistencyTaskInstance taskInstance : taskInstances) {
+            batchArgs.add(new Object[]{leaseExpireTime, taskInstance.getId(), taskInstance.getShardKey()});
+        }
+        return sum(jdbcTemplate.batchUpdate(renewLeaseSql, batchArgs)) > 0;
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> listExpiredLease(long now, long orphanBefore, int batchSize) {
+        return jdbcTemplate.query(listExpiredLeaseSql, ROW_MAPPER, now, new Timestamp(orphanBefore), batchSize);
+    }
+
+    @Override
+    public int reapExpiredLease(Collection<ConsistencyTaskInstance> taskInstances, long now, long orphanBefore) {
+        Timestamp orphanTime = new Timestamp(orphanBefore);
+        List<Object[]> batchArgs = new ArrayList<>(taskInstances.size());
+        for (ConsistencyTaskInstance taskInstance : taskInstances) {
+            batchArgs.add(new Object[]{taskInstance.getErrorMsg(), taskInstance.getExecuteTime(), taskInstance.getId(),
+                    taskInstance.getShardKey(), now, orphanTime});
+        }
+        return sum(jdbcTemplate.batchUpdate(reapExpiredLeaseSql, batchArgs));
+    }
+
+    @Override
+    public int complete(ConsistencyTaskInstance taskInstance) {
+        return jdbcTemplate.update(completeSql, taskInstance.getId(), taskInstance.getShardKey());
+    }
+
+    @Override
+    public int completeBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        List<Object[]> batchArgs = new ArrayList<>(taskInstances.size());
+        for (ConsistencyTaskInstance taskInstance : taskInstances) {
+            batchArgs.add(new Object[]{taskInstance.getId(), taskInstance.getShardKey()});
+        }
+        return sum(jdbcTemplate.batchUpdate(completeSql, batchArgs));
+    }
+
+    @Override
+    public boolean fail(ConsistencyTaskInstance taskInstance) {
+        return jdbcTemplate.update(failSql, taskInstance.getErrorMsg(), taskInstance.getExecuteTime(),
+                taskInstance.getId(), taskInstance.getShardKey()) > 0;
+    }
+
+    @Override
+    public int failBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        List<Object[]> batchArgs = new ArrayList<>(taskInstances.size());
+        for (ConsistencyTaskInstance taskInstance : taskInstances) {
+            batchArgs.add(new Object[]{taskInstance.getErrorMsg(), taskInstance.getExecuteTime(),
+                    taskInstance.getId(), taskInstance.getShardKey()});
+        }
+        return sum(jdbcTemplate.batchUpdate(failSql, batchArgs));
+    }
+
+    @Override
+    public boolean failFallback(ConsistencyTaskInstance taskInstance) {
+        return jdbcTemplate.update(failFallbackSql, taskInstance.getErrorMsg(), taskInstance.getId(),
+                taskInstance.getShardKey()) > 0;
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> scan(long startTime, long endTime, long limitTaskCount) {
+        return jdbcTemplate.query(scanSql, ROW_MAPPER, startTime, endTime, limitTaskCount);
+    }
+
+    @Override
+    public void scanRefs(long startTime, long endTime, long limitTaskCount, TaskRefConsumer consumer) {
+        jdbcTemplate.query(scanRefsSql, (RowCallbackHandler) rs -> consumer.accept(rs.getLong(1), rs.getLong(2), rs.getLong(3)),
+                startTime, endTime, limitTaskCount);
+    }
+
+    @Override
+    public int moveToDeadLetter(int maxAttempts, Date createdBefore, int batchSize) {
+        return jdbcTemplate.update(moveToDeadLetterSql, maxAttempts, new Timestamp(createdBefore.getTime()), batchSize);
+    }
+
+    @Override
+    public int replayDeadLetter(DeadLetterQuery query, long executeTime) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (query.getTaskId() != null) {
+            conditions.add("task_id = ?");
+            args.add(query.getTaskId());
+        }
+        if (query.getDeadTimeFrom() != null) {
+            conditions.add("dead_time >= ?");
+            args.add(new Timestamp(query.getDeadTimeFrom().getTime()));
+        }
+        if (query.getDeadTimeTo() != null) {
+            conditions.add("dead_time <= ?");
+            args.add(new Timestamp(query.getDeadTimeTo().getTime()));
+        }
+        if (query.getErrorMsgPattern() != null) {
+            conditions.add("error_msg LIKE ?");
+            args.add(query.getErrorMsgPattern());
+        }
+        args.add(executeTime);
+        String where = conditions.isEmpty() ? "1 = 1" : String.join(" AND ", conditions);
+        return jdbcTemplate.update(String.format(replayDeadLetterSql, where), args.toArray());
+    }
+
+    private void setInsertParameters(PreparedStatement statement, ConsistencyTaskInstance taskInstance) throws SQLException {
+        statement.setString(1, taskInstance.getTaskId());
+        statement.setString(2, taskInstance.getMethodSignName());
+        statement.setString(3, taskInstance.getMethodName());
+        statement.setString(4, taskInstance.getParameterTypes());
+        statement.setString(5, taskInstance.getTaskParameter());
+        statement.setInt(6, taskInstance.getTaskStatus());
+        statement.setInt(7, taskInstance.getExecuteIntervalSec());
+        statement.setInt(8, taskInstance.getDelayTime());
+        statement.setInt(9, taskInstance.getExecuteTimes());
+        statement.setObject(10, taskInstance.getExecuteTime(), Types.BIGINT);
+        statement.setString(11, taskInstance.getErrorMsg());
+        statement.setObject(12, taskInstance.getPerformanceWay(), Types.INTEGER);
+        statement.setObject(13, taskInstance.getThreadWay(), Types.INTEGER);
+        statement.setString(14, taskInstance.getAlertExpression());
+        statement.setString(15, taskInstance.getAlertActionBeanName());
+        statement.setString(16, taskInstance.getFallbackClassName());
+        statement.setString(17, taskInstance.getFallbackErrorMsg());
+        statement.setObject(18, taskInstance.getShardKey(), Types.BIGINT);
+        statement.setObject(19, taskInstance.getLeaseExpireTime(), Types.BIGINT);
+        statement.setInt(20, taskInstance.getDefinitionId() == null ? 0 : taskInstance.getDefinitionId());
+        statement.setTimestamp(21, toTimestamp(taskInstance.getGmtCreate()));
+        statement.setTimestamp(22, toTimestamp(taskInstance.getGmtModified()));
+    }
+
+    private static ConsistencyTaskInstance mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return ConsistencyTaskInstance.builder()
+                .id(rs.getLong("id"))
+                .taskId(rs.getString("task_id"))
+                .methodSignName(rs.getString("method_sign_name"))
+                .methodName(rs.getString("method_name"))
+                .parameterTypes(rs.getString("parameter_types"))
+                .taskParameter(rs.getString("task_parameter"))
+                .taskStatus(rs.getInt("task_status"))
+                .executeIntervalSec(rs.getInt("execute_interval_sec"))
+                .delayTime(rs.getInt("delay_time"))
+                .executeTimes(rs.getInt("execute_times"))
+                .executeTime(rs.getObject("execute_time", Long.class))
+                .errorMsg(rs.getString("error_msg"))
+                .performanceWay(rs.getObject("performance_way", Integer.class))
+                .threadWay(rs.getObject("thread_way", Integer.class))
+                .alertExpression(rs.getString("alert_expression"))
+                .alertActionBeanName(rs.getString("alert_action_bean_name"))
+                .fallbackClassName(rs.getString("fallback_class_name"))
+                .fallbackErrorMsg(rs.getString("fallback_error_msg"))
+                .shardKey(rs.getLong("shard_key"))
+                .leaseExpireTime(rs.getObject("lease_expire_time", Long.class))
+                .definitionId(rs.getInt("definition_id"))
+                .gmtCreate(rs.getTimestamp("gmt_create"))
+                .gmtModified(rs.getTimestamp("gmt_modified"))
+                .build();
+    }
+
+    private static Timestamp toTimestamp(Date date) {
+        return date == null ? new Timestamp(System.currentTimeMillis()) : new Timestamp(date.getTime());
+    }
+
+    protected static int sum(int[] results) {
+        int rowCount = 0;
+        for (int result : results) {
+            // 驱动无法返回影响行数时按成功处理
+            rowCount += result == Statement.SUCCESS_NO_INFO ? 1 : result;
+        }
+        return rowCount;
+    }
+}
@@ -0,0 +1,111 @@
+package com.consistency.custom.store;
+
+import com.consistency.mapper.TaskOperateService;
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.model.DeadLetterQuery;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 基于MyBatis-Plus的任务存储 默认实现
+ *
+ * @author wzw
+ **/
+@RequiredArgsConstructor
+public class MybatisTaskStore implements TaskStore {
+
+    private final TaskOperateService taskOperateService;
+
+    @Override
+    public int insert(ConsistencyTaskInstance taskInstance) {
+        return taskOperateService.initTask(taskInstance);
+    }
+
+    @Override
+    public int insertBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return taskOperateService.batchInitTask(taskInstances) ? taskInstances.size() : 0;
+    }
+
+    @Override
+    public void scanRefs(long startTime, long endTime, long limitTaskCount, TaskRefConsumer consumer) {
+        taskOperateService.scanUnFinishTaskRefs(startTime, endTime, limitTaskCount, consumer);
+    }
+
+    @Override
+    public ConsistencyTaskInstance get(Long id, Long shardKey) {
+        return taskOperateService.getTaskByIdAndShardKey(id, shardKey);
+    }
+
+    @Override
+    public boolean claim(ConsistencyTaskInstance taskInstance) {
+        return taskOperateService.turnOnTask(taskInstance);
+    }
+
+    @Override
+    public boolean claimInit(ConsistencyTaskInstance taskInstance) {
+        return taskOperateService.claimInitTask(taskInstance);
+    }
+
+    @Override
+    public boolean unclaim(ConsistencyTaskInstance taskInstance, int previousStatus, long previousExecuteTime) {
+        return taskOperateService.unclaimTask(taskInstance, previousStatus, previousExecuteTime);
+    }
+
+    @Override
+    public boolean renewLease(Collection<ConsistencyTaskInstance> taskInstances, long leaseExpireTime) {
+        return taskOperateService.renewLease(taskInstances, leaseExpireTime);
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> listExpiredLease(long now, long orphanBefore, int batchSize) {
+        return taskOperateService.listExpiredLease(now, orphanBefore, batchSize);
+    }
+
+    @Override
+    public int reapExpiredLease(Collection<ConsistencyTaskInstance> taskInstances, long now, long orphanBefore) {
+        return taskInstances.isEmpty() ? 0 : taskOperateService.reapExpiredLease(taskInstances, now, orphanBefore);
+    }
+
+    @Override
+    public int complete(ConsistencyTaskInstance taskInstance) {
+        return taskOperateService.markSuccess(taskInstance);
+    }
+
+    @Override
+    public int completeBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return taskInstances.isEmpty() ? 0 : taskOperateService.markSuccessBatch(taskInstances);
+    }
+
+    @Override
+    public boolean fail(ConsistencyTaskInstance taskInstance) {
+        return taskOperateService.markFail(taskInstance);
+    }
+
+    @Override
+    public int failBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return taskInstances.isEmpty() ? 0 : taskOperateService.markFailBatch(taskInstances);
+    }
+
+    @Override
+    public boolean failFallback(ConsistencyTaskInstance taskInstance) {
+        return taskOperateService.markFallbackFail(taskInstance);
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> scan(long startTime, long endTime, long limitTaskCount) {
+        return taskOperateService.listByUnFinishTask(startTime, endTime, limitTaskCount);
+    }
+
+    @Override
+    public int moveToDeadLetter(int maxAttempts, Date createdBefore, int batchSize) {
+        return taskOperateService.moveToDeadLetter(maxAttempts, createdBefore, batchSize);
+    }
+
+    @Override
+    public int replayDeadLetter(DeadLetterQuery query, long executeTime) {
+        return taskOperateService.replayDeadLetter(query, executeTime);
+    }
+}
@@ -0,0 +1,107 @@
+package com.consistency.custom.store;
+
+import com.consistency.model.ConsistencyTaskInstance;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 任务定义规范化的任务存储 包装其他数据库存储
+ * 写入前把方法签名、告警和降级等同一任务方法都相同的字符串替换为任务定义id，读取后再从缓存的任务定义中回填
+ * 执行间隔等数值字段仍保存在任务表中
+ *
+ * @author wzw
+ **/
+public class NormalizedTaskStore extends DelegatingTaskStore {
+
+    private final TaskDefinitionStore taskDefinitionStore;
+
+    public NormalizedTaskStore(TaskStore delegate, TaskDefinitionStore taskDefinitionStore) {
+        super(delegate);
+        this.taskDefinitionStore = taskDefinitionStore;
+    }
+
+    public TaskDefinitionStore getTaskDefinitionStore() {
+        return taskDefinitionStore;
+    }
+
+    @Override
+    public int insert(ConsistencyTaskInstance taskInstance) {
+        compact(taskInstance);
+        try {
+            return super.insert(taskInstance);
+        } finally {
+            hydrate(taskInstance);
+        }
+    }
+
+    @Override
+    public int insertBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        taskInstances.forEach(this::compact);
+        try {
+            return super.insertBatch(taskInstances);
+        } finally {
+            taskInstances.forEach(this::hydrate);
+        }
+    }
+
+    @Override
+    public ConsistencyTaskInstance get(Long id, Long shardKey) {
+        ConsistencyTaskInstance taskInstance = super.get(id, shardKey);
+        if (taskInstance != null) {
+            hydrate(taskInstance);
+        }
+        return taskInstance;
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> scan(long startTime, long endTime, long limitTaskCount) {
+        List<ConsistencyTaskInstance> taskInstances = super.scan(startTime, endTime, limitTaskCount);
+        taskInstances.forEach(this::hydrate);
+        return taskInstances;
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> listExpiredLease(long now, long orphanBefore, int batchSize) {
+        // 回收时按任务方法的退避策略安排重试 需要方法签名
+        List<ConsistencyTaskInstance> taskInstances = super.listExpiredLease(now, orphanBefore, batchSize);
+        taskInstances.forEach(this::hydrate);
+        return taskInstances;
+    }
+
+    /**
+     * 注册任务定义并清空任务实例中的任务定义字段
+     *
+     * @param taskInstance 任务实例
+     */
+    private void compact(ConsistencyTaskInstance taskInstance) {
+        taskInstance.setDefinitionId(taskDefinitionStore.register(taskInstance));
+        taskInstance.setMethodSignName("");
+        taskInstance.setMethodName("");
+        taskInstance.setParameterTypes("");
+        taskInstance.setAlertExpression("");
+        taskInstance.setAlertActionBeanName("");
+        taskInstance.setFallbackClassName("");
+    }
+
+    /**
+     * 从任务定义中回填任务实例的任务定义字段 未规范化的任务（任务定义id为0）保持不变
+     *
+     * @param taskInstance 任务实例
+     */
+    private void hydrate(ConsistencyTaskInstance taskInstance) {
+        if (taskInstance.getDefinitionId() == null || taskInstance.getDefinitionId() == 0) {
+            return;
+        }
+        ConsistencyTaskInstance definition = taskDefinitionStore.get(taskInstance.getDefinitionId());
+        if (definition == null) {
+            return;
+        }
+        taskInstance.setMethodSignName(definition.getMethodSignName());
+        taskInstance.setMethodName(definition.getMethodName());
+        taskInstance.setParameterTypes(definition.getParameterTypes());
+        taskInstance.setAlertExpression(definition.getAlertExpression());
+        taskInstance.setAlertActionBeanName(definition.getAlertActionBeanName());
+        taskInstance.setFallbackClassName(definition.getFallbackClassName());
+    }
+}
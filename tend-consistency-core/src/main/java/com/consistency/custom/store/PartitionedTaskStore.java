@@ -0,0 +1,209 @@
+package com.consistency.custom.store;
+
+import com.consistency.enums.TaskPartitionUnitEnum;
+import com.consistency.model.ConsistencyTaskInstance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 按任务创建时间（gmt_create）分区的任务存储
+ * 完成任务只把状态改为成功，不删除行，避免频繁删除造成的表膨胀和vacuum压力
+ * 扫描和完成时带上最早的存活分区的开始时间，PostgreSQL只访问存活的分区
+ * 分区的创建和摘除由{@link #maintain}完成，早于保留期且任务全部完成的分区会被整体摘除或删除
+ *
+ * @author wzw
+ **/
+@Slf4j
+public class PartitionedTaskStore extends JdbcTaskStore {
+
+    private static final String PARTITION_NAME_INFIX = "_p";
+
+    /**
+     * 兜底分区的后缀 框架创建分区之前写入的任务落在兜底分区
+     */
+    private static final String DEFAULT_PARTITION_SUFFIX = "_default";
+
+    private static final String LIST_PARTITIONS_SQL = "SELECT c.relname FROM pg_inherits i"
+            + " JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent"
+            + " JOIN pg_namespace n ON n.oid = p.relnamespace WHERE n.nspname = ? AND p.relname = ?";
+
+    private final TaskPartitionUnitEnum partitionUnit;
+
+    private final String schema;
+
+    private final String relationName;
+
+    private final String completeSql;
+
+    private final String scanSql;
+
+    private final String scanRefsSql;
+
+    /**
+     * 最早的存活分区的开始时间 维护前为0，即不裁剪分区
+     */
+    private volatile Timestamp liveFrom = new Timestamp(0L);
+
+    public PartitionedTaskStore(JdbcTemplate jdbcTemplate, TaskPartitionUnitEnum partitionUnit) {
+        super(jdbcTemplate);
+        this.partitionUnit = partitionUnit;
+        String tableName = getTableName();
+        this.schema = tableName.substring(0, tableName.indexOf('.'));
+        this.relationName = tableName.substring(tableName.indexOf('.') + 1);
+        this.completeSql = "UPDATE " + tableName + " SET task_status = 3, lease_expire_time = NULL, gmt_modified = now()"
+                + " WHERE id = ? AND shard_key = ? AND gmt_create >= ?";
+        this.scanSql = "SELECT " + COLUMNS + " FROM " + tableName + " WHERE task_status IN (0, 2)"
+                + " AND execute_time >= ? AND execute_time <= ? AND gmt_create >= ? ORDER BY execute_time DESC LIMIT ?";
+        this.scanRefsSql = "SELECT id, shard_key, execute_time FROM " + tableName + " WHERE task_status IN (0, 2)"
+                + " AND execute_time >= ? AND execute_time <= ? AND gmt_create >= ? ORDER BY execute_time DESC LIMIT ?";
+    }
+
+    @Override
+    public int complete(ConsistencyTaskInstance taskInstance) {
+        return getJdbcTemplate().update(completeSql, taskInstance.getId(), taskInstance.getShardKey(), liveFrom);
+    }
+
+    @Override
+    public int completeBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        Timestamp from = liveFrom;
+        List<Object[]> batchArgs = new ArrayList<>(taskInstances.size());
+        for (ConsistencyTaskInstance taskInstance : taskInstances) {
+            batchArgs.add(new Object[]{taskInstance.getId(), taskInstance.getShardKey(), from});
+        }
+        return sum(getJdbcTemplate().batchUpdate(completeSql, batchArgs));
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> scan(long startTime, long endTime, long limitTaskCount) {
+        return getJdbcTemplate().query(scanSql, ROW_MAPPER, startTime, endTime, liveFrom, limitTaskCount);
+    }
+
+    @Override
+    public void scanRefs(long startTime, long endTime, long limitTaskCount, TaskRefConsumer consumer) {
+        getJdbcTemplate().query(scanRefsSql, (RowCallbackHandler) rs -> consumer.accept(rs.getLong(1), rs.getLong(2), rs.getLong(3)),
+                startTime, endTime, liveFrom, limitTaskCount);
+    }
+
+    /**
+     * 维护分区 提前创建后续的分区，摘除保留期之前任务全部完成的分区，并刷新最早的存活分区
+     *
+     * @param now            当前时间
+     * @param precreateCount 提前创建的分区数
+     * @param retentionCount 保留的分区数
+     * @param dropDetached   摘除后是否删除分区表
+     */
+    public void maintain(LocalDateTime now, int precreateCount, int retentionCount, boolean dropDetached) {
+        LocalDateTime current = partitionUnit.floor(now);
+        for (int i = 0; i <= precreateCount; i++) {
+            createPartition(current.plus(i, partitionUnit.getUnit()));
+        }
+        LocalDateTime retainFrom = current.minus(retentionCount, partitionUnit.getUnit());
+        // 当前分区的前一个分区仍可能有刚提交的任务 存活分区至少从它开始
+        LocalDateTime previous = current.minus(1, partitionUnit.getUnit());
+        LocalDateTime oldestLive = previous;
+        boolean liveFound = false;
+        List<String> partitionNames = getJdbcTemplate().queryForList(LIST_PARTITIONS_SQL, String.class, schema, relationName);
+        for (Map.Entry<LocalDateTime, String> partition : listPartitions(partitionNames).entrySet()) {
+            LocalDateTime start = partition.getKey();
+            if (!start.isBefore(previous)) {
+                break;
+            }
+            if (hasUnfinishedTask(partition.getValue())) {
+                if (!liveFound) {
+                    oldestLive = start;
+                    liveFound = true;
+                }
+                continue;
+            }
+            if (start.plus(1, partitionUnit.getUnit()).isAfter(retainFrom)) {
+                continue;
+            }
+            detachPartition(partition.getValue(), dropDetached);
+        }
+        // 兜底分区不按时间摘除 其中未完成任务的最早创建时间也要在存活范围内，否则这些任务不会再被扫描
+        Timestamp defaultOldest = getDefaultPartitionOldestUnfinished(partitionNames);
+        if (defaultOldest != null && defaultOldest.toLocalDateTime().isBefore(oldestLive)) {
+            oldestLive = defaultOldest.toLocalDateTime();
+        }
+        liveFrom = Timestamp.valueOf(oldestLive);
+    }
+
+    /**
+     * 已挂载的分区 分区开始时间 -> 分区表名
+     *
+     * @param partitionNames 已挂载的分区表名
+     * @return 按开始时间升序的分区
+     */
+    private TreeMap<LocalDateTime, String> listPartitions(List<String> partitionNames) {
+        TreeMap<LocalDateTime, String> partitions = new TreeMap<>();
+        String prefix = relationName + PARTITION_NAME_INFIX;
+        for (String name : partitionNames) {
+            if (!name.startsWith(prefix)) {
+                continue;
+            }
+            LocalDateTime start = partitionUnit.parse(name.substring(prefix.length()));
+            if (start != null) {
+                partitions.put(start, name);
+            }
+        }
+        return partitions;
+    }
+
+    private void createPartition(LocalDateTime start) {
+        String partitionName = relationName + PARTITION_NAME_INFIX + partitionUnit.format(start);
+        String sql = String.format("CREATE TABLE IF NOT EXISTS %s.%s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                schema, partitionName, getTableName(), Timestamp.valueOf(start),
+                Timestamp.valueOf(start.plus(1, partitionUnit.getUnit())));
+        try {
+            getJdbcTemplate().execute(sql);
+        } catch (Exception e) {
+            // 多个节点同时创建时可能失败 下次维护时重试
+            // 兜底分区已有该范围的任务时会一直失败，任务会持续写入兜底分区，需要人工把任务迁移到新分区
+            log.error("[consistency framework] create task partition {} failed, tasks in its range are written to "
+                    + "the default partition", partitionName, e);
+        }
+    }
+
+    private boolean hasUnfinishedTask(String partitionName) {
+        Boolean exists = getJdbcTemplate().queryForObject(String.format(
+                "SELECT EXISTS (SELECT 1 FROM %s.%s WHERE task_status <> 3)", schema, partitionName), Boolean.class);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * 兜底分区中未完成任务的最早创建时间
+     *
+     * @param partitionNames 已挂载的分区表名
+     * @return 最早创建时间 兜底分区不存在或没有未完成的任务时返回null
+     */
+    private Timestamp getDefaultPartitionOldestUnfinished(List<String> partitionNames) {
+        String partitionName = relationName + DEFAULT_PARTITION_SUFFIX;
+        if (!partitionNames.contains(partitionName)) {
+            return null;
+        }
+        return getJdbcTemplate().queryForObject(String.format(
+                "SELECT min(gmt_create) FROM %s.%s WHERE task_status <> 3", schema, partitionName), Timestamp.class);
+    }
+
+    private void detachPartition(String partitionName, boolean dropDetached) {
+        try {
+            getJdbcTemplate().execute(String.format("ALTER TABLE %s DETACH PARTITION %s.%s", getTableName(), schema, partitionName));
+            if (dropDetached) {
+                getJdbcTemplate().execute(String.format("DROP TABLE IF EXISTS %s.%s", schema, partitionName));
+            }
+            log.info("[consistency framework] task partition {} is completed and {}", partitionName,
+                    dropDetached ? "dropped" : "detached");
+        } catch (Exception e) {
+            log.warn("[consistency framework] detach task partition {} failed", partitionName, e);
+        }
+    }
+}
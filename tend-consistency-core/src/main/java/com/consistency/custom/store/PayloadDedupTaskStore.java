@@ -0,0 +1,164 @@
+package com.consistency.custom.store;
+
+import com.consistency.model.ConsistencyTaskInstance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 任务入参去重的任务存储 包装其他数据库存储
+ * 入参不小于阈值的任务只在任务表中保存入参的哈希，入参内容保存在{@link TaskPayloadStore}中，读取后回填
+ * 任务完成后释放对入参的引用；批量完成只有部分任务生效时不释放，宁可多保留入参也不误删仍被引用的入参
+ *
+ * @author wzw
+ **/
+@Slf4j
+public class PayloadDedupTaskStore extends DelegatingTaskStore {
+
+    /**
+     * 任务表中入参引用的前缀 任务入参是JSON数组，不会以该前缀开头
+     */
+    public static final String PAYLOAD_REF_PREFIX = "#sha256:";
+
+    private final TaskPayloadStore taskPayloadStore;
+
+    /**
+     * 去重的入参最小长度
+     */
+    private final int minLength;
+
+    public PayloadDedupTaskStore(TaskStore delegate, TaskPayloadStore taskPayloadStore, int minLength) {
+        super(delegate);
+        this.taskPayloadStore = taskPayloadStore;
+        this.minLength = minLength;
+    }
+
+    @Override
+    public int insert(ConsistencyTaskInstance taskInstance) {
+        return insertBatch(Collections.singletonList(taskInstance));
+    }
+
+    @Override
+    public int insertBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        SortedMap<String, String> payloads = new TreeMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        Map<ConsistencyTaskInstance, String> originals = new IdentityHashMap<>();
+        for (ConsistencyTaskInstance taskInstance : taskInstances) {
+            String payload = taskInstance.getTaskParameter();
+            if (payload == null || payload.length() < minLength) {
+                continue;
+            }
+            String hash = TaskPayloadStore.hash(payload);
+            payloads.put(hash, payload);
+            counts.merge(hash, 1, Integer::sum);
+            originals.put(taskInstance, payload);
+            taskInstance.setPayloadHash(hash);
+            taskInstance.setTaskParameter(PAYLOAD_REF_PREFIX + hash);
+        }
+        try {
+            if (payloads.isEmpty()) {
+                return doInsert(taskInstances);
+            }
+            taskPayloadStore.retain(payloads, counts);
+            try {
+                return doInsert(taskInstances);
+            } catch (RuntimeException e) {
+                // 有事务时随事务一起回滚 没有事务时引用计数已经提交，需要释放，否则入参行永远不会被删除
+                if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                    releaseQuietly(new TreeMap<>(counts));
+                }
+                throw e;
+            }
+        } finally {
+            originals.forEach(ConsistencyTaskInstance::setTaskParameter);
+        }
+    }
+
+    private int doInsert(Collection<ConsistencyTaskInstance> taskInstances) {
+        return taskInstances.size() == 1 ? super.insert(taskInstances.iterator().next()) : super.insertBatch(taskInstances);
+    }
+
+    private void releaseQuietly(SortedMap<String, Integer> counts) {
+        try {
+            taskPayloadStore.release(counts);
+        } catch (Exception e) {
+            log.error("[consistency framework] release payload references of failed insert failed, {} payloads may leak",
+                    counts.size(), e);
+        }
+    }
+
+    @Override
+    public ConsistencyTaskInstance get(Long id, Long shardKey) {
+        ConsistencyTaskInstance taskInstance = super.get(id, shardKey);
+        if (taskInstance != null) {
+            resolve(taskInstance);
+        }
+        return taskInstance;
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> scan(long startTime, long endTime, long limitTaskCount) {
+        List<ConsistencyTaskInstance> taskInstances = super.scan(startTime, endTime, limitTaskCount);
+        taskInstances.forEach(this::resolve);
+        return taskInstances;
+    }
+
+    @Override
+    public int complete(ConsistencyTaskInstance taskInstance) {
+        int result = super.complete(taskInstance);
+        if (result > 0) {
+            release(Collections.singletonList(taskInstance));
+        }
+        return result;
+    }
+
+    @Override
+    public int completeBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        int result = super.completeBatch(taskInstances);
+        if (result == taskInstances.size()) {
+            release(taskInstances);
+        } else {
+            log.debug("[consistency framework] {} of {} tasks completed, keep their payload references",
+                    result, taskInstances.size());
+        }
+        return result;
+    }
+
+    /**
+     * 把任务表中的入参引用替换为入参内容
+     *
+     * @param taskInstance 任务实例
+     */
+    private void resolve(ConsistencyTaskInstance taskInstance) {
+        String taskParameter = taskInstance.getTaskParameter();
+        if (taskParameter == null || !taskParameter.startsWith(PAYLOAD_REF_PREFIX)) {
+            return;
+        }
+        String hash = taskParameter.substring(PAYLOAD_REF_PREFIX.length());
+        String payload = taskPayloadStore.get(hash);
+        if (payload != null) {
+            taskInstance.setPayloadHash(hash);
+            taskInstance.setTaskParameter(payload);
+        }
+    }
+
+    private void release(Collection<ConsistencyTaskInstance> taskInstances) {
+        SortedMap<String, Integer> counts = new TreeMap<>();
+        for (ConsistencyTaskInstance taskInstance : taskInstances) {
+            if (taskInstance.getPayloadHash() != null) {
+                counts.merge(taskInstance.getPayloadHash(), 1, Integer::sum);
+            }
+        }
+        if (!counts.isEmpty()) {
+            taskPayloadStore.release(counts);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.consistency.custom.store;
+
+import com.consistency.exceptions.ConsistencyException;
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.model.DeadLetterQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 分库分表的任务存储 按分片键路由到各个分片（一个库中的一张任务表）
+ * 分片下标为 floorMod(shardKey, 分片数)，写入时改写分片键的低位使任务均匀落到各个分片
+ * 业务数据源上的分片排在最前面，调用方有事务时只写入这些分片，保证任务与业务数据在同一个本地事务中
+ * 扫描和过期租约回收并行地在所有分片上执行后合并结果
+ *
+ * @author wzw
+ **/
+@Slf4j
+public class ShardingTaskStore implements TaskStore {
+
+    private final List<TaskStore> shards;
+
+    /**
+     * 业务数据源上的分片数 即分片列表中前localShardCount个分片
+     */
+    private final int localShardCount;
+
+    /**
+     * 当前线程的写入来自没有事务的调用方 框架为写入自行开启的事务（如组提交）不限制新任务的分片
+     */
+    private static final ThreadLocal<Boolean> CALLER_WITHOUT_TRANSACTION = ThreadLocal.withInitial(() -> false);
+
+    private final AtomicLong roundRobin = new AtomicLong();
+
+    private final ExecutorService fanOutExecutor;
+
+    /**
+     * 由分片存储创建、关闭时一并释放的资源 如分库的连接池
+     */
+    private final List<AutoCloseable> ownedResources;
+
+    /**
+     * @param shards          所有分片 业务数据源上的分片在前
+     * @param localShardCount 业务数据源上的分片数
+     */
+    public ShardingTaskStore(List<TaskStore> shards, int localShardCount) {
+        this(shards, localShardCount, Collections.emptyList());
+    }
+
+    /**
+     * @param shards          所有分片 业务数据源上的分片在前
+     * @param localShardCount 业务数据源上的分片数
+     * @param ownedResources  关闭时一并释放的资源
+     */
+    public ShardingTaskStore(List<TaskStore> shards, int localShardCount, List<? extends AutoCloseable> ownedResources) {
+        if (shards.isEmpty() || localShardCount < 1 || localShardCount > shards.size()) {
+            throw new ConsistencyException("任务分片配置错误，业务数据源上至少要有一个分片");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.localShardCount = localShardCount;
+        this.ownedResources = new ArrayList<>(ownedResources);
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        this.fanOutExecutor = Executors.newFixedThreadPool(shards.size(), r -> {
+            Thread thread = new Thread(r, "CTShardFanOut_" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 代替没有事务的调用方执行写入 期间即使框架自行开启了事务，新任务也可以写入所有分片
+     *
+     * @param action 写入操作
+     * @param <T>    结果类型
+     * @return 写入操作的结果
+     */
+    public static <T> T callerWithoutTransaction(Supplier<T> action) {
+        boolean previous = CALLER_WITHOUT_TRANSACTION.get();
+        CALLER_WITHOUT_TRANSACTION.set(true);
+        try {
+            return action.get();
+        } finally {
+            CALLER_WITHOUT_TRANSACTION.set(previous);
+        }
+    }
+
+    /**
+     * 分片数
+     *
+     * @return 分片数
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public int insert(ConsistencyTaskInstance taskInstance) {
+        return shards.get(assignShard(taskInstance)).insert(taskInstance);
+    }
+
+    @Override
+    public int insertBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        taskInstances.forEach(this::assignShard);
+        return groupByShard(taskInstances).entrySet().stream()
+                .mapToInt(entry -> shards.get(entry.getKey()).insertBatch(entry.getValue()))
+                .sum();
+    }
+
+    @Override
+    public ConsistencyTaskInstance get(Long id, Long shardKey) {
+        return shardOf(shardKey).get(id, shardKey);
+    }
+
+    @Override
+    public boolean claim(ConsistencyTaskInstance taskInstance) {
+        return shardOf(taskInstance.getShardKey()).claim(taskInstance);
+    }
+
+    @Override
+    public boolean claimInit(ConsistencyTaskInstance taskInstance) {
+        return shardOf(taskInstance.getShardKey()).claimInit(taskInstance);
+    }
+
+    @Override
+    public boolean unclaim(ConsistencyTaskInstance taskInstance, int previousStatus, long previousExecuteTime) {
+        return shardOf(taskInstance.getShardKey()).unclaim(taskInstance, previousStatus, previousExecuteTime);
+    }
+
+    @Override
+    public boolean renewLease(Collection<ConsistencyTaskInstance> taskInstances, long leaseExpireTime) {
+        boolean result = false;
+        for (Map.Entry<Integer, List<ConsistencyTaskInstance>> entry : groupByShard(taskInstances).entrySet()) {
+            result |= shards.get(entry.getKey()).renewLease(entry.getValue(), leaseExpireTime);
+        }
+        return result;
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> listExpiredLease(long now, long orphanBefore, int batchSize) {
+        // 每个分片各取batchSize条 下一轮回收时继续处理剩余的任务
+        return fanOut(shard -> shard.listExpiredLease(now, orphanBefore, batchSize)).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public int reapExpiredLease(Collection<ConsistencyTaskInstance> taskInstances, long now, long orphanBefore) {
+        return groupByShard(taskInstances).entrySet().stream()
+                .mapToInt(entry -> shards.get(entry.getKey()).reapExpiredLease(entry.getValue(), now, orphanBefore))
+                .sum();
+    }
+
+    @Override
+    public int complete(ConsistencyTaskInstance taskInstance) {
+        return shardOf(taskInstance.getShardKey()).complete(taskInstance);
+    }
+
+    @Override
+    public int completeBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return groupByShard(taskInstances).entrySet().stream()
+                .mapToInt(entry -> shards.get(entry.getKey()).completeBatch(entry.getValue()))
+                .sum();
+    }
+
+    @Override
+    public boolean fail(ConsistencyTaskInstance taskInstance) {
+        return shardOf(taskInstance.getShardKey()).fail(taskInstance);
+    }
+
+    @Override
+    public int failBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return groupByShard(taskInstances).entrySet().stream()
+                .mapToInt(entry -> shards.get(entry.getKey()).failBatch(entry.getValue()))
+                .sum();
+    }
+
+    @Override
+    public boolean failFallback(ConsistencyTaskInstance taskInstance) {
+        return shardOf(taskInstance.getShardKey()).failFallback(taskInstance);
+    }
+
+    @Override
+    public List<ConsistencyTaskInstance> scan(long startTime, long endTime, long limitTaskCount) {
+        // 每个分片各取limitTaskCount条 合并后再按执行时间倒序截取
+        return fanOut(shard -> shard.scan(startTime, endTime, limitTaskCount)).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(ConsistencyTaskInstance::getExecuteTime).reversed())
+                .limit(limitTaskCount)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void scanRefs(long startTime, long endTime, long limitTaskCount, TaskRefConsumer consumer) {
+        // 消费者不要求线程安全 逐个分片扫描，每个分片各取limitTaskCount条
+        for (TaskStore shard : shards) {
+            shard.scanRefs(startTime, endTime, limitTaskCount, consumer);
+        }
+    }
+
+    @Override
+    public int moveToDeadLetter(int maxAttempts, Date createdBefore, int batchSize) {
+        return fanOutAll(shard -> shard.moveToDeadLetter(maxAttempts, createdBefore, batchSize));
+    }
+
+    @Override
+    public int replayDeadLetter(DeadLetterQuery query, long executeTime) {
+        return fanOutAll(shard -> shard.replayDeadLetter(query, executeTime));
+    }
+
+    /**
+     * 关闭扫描线程池、各分片和分库的连接池 由spring容器销毁bean时调用
+     */
+    @Override
+    public void close() {
+        fanOutExecutor.shutdown();
+        shards.forEach(TaskStore::close);
+        for (AutoCloseable resource : ownedResources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("[consistency framework] close shard resource {} fail", resource, e);
+            }
+        }
+    }
+
+    /**
+     * 为新任务选择分片并改写分片键的低位 返回分片下标
+     *
+     * @param taskInstance 任务实例
+     * @return 分片下标
+     */
+    private int assignShard(ConsistencyTaskInstance taskInstance) {
+        // 调用方有事务时只写入业务数据源上的分片 与业务数据在同一个本地事务中
+        boolean callerTransactionActive = !CALLER_WITHOUT_TRANSACTION.get()
+                && TransactionSynchronizationManager.isActualTransactionActive();
+        int candidateCount = callerTransactionActive ? localShardCount : shards.size();
+        int target = (int) (roundRobin.getAndIncrement() % candidateCount);
+        long shardKey = taskInstance.getShardKey() == null ? 0L : taskInstance.getShardKey();
+        taskInstance.setShardKey(shardKey - Math.floorMod(shardKey, shards.size()) + target);
+        return target;
+    }
+
+    private TaskStore shardOf(Long shardKey) {
+        return shards.get(indexOf(shardKey));
+    }
+
+    private int indexOf(Long shardKey) {
+        return (int) Math.floorMod(shardKey == null ? 0L : shardKey, (long) shards.size());
+    }
+
+    private Map<Integer, List<ConsistencyTaskInstance>> groupByShard(Collection<ConsistencyTaskInstance> taskInstances) {
+        Map<Integer, List<ConsistencyTaskInstance>> shardMap = new LinkedHashMap<>();
+        for (ConsistencyTaskInstance taskInstance : taskInstances) {
+            shardMap.computeIfAbsent(indexOf(taskInstance.getShardKey()), index -> new ArrayList<>()).add(taskInstance);
+        }
+        return shardMap;
+    }
+
+    /**
+     * 在所有分片上并行执行 单个分片失败时跳过该分片，其余分片的结果照常返回
+     * 只用于扫描、查询过期租约等下一轮会重试的操作
+     *
+     * @param action 分片上的操作
+     * @param <T>    结果类型
+     * @return 各个分片的结果
+     */
+    private <T> List<T> fanOut(Function<TaskStore, T> action) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            TaskStore shard = shards.get(i);
+            int index = i;
+            futures.add(CompletableFuture.supplyAsync(() -> action.apply(shard), fanOutExecutor)
+                    .exceptionally(e -> {
+                        log.error("[consistency framework] task shard {} operate failed", index, e);
+                        return null;
+                    }));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            T result = future.join();
+            if (result != null) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 在所有分片上并行执行修改操作 任一分片失败时抛出异常，避免调用方把部分分片的结果当作全部完成
+     * 各分片在各自的事务中执行，已成功的分片不会回滚
+     *
+     * @param action 分片上的操作 返回影响的行数
+     * @return 所有分片影响的行数之和
+     */
+    private int fanOutAll(Function<TaskStore, Integer> action) {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(shards.size());
+        for (TaskStore shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> action.apply(shard), fanOutExecutor));
+        }
+        int total = 0;
+        List<Integer> failedShards = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                total += futures.get(i).join();
+            } catch (CompletionException e) {
+                log.error("[consistency framework] task shard {} operate failed", i, e.getCause());
+                failedShards.add(i);
+            }
+        }
+        if (!failedShards.isEmpty()) {
+            throw new ConsistencyException(String.format("任务分片%s操作失败，其余分片已处理%d条", failedShards, total));
+        }
+        return total;
+    }
+}
@@ -0,0 +1,145 @@
+package com.consistency.custom.store;
+
+import com.consistency.model.ConsistencyTaskInstance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 任务定义表的存取 每个方法签名对应一个整数id，任务定义在各节点的内存中缓存
+ * 任务定义只包含同一任务方法的所有任务都相同的字符串信息
+ *
+ * @author wzw
+ **/
+@Slf4j
+public class TaskDefinitionStore {
+
+    private static final String TABLE_NAME = "consistency.tend_consistency_task_definition";
+
+    private static final String COLUMNS = "id,method_sign_name,method_name,parameter_types,alert_expression,"
+            + "alert_action_bean_name,fallback_class_name";
+
+    private static final String UPSERT_SQL = "INSERT INTO " + TABLE_NAME + " (method_sign_name,method_name,"
+            + "parameter_types,alert_expression,alert_action_bean_name,fallback_class_name) VALUES (?,?,?,?,?,?)"
+            + " ON CONFLICT (method_sign_name) DO UPDATE SET method_name = EXCLUDED.method_name,"
+            + " parameter_types = EXCLUDED.parameter_types, alert_expression = EXCLUDED.alert_expression,"
+            + " alert_action_bean_name = EXCLUDED.alert_action_bean_name,"
+            + " fallback_class_name = EXCLUDED.fallback_class_name, gmt_modified = now() RETURNING id";
+
+    private static final String GET_SQL = "SELECT " + COLUMNS + " FROM " + TABLE_NAME + " WHERE id = ?";
+
+    private static final String LIST_SQL = "SELECT " + COLUMNS + " FROM " + TABLE_NAME;
+
+    private static final RowMapper<ConsistencyTaskInstance> ROW_MAPPER = (rs, rowNum) -> ConsistencyTaskInstance.builder()
+            .definitionId(rs.getInt("id"))
+            .methodSignName(rs.getString("method_sign_name"))
+            .methodName(rs.getString("method_name"))
+            .parameterTypes(rs.getString("parameter_types"))
+            .alertExpression(rs.getString("alert_expression"))
+            .alertActionBeanName(rs.getString("alert_action_bean_name"))
+            .fallbackClassName(rs.getString("fallback_class_name"))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 在独立事务中注册任务定义 调用方事务回滚时已缓存的任务定义id仍然有效
+     */
+    private final TransactionTemplate requiresNewTemplate;
+
+    /**
+     * 任务定义id -> 任务定义 只使用其中的任务定义字段
+     */
+    private final Map<Integer, ConsistencyTaskInstance> definitionMap = new ConcurrentHashMap<>();
+
+    /**
+     * 方法签名 -> 任务定义id
+     */
+    private final Map<String, Integer> definitionIdMap = new ConcurrentHashMap<>();
+
+    public TaskDefinitionStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.requiresNewTemplate = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 加载所有任务定义到缓存
+     */
+    public void loadAll() {
+        List<ConsistencyTaskInstance> definitions = jdbcTemplate.query(LIST_SQL, ROW_MAPPER);
+        definitions.forEach(this::cache);
+        log.info("[consistency framework] {} task definitions are loaded", definitions.size());
+    }
+
+    /**
+     * 注册任务实例的任务定义 已注册且内容未变的方法签名直接返回缓存的id
+     * 方法的告警或降级配置在重新部署后发生变化时，更新任务定义表中的任务定义
+     *
+     * @param taskInstance 任务实例
+     * @return 任务定义id
+     */
+    public Integer register(ConsistencyTaskInstance taskInstance) {
+        Integer definitionId = definitionIdMap.get(taskInstance.getMethodSignName());
+        if (definitionId != null && sameDefinition(definitionMap.get(definitionId), taskInstance)) {
+            return definitionId;
+        }
+        definitionId = requiresNewTemplate.execute(status -> jdbcTemplate.queryForObject(UPSERT_SQL, Integer.class,
+                taskInstance.getMethodSignName(), taskInstance.getMethodName(), taskInstance.getParameterTypes(),
+                taskInstance.getAlertExpression(), taskInstance.getAlertActionBeanName(),
+                taskInstance.getFallbackClassName()));
+        ConsistencyTaskInstance definition = ConsistencyTaskInstance.builder()
+                .definitionId(definitionId)
+                .methodSignName(taskInstance.getMethodSignName())
+                .methodName(taskInstance.getMethodName())
+                .parameterTypes(taskInstance.getParameterTypes())
+                .alertExpression(taskInstance.getAlertExpression())
+                .alertActionBeanName(taskInstance.getAlertActionBeanName())
+                .fallbackClassName(taskInstance.getFallbackClassName())
+                .build();
+        cache(definition);
+        return definitionId;
+    }
+
+    /**
+     * 获取任务定义 缓存中没有时（如其他节点新注册的任务定义）从数据库加载
+     *
+     * @param definitionId 任务定义id
+     * @return 任务定义 不存在时返回null
+     */
+    public ConsistencyTaskInstance get(Integer definitionId) {
+        ConsistencyTaskInstance definition = definitionMap.get(definitionId);
+        if (definition != null) {
+            return definition;
+        }
+        List<ConsistencyTaskInstance> definitions = jdbcTemplate.query(GET_SQL, ROW_MAPPER, definitionId);
+        if (definitions.isEmpty()) {
+            log.warn("[consistency framework] can not find task definition of id {}", definitionId);
+            return null;
+        }
+        cache(definitions.get(0));
+        return definitions.get(0);
+    }
+
+    private boolean sameDefinition(ConsistencyTaskInstance definition, ConsistencyTaskInstance taskInstance) {
+        return definition != null
+                && Objects.equals(definition.getMethodName(), taskInstance.getMethodName())
+                && Objects.equals(definition.getParameterTypes(), taskInstance.getParameterTypes())
+                && Objects.equals(definition.getAlertExpression(), taskInstance.getAlertExpression())
+                && Objects.equals(definition.getAlertActionBeanName(), taskInstance.getAlertActionBeanName())
+                && Objects.equals(definition.getFallbackClassName(), taskInstance.getFallbackClassName());
+    }
+
+    private void cache(ConsistencyTaskInstance definition) {
+        definitionMap.put(definition.getDefinitionId(), definition);
+        definitionIdMap.put(definition.getMethodSignName(), definition.getDefinitionId());
+    }
+}
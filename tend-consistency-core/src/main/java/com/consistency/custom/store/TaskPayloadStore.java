@@ -0,0 +1,109 @@
+package com.consistency.custom.store;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * 任务入参的内容寻址存储 以入参内容的SHA-256为键，相同的入参只保存一份并记录引用数
+ * 读取过的入参缓存在进程内的LRU中，相同入参的任务共用同一个字符串
+ *
+ * @author wzw
+ **/
+@Slf4j
+public class TaskPayloadStore {
+
+    private static final String TABLE_NAME = "consistency.tend_consistency_task_payload";
+
+    private static final String RETAIN_SQL = "INSERT INTO " + TABLE_NAME + " (hash,payload,ref_count) VALUES (?,?,?)"
+            + " ON CONFLICT (hash) DO UPDATE SET ref_count = " + TABLE_NAME + ".ref_count + EXCLUDED.ref_count,"
+            + " gmt_modified = now()";
+
+    private static final String RELEASE_SQL = "UPDATE " + TABLE_NAME + " SET ref_count = ref_count - ?, gmt_modified = now()"
+            + " WHERE hash = ?";
+
+    private static final String DELETE_UNREFERENCED_SQL = "DELETE FROM " + TABLE_NAME + " WHERE hash = ? AND ref_count <= 0";
+
+    private static final String GET_SQL = "SELECT payload FROM " + TABLE_NAME + " WHERE hash = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 入参哈希 -> 入参内容
+     */
+    private final Cache<String, String> payloadCache;
+
+    public TaskPayloadStore(JdbcTemplate jdbcTemplate, int cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.payloadCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * 计算入参内容的哈希
+     *
+     * @param payload 入参内容
+     * @return 十六进制的SHA-256
+     */
+    public static String hash(String payload) {
+        return DigestUtil.sha256Hex(payload);
+    }
+
+    /**
+     * 增加入参的引用数 入参不存在时写入
+     * 按哈希排序后批量写入，并发的事务以相同的顺序加锁，避免死锁
+     *
+     * @param payloads 入参哈希 -> 入参内容
+     * @param counts   入参哈希 -> 增加的引用数
+     */
+    public void retain(SortedMap<String, String> payloads, Map<String, Integer> counts) {
+        List<Object[]> batchArgs = new ArrayList<>(payloads.size());
+        for (Map.Entry<String, String> entry : payloads.entrySet()) {
+            batchArgs.add(new Object[]{entry.getKey(), entry.getValue(), counts.get(entry.getKey())});
+            payloadCache.put(entry.getKey(), entry.getValue());
+        }
+        jdbcTemplate.batchUpdate(RETAIN_SQL, batchArgs);
+    }
+
+    /**
+     * 减少入参的引用数 并删除不再被引用的入参
+     *
+     * @param counts 入参哈希 -> 减少的引用数 需按哈希排序
+     */
+    public void release(SortedMap<String, Integer> counts) {
+        List<Object[]> releaseArgs = new ArrayList<>(counts.size());
+        List<Object[]> deleteArgs = new ArrayList<>(counts.size());
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            releaseArgs.add(new Object[]{entry.getValue(), entry.getKey()});
+            deleteArgs.add(new Object[]{entry.getKey()});
+        }
+        jdbcTemplate.batchUpdate(RELEASE_SQL, releaseArgs);
+        jdbcTemplate.batchUpdate(DELETE_UNREFERENCED_SQL, deleteArgs);
+    }
+
+    /**
+     * 获取入参内容 优先从缓存中获取
+     *
+     * @param hash 入参哈希
+     * @return 入参内容 不存在时返回null
+     */
+    public String get(String hash) {
+        String payload = payloadCache.getIfPresent(hash);
+        if (payload != null) {
+            return payload;
+        }
+        List<String> payloads = jdbcTemplate.queryForList(GET_SQL, String.class, hash);
+        if (payloads.isEmpty()) {
+            log.warn("[consistency framework] can not find task payload of hash {}", hash);
+            return null;
+        }
+        payloadCache.put(hash, payloads.get(0));
+        return payloads.get(0);
+    }
+}
@@ -0,0 +1,19 @@
+package com.consistency.custom.store;
+
+/**
+ * 任务引用的消费者 只接收任务的id、分片键和执行时间，避免创建任务实例和装箱
+ *
+ * @author wzw
+ **/
+@FunctionalInterface
+public interface TaskRefConsumer {
+
+    /**
+     * 消费一个任务引用
+     *
+     * @param id          任务id
+     * @param shardKey    任务分片键
+     * @param executeTime 执行时间
+     */
+    void accept(long id, long shardKey, long executeTime);
+}
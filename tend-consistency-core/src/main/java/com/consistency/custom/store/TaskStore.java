@@ -0,0 +1,193 @@
+package com.consistency.custom.store;
+
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.model.DeadLetterQuery;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 任务存储接口
+ * 框架提供MyBatis-Plus（默认）、JdbcTemplate、按时间分区和内存四种实现，通过tend.consistency.store.type选择
+ * 如业务服务需要定制，实现该接口并注入spring容器即可
+ * 存储持有线程池、连接池等资源时覆盖{@link #close()}，spring容器销毁bean时调用
+ *
+ * @author wzw
+ **/
+public interface TaskStore extends AutoCloseable {
+
+    /**
+     * 释放存储持有的资源 默认不持有任何资源
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * 写入任务 写入后回填主键
+     *
+     * @param taskInstance 任务实例
+     * @return 写入的行数
+     */
+    int insert(ConsistencyTaskInstance taskInstance);
+
+    /**
+     * 批量写入任务 写入后回填主键
+     *
+     * @param taskInstances 任务实例
+     * @return 写入的行数
+     */
+    int insertBatch(Collection<ConsistencyTaskInstance> taskInstances);
+
+    /**
+     * 根据id和分片键获取任务
+     *
+     * @param id       任务id
+     * @param shardKey 任务分片键
+     * @return 任务实例 不存在时返回null
+     */
+    ConsistencyTaskInstance get(Long id, Long shardKey);
+
+    /**
+     * 启动非执行中的任务 执行次数加一，并写入执行时间和租约过期时间
+     *
+     * @param taskInstance 任务实例
+     * @return 是否启动成功
+     */
+    boolean claim(ConsistencyTaskInstance taskInstance);
+
+    /**
+     * 认领从未启动过的新任务 写入任务实例中的状态、执行次数、执行时间和租约过期时间
+     *
+     * @param taskInstance 任务实例
+     * @return 是否认领成功
+     */
+    boolean claimInit(ConsistencyTaskInstance taskInstance);
+
+    /**
+     * 撤销本节点的认领 任务恢复认领前的状态、执行次数和执行时间并清除租约
+     * 只在任务仍处于本次认领写入的执行状态（执行次数和执行时间未被改写）时生效
+     *
+     * @param taskInstance        认领后的任务实例
+     * @param previousStatus      认领前的任务状态
+     * @param previousExecuteTime 认领前的执行时间
+     * @return 是否撤销成功
+     */
+    boolean unclaim(ConsistencyTaskInstance taskInstance, int previousStatus, long previousExecuteTime);
+
+    /**
+     * 批量续约执行中的任务
+     *
+     * @param taskInstances   执行中的任务
+     * @param leaseExpireTime 新的租约过期时间
+     * @return 是否续约成功
+     */
+    boolean renewLease(Collection<ConsistencyTaskInstance> taskInstances, long leaseExpireTime);
+
+    /**
+     * 查询租约过期的执行中任务
+     * 没有租约的执行中任务（引入租约之前遗留的任务）在修改时间早于orphanBefore时同样返回
+     *
+     * @param now          当前时间
+     * @param orphanBefore 没有租约的执行中任务的回收时间点
+     * @param batchSize    最多返回的任务数
+     * @return 租约过期的执行中任务
+     */
+    List<ConsistencyTaskInstance> listExpiredLease(long now, long orphanBefore, int batchSize);
+
+    /**
+     * 将租约过期的执行中任务重置为失败 写入任务实例中的错误信息和下次执行时间
+     * 只重置仍在执行中且租约仍然过期的任务，查询后被续约的任务保持不变
+     *
+     * @param taskInstances 租约过期的执行中任务
+     * @param now           当前时间
+     * @param orphanBefore  没有租约的执行中任务的回收时间点
+     * @return 重置的任务数
+     */
+    int reapExpiredLease(Collection<ConsistencyTaskInstance> taskInstances, long now, long orphanBefore);
+
+    /**
+     * 完成任务 即删除任务
+     *
+     * @param taskInstance 任务实例
+     * @return 删除的行数
+     */
+    int complete(ConsistencyTaskInstance taskInstance);
+
+    /**
+     * 批量完成任务
+     *
+     * @param taskInstances 任务实例
+     * @return 删除的行数
+     */
+    int completeBatch(Collection<ConsistencyTaskInstance> taskInstances);
+
+    /**
+     * 标记任务失败 写入错误信息和下次执行时间
+     *
+     * @param taskInstance 任务实例
+     * @return 是否标记成功
+     */
+    boolean fail(ConsistencyTaskInstance taskInstance);
+
+    /**
+     * 批量标记任务失败
+     *
+     * @param taskInstances 任务实例
+     * @return 更新的行数
+     */
+    int failBatch(Collection<ConsistencyTaskInstance> taskInstances);
+
+    /**
+     * 标记任务降级失败 写入错误信息
+     *
+     * @param taskInstance 任务实例
+     * @return 是否标记成功
+     */
+    boolean failFallback(ConsistencyTaskInstance taskInstance);
+
+    /**
+     * 扫描执行时间在指定范围内的未完成任务 按执行时间倒序
+     *
+     * @param startTime      开始时间
+     * @param endTime        结束时间
+     * @param limitTaskCount 最多返回的任务数
+     * @return 未完成的任务
+     */
+    List<ConsistencyTaskInstance> scan(long startTime, long endTime, long limitTaskCount);
+
+    /**
+     * 扫描执行时间在指定范围内的未完成任务 只返回任务的id、分片键和执行时间
+     * 默认基于{@link #scan}实现，数据库存储可以只查询这三列
+     *
+     * @param startTime      开始时间
+     * @param endTime        结束时间
+     * @param limitTaskCount 最多返回的任务数
+     * @param consumer       任务引用的消费者
+     */
+    default void scanRefs(long startTime, long endTime, long limitTaskCount, TaskRefConsumer consumer) {
+        for (ConsistencyTaskInstance taskInstance : scan(startTime, endTime, limitTaskCount)) {
+            consumer.accept(taskInstance.getId(), taskInstance.getShardKey(), taskInstance.getExecuteTime());
+        }
+    }
+
+    /**
+     * 把执行次数达到上限或创建时间过早的失败任务移入死信表
+     *
+     * @param maxAttempts   最大执行次数
+     * @param createdBefore 创建时间早于该时间的失败任务也会被移入
+     * @param batchSize     最多移入的任务数
+     * @return 移入的任务数
+     */
+    int moveToDeadLetter(int maxAttempts, Date createdBefore, int batchSize);
+
+    /**
+     * 把满足条件的死信任务移回任务表 重置为初始化状态并在指定时间重新执行
+     *
+     * @param query       重放条件
+     * @param executeTime 重新执行的时间
+     * @return 移回的任务数
+     */
+    int replayDeadLetter(DeadLetterQuery query, long executeTime);
+}
@@ -0,0 +1,41 @@
+package com.consistency.enums;
+
+/**
+ * 任务熔断器状态枚举
+ *
+ * @author wzw
+ **/
+public enum CircuitBreakerStateEnum {
+
+    /**
+     * 关闭 正常放行
+     */
+    CLOSED(0, "关闭"),
+    /**
+     * 打开 拒绝执行
+     */
+    OPEN(1, "打开"),
+    /**
+     * 半开 允许少量试探执行
+     */
+    HALF_OPEN(2, "半开");
+
+    private final Integer code;
+
+    private final String desc;
+
+    CircuitBreakerStateEnum(int code, String desc) {
+        this.code = code;
+        this.desc = desc;
+    }
+
+    public Integer getCode() {
+        return code;
+    }
+
+
+    public String getDesc() {
+        return desc;
+    }
+
+}
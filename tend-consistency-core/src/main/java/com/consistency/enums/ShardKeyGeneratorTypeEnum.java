@@ -0,0 +1,52 @@
+package com.consistency.enums;
+
+/**
+ * 默认分片键生成器类型枚举
+ *
+ * @author wzw
+ **/
+public enum ShardKeyGeneratorTypeEnum {
+
+    /**
+     * 无锁的snowflake算法 机器id从zk租用
+     */
+    SNOWFLAKE("snowflake", "snowflake算法"),
+    /**
+     * 号段 从zk批量租用连续的分片键，在本地递增分配
+     */
+    SEGMENT("segment", "号段分配");
+
+    private final String code;
+
+    private final String desc;
+
+    ShardKeyGeneratorTypeEnum(String code, String desc) {
+        this.code = code;
+        this.desc = desc;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+
+    public String getDesc() {
+        return desc;
+    }
+
+    /**
+     * 根据编码获取分片键生成器类型
+     *
+     * @param code 编码
+     * @return 分片键生成器类型 不存在时返回null
+     */
+    public static ShardKeyGeneratorTypeEnum of(String code) {
+        for (ShardKeyGeneratorTypeEnum value : values()) {
+            if (value.code.equalsIgnoreCase(code)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.consistency.enums;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 任务表分区粒度枚举
+ *
+ * @author wzw
+ **/
+public enum TaskPartitionUnitEnum {
+
+    /**
+     * 按天分区
+     */
+    DAY(ChronoUnit.DAYS, "yyyyMMdd"),
+    /**
+     * 按小时分区
+     */
+    HOUR(ChronoUnit.HOURS, "yyyyMMddHH");
+
+    private final ChronoUnit unit;
+
+    private final DateTimeFormatter suffixFormatter;
+
+    TaskPartitionUnitEnum(ChronoUnit unit, String suffixPattern) {
+        this.unit = unit;
+        this.suffixFormatter = DateTimeFormatter.ofPattern(suffixPattern);
+    }
+
+    public ChronoUnit getUnit() {
+        return unit;
+    }
+
+    /**
+     * 时间所在分区的开始时间
+     *
+     * @param time 时间
+     * @return 分区的开始时间
+     */
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    /**
+     * 分区表名的时间后缀
+     *
+     * @param partitionStart 分区的开始时间
+     * @return 时间后缀
+     */
+    public String format(LocalDateTime partitionStart) {
+        return suffixFormatter.format(partitionStart);
+    }
+
+    /**
+     * 解析分区表名的时间后缀
+     *
+     * @param suffix 时间后缀
+     * @return 分区的开始时间 格式不匹配时返回null
+     */
+    public LocalDateTime parse(String suffix) {
+        try {
+            return this == DAY ? LocalDate.parse(suffix, suffixFormatter).atStartOfDay()
+                    : LocalDateTime.parse(suffix, suffixFormatter);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 根据名称获取分区粒度
+     *
+     * @param name 名称
+     * @return 分区粒度 不存在时返回null
+     */
+    public static TaskPartitionUnitEnum of(String name) {
+        for (TaskPartitionUnitEnum value : values()) {
+            if (value.name().equalsIgnoreCase(name)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.consistency.enums;
+
+/**
+ * 任务存储类型枚举
+ *
+ * @author wzw
+ **/
+public enum TaskStoreTypeEnum {
+
+    /**
+     * 基于MyBatis-Plus的存储
+     */
+    MYBATIS("mybatis", "基于MyBatis-Plus的存储"),
+    /**
+     * 基于JdbcTemplate的存储
+     */
+    JDBC("jdbc", "基于JdbcTemplate的存储"),
+    /**
+     * 内存存储 仅用于单节点和测试
+     */
+    MEMORY("memory", "内存存储"),
+    /**
+     * 按创建时间分区的JdbcTemplate存储 完成的任务只修改状态，整个分区完成后摘除
+     */
+    PARTITIONED("partitioned", "按时间分区的存储");
+
+    private final String code;
+
+    private final String desc;
+
+    TaskStoreTypeEnum(String code, String desc) {
+        this.code = code;
+        this.desc = desc;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+
+    public String getDesc() {
+        return desc;
+    }
+
+    /**
+     * 根据编码获取存储类型
+     *
+     * @param code 编码
+     * @return 存储类型 不存在时返回null
+     */
+    public static TaskStoreTypeEnum of(String code) {
+        for (TaskStoreTypeEnum value : values()) {
+            if (value.code.equalsIgnoreCase(code)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+}
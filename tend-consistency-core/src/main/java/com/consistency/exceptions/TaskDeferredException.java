@@ -0,0 +1,13 @@
+package com.consistency.exceptions;
+
+/**
+ * 任务因执行资源不足而推迟执行的异常 不计为任务失败，任务保持原状态等待下次调度
+ *
+ * @author wzw
+ **/
+public class TaskDeferredException extends ConsistencyException {
+
+    public TaskDeferredException(String message) {
+        super(message);
+    }
+}
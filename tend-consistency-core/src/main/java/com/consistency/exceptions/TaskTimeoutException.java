@@ -0,0 +1,23 @@
+package com.consistency.exceptions;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 任务执行超时的异常 不可中断的任务体在超时后可能仍在执行，任务体真正结束时bodyFinished完成
+ * 任务体超过宽限期仍未结束时bodyFinished以异常完成
+ *
+ * @author wzw
+ **/
+public class TaskTimeoutException extends ConsistencyException {
+
+    private final transient CompletableFuture<Void> bodyFinished;
+
+    public TaskTimeoutException(String message, CompletableFuture<Void> bodyFinished) {
+        super(message);
+        this.bodyFinished = bodyFinished;
+    }
+
+    public CompletableFuture<Void> getBodyFinished() {
+        return bodyFinished;
+    }
+}
@@ -0,0 +1,176 @@
+package com.consistency.manager;
+
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.model.TaskPoolTuningMetrics;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 执行任务线程池的自适应调整器 按AIMD方式在配置的范围内调整线程数
+ * 数据库连接有等待或任务平均耗时超过基线耗时的容忍倍数时，按比例减少线程；
+ * 否则队列有积压且线程都在忙或有任务被拒绝时，增加一个线程
+ * 基线耗时取观测到的最小平均耗时，并缓慢向当前耗时靠拢，以适应任务本身耗时的变化
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AdaptiveTaskPoolTuner implements InitializingBean {
+
+    private static final String INCREASE = "INCREASE";
+
+    private static final String DECREASE = "DECREASE";
+
+    private static final String HOLD = "HOLD";
+
+    /**
+     * 基线耗时每个窗口向当前耗时靠拢的比例
+     */
+    private static final double BASELINE_DRIFT = 0.05D;
+
+    private static final boolean HIKARI_PRESENT = ClassUtils.isPresent("com.zaxxer.hikari.HikariDataSource",
+            AdaptiveTaskPoolTuner.class.getClassLoader());
+
+    private final InstrumentedThreadPoolExecutor consistencyTaskExecutor;
+
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+
+    private final ScheduledThreadPoolExecutor consistencyScheduledPool;
+
+    private final ObjectProvider<DataSource> dataSourceProvider;
+
+    private long lastCompletedCount;
+
+    private long lastExecuteNanos;
+
+    private long lastRejectedCount;
+
+    private double baselineLatencyMs;
+
+    private long increaseCount;
+
+    private long decreaseCount;
+
+    private volatile TaskPoolTuningMetrics metrics;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!tendConsistencyConfiguration.getPoolAdaptiveEnabled()) {
+            return;
+        }
+        consistencyTaskExecutor.resize(clamp(tendConsistencyConfiguration.getThreadMaxPoolSize()));
+        long intervalMs = tendConsistencyConfiguration.getPoolAdaptiveIntervalMs();
+        consistencyScheduledPool.scheduleWithFixedDelay(this::tune, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 获取最近一次调整的指标和决策
+     *
+     * @return 最近一次调整的指标 未开启或尚未调整时返回null
+     */
+    public TaskPoolTuningMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void tune() {
+        try {
+            doTune();
+        } catch (Exception e) {
+            log.error("[consistency framework] tune consistency task pool fail", e);
+        }
+    }
+
+    private void doTune() {
+        long completedCount = consistencyTaskExecutor.getCompletedCount();
+        long executeNanos = consistencyTaskExecutor.getTotalExecuteNanos();
+        long rejectedCount = consistencyTaskExecutor.getRejectedCount();
+        long completed = completedCount - lastCompletedCount;
+        long rejected = rejectedCount - lastRejectedCount;
+        double latencyMs = completed == 0 ? 0D : (executeNanos - lastExecuteNanos) / 1_000_000D / completed;
+        lastCompletedCount = completedCount;
+        lastExecuteNanos = executeNanos;
+        lastRejectedCount = rejectedCount;
+        if (completed > 0) {
+            baselineLatencyMs = baselineLatencyMs == 0 || latencyMs < baselineLatencyMs
+                    ? latencyMs : baselineLatencyMs + (latencyMs - baselineLatencyMs) * BASELINE_DRIFT;
+        }
+        int queueDepth = consistencyTaskExecutor.getQueue().size();
+        int dbPoolWaiters = getDbPoolWaiters();
+        int poolSize = consistencyTaskExecutor.getMaximumPoolSize();
+
+        String decision = HOLD;
+        int newPoolSize = poolSize;
+        boolean overloaded = dbPoolWaiters > 0 || completed > 0 && baselineLatencyMs > 0
+                && latencyMs > baselineLatencyMs * tendConsistencyConfiguration.getPoolAdaptiveLatencyToleranceRatio();
+        boolean saturated = rejected > 0 || queueDepth > 0 && consistencyTaskExecutor.getActiveCount() >= poolSize;
+        if (overloaded) {
+            newPoolSize = clamp((int) (poolSize * tendConsistencyConfiguration.getPoolAdaptiveDecreaseRatio()));
+        } else if (saturated) {
+            newPoolSize = clamp(poolSize + 1);
+        }
+        if (newPoolSize < poolSize) {
+            decision = DECREASE;
+            decreaseCount++;
+        } else if (newPoolSize > poolSize) {
+            decision = INCREASE;
+            increaseCount++;
+        }
+        if (newPoolSize != poolSize) {
+            consistencyTaskExecutor.resize(newPoolSize);
+            log.info("[consistency framework] consistency task pool size {} -> {}, latency {}ms, baseline {}ms, "
+                            + "queue depth {}, rejected {}, db pool waiters {}", poolSize, newPoolSize,
+                    String.format("%.2f", latencyMs), String.format("%.2f", baselineLatencyMs), queueDepth, rejected,
+                    dbPoolWaiters);
+        }
+        metrics = TaskPoolTuningMetrics.builder()
+                .sampleTime(System.currentTimeMillis())
+                .poolSize(newPoolSize)
+                .decision(decision)
+                .latencyMs(latencyMs)
+                .baselineLatencyMs(baselineLatencyMs)
+                .completedCount(completed)
+                .queueDepth(queueDepth)
+                .rejectedCount(rejected)
+                .dbPoolWaiters(dbPoolWaiters)
+                .increaseCount(increaseCount)
+                .decreaseCount(decreaseCount)
+                .build();
+    }
+
+    private int clamp(int poolSize) {
+        return Math.max(tendConsistencyConfiguration.getPoolAdaptiveMinPoolSize(),
+                Math.min(tendConsistencyConfiguration.getPoolAdaptiveMaxPoolSize(), poolSize));
+    }
+
+    /**
+     * 获取等待数据库连接的线程数 只支持HikariCP连接池
+     *
+     * @return 等待数据库连接的线程数 无法获取时返回-1
+     */
+    private int getDbPoolWaiters() {
+        if (!HIKARI_PRESENT) {
+            return -1;
+        }
+        DataSource dataSource = dataSourceProvider.getIfUnique();
+        try {
+            if (dataSource == null || !dataSource.isWrapperFor(HikariDataSource.class)) {
+                return -1;
+            }
+            HikariPoolMXBean poolMXBean = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+            return poolMXBean == null ? -1 : poolMXBean.getThreadsAwaitingConnection();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
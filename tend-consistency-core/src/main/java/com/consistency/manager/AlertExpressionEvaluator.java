@@ -0,0 +1,156 @@
+package com.consistency.manager;
+
+import com.consistency.model.ConsistencyTaskInstance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 告警表达式解析器
+ * 以告警表达式为key缓存编译后的表达式，启动时由TaskDefinitionRegistry对所有被@ConsistencyTask注解的方法进行预编译
+ * 表达式以任务实例作为根对象求值，如：executeTimes > 1 && executeTimes < 5
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+public class AlertExpressionEvaluator {
+
+    /**
+     * 兼容旧的表达式写法 #taskInstance.executeTimes
+     */
+    private static final String LEGACY_VARIABLE_PREFIX = "#taskInstance.";
+
+    private final SpelExpressionParser compiledParser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.IMMEDIATE, ClassUtils.getDefaultClassLoader()));
+
+    private final SpelExpressionParser interpretedParser = new SpelExpressionParser();
+
+    /**
+     * 预热编译时样例任务的执行次数 覆盖常见的阈值区间，使短路运算的两侧都被求值过
+     */
+    private static final int[] SAMPLE_EXECUTE_TIMES = {0, 1, 2, 3, 5, 10, 100, 1000};
+
+    /**
+     * 预热编译时样例任务的状态 初始化、执行中、失败、成功
+     */
+    private static final int[] SAMPLE_TASK_STATUS = {0, 1, 2, 3};
+
+    /**
+     * 共享的求值上下文 只读访问任务实例的属性，不能赋值和访问类型，线程安全
+     */
+    private final EvaluationContext evaluationContext = SimpleEvaluationContext.forReadOnlyDataBinding()
+            .withInstanceMethods().build();
+
+    /**
+     * 告警表达式 -> 编译后的表达式
+     */
+    private final Map<String, Expression> expressionCache = new ConcurrentHashMap<>();
+
+    /**
+     * 预编译告警表达式
+     *
+     * @param alertExpression 告警表达式
+     */
+    public void precompile(String alertExpression) {
+        if (StringUtils.isEmpty(alertExpression)) {
+            return;
+        }
+        try {
+            getExpression(alertExpression);
+        } catch (Exception e) {
+            log.error("解析表达式{}时，发生异常", alertExpression, e);
+        }
+    }
+
+    /**
+     * 判断任务实例是否满足告警表达式
+     *
+     * @param taskInstance 任务实例信息
+     * @return 是否满足
+     */
+    public boolean evaluate(ConsistencyTaskInstance taskInstance) {
+        String alertExpression = taskInstance.getAlertExpression();
+        if (StringUtils.isEmpty(alertExpression)) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(getExpression(alertExpression).getValue(evaluationContext, taskInstance, Boolean.class));
+        } catch (Exception e) {
+            log.error("解析表达式{}时，发生异常", alertExpression, e);
+            return false;
+        }
+    }
+
+    private Expression getExpression(String alertExpression) {
+        return expressionCache.computeIfAbsent(alertExpression, this::compile);
+    }
+
+    /**
+     * 编译表达式 先以样例数据求值收集类型信息再编译，无法编译的表达式使用解释模式
+     * 编译要求表达式的每个节点都被求值过，&&、||和三元运算会短路，所以依次使用多个样例求值直到可以编译
+     *
+     * @param alertExpression 告警表达式
+     * @return 表达式
+     */
+    private Expression compile(String alertExpression) {
+        String expr = StringUtils.replace(alertExpression, LEGACY_VARIABLE_PREFIX, "");
+        try {
+            SpelExpression expression = (SpelExpression) compiledParser.parseExpression(expr);
+            for (int executeTimes : SAMPLE_EXECUTE_TIMES) {
+                for (int taskStatus : SAMPLE_TASK_STATUS) {
+                    expression.getValue(evaluationContext, sample(executeTimes, taskStatus), Boolean.class);
+                    if (expression.compileExpression()) {
+                        return expression;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.debug("[consistency framework] compile alert expression [{}] failed", alertExpression, e);
+        }
+        log.warn("[consistency framework] alert expression [{}] can not be compiled, use interpreted mode", alertExpression);
+        return interpretedParser.parseExpression(expr);
+    }
+
+    /**
+     * 构造样例任务 所有属性都不为null，求值时才能推断出各属性的类型
+     */
+    private ConsistencyTaskInstance sample(int executeTimes, int taskStatus) {
+        long now = System.currentTimeMillis();
+        return ConsistencyTaskInstance.builder()
+                .id(0L)
+                .taskId("")
+                .methodSignName("")
+                .methodName("")
+                .parameterTypes("")
+                .taskParameter("")
+                .taskStatus(taskStatus)
+                .executeTimes(executeTimes)
+                .executeTime(now)
+                .errorMsg("")
+                .performanceWay(0)
+                .threadWay(0)
+                .alertExpression("")
+                .alertActionBeanName("")
+                .fallbackClassName("")
+                .fallbackErrorMsg("")
+                .shardKey(0L)
+                .leaseExpireTime(now)
+                .definitionId(0)
+                .gmtCreate(new Date(now))
+                .gmtModified(new Date(now))
+                .build();
+    }
+}
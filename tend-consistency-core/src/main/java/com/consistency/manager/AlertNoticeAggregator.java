@@ -0,0 +1,161 @@
+package com.consistency.manager;
+
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.custom.alerter.ConsistencyFrameworkAlerter;
+import com.consistency.model.ConsistencyTaskAlertSummary;
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.utils.SpringUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 告警聚合器
+ * 按taskId和告警beanName对聚合窗口内的告警进行合并，每个窗口对每个分组只发送一次汇总通知
+ * 分组数和每组的采样数都有上限，超出的告警会被丢弃并计数
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AlertNoticeAggregator implements InitializingBean {
+
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+
+    private final ThreadPoolExecutor alertNoticePool;
+
+    private final ScheduledThreadPoolExecutor consistencyScheduledPool;
+
+    /**
+     * 分组key -> 当前窗口的告警汇总
+     */
+    private final Map<String, ConsistencyTaskAlertSummary> summaryMap = new ConcurrentHashMap<>();
+
+    /**
+     * 被合并到已有分组中的告警数
+     */
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * 被丢弃的告警数
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    @Override
+    public void afterPropertiesSet() {
+        long windowMs = tendConsistencyConfiguration.getAlertAggregateWindowMs();
+        consistencyScheduledPool.scheduleWithFixedDelay(this::flush, windowMs, windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录一次告警 在窗口结束时统一发送
+     *
+     * @param taskInstance 触发告警的任务实例
+     */
+    public void record(ConsistencyTaskInstance taskInstance) {
+        String groupKey = taskInstance.getTaskId() + "#" + taskInstance.getAlertActionBeanName();
+        if (!summaryMap.containsKey(groupKey) && summaryMap.size() >= tendConsistencyConfiguration.getAlertMaxAggregateGroups()) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        summaryMap.compute(groupKey, (key, summary) -> {
+            if (summary == null) {
+                summary = ConsistencyTaskAlertSummary.builder()
+                        .taskId(taskInstance.getTaskId())
+                        .alertActionBeanName(taskInstance.getAlertActionBeanName())
+                        .firstAlertTime(now)
+                        .sampleInstances(new ArrayList<>())
+                        .build();
+            } else {
+                coalescedCount.incrementAndGet();
+            }
+            summary.setAlertCount(summary.getAlertCount() + 1);
+            summary.setLastAlertTime(now);
+            List<ConsistencyTaskInstance> sampleInstances = summary.getSampleInstances();
+            if (sampleInstances.size() >= tendConsistencyConfiguration.getAlertMaxSamplesPerGroup()) {
+                sampleInstances.remove(0);
+            }
+            sampleInstances.add(taskInstance);
+            return summary;
+        });
+    }
+
+    /**
+     * 被合并的告警数
+     *
+     * @return 被合并的告警数
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * 被丢弃的告警数
+     *
+     * @return 被丢弃的告警数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * 发送当前窗口内所有分组的告警汇总
+     */
+    private void flush() {
+        try {
+            int flushCount = 0;
+            for (String groupKey : summaryMap.keySet()) {
+                ConsistencyTaskAlertSummary summary = summaryMap.remove(groupKey);
+                if (summary == null) {
+                    continue;
+                }
+                flushCount++;
+                try {
+                    alertNoticePool.execute(() -> sendAlertNotice(summary));
+                } catch (RejectedExecutionException e) {
+                    droppedCount.addAndGet(summary.getAlertCount());
+                }
+            }
+            if (flushCount > 0) {
+                log.info("[consistency framework] flushed {} alert summaries, total coalesced count is {}, total dropped count is {}",
+                        flushCount, coalescedCount.get(), droppedCount.get());
+            }
+        } catch (Exception e) {
+            log.error("[consistency framework] flush alert notice failed", e);
+        }
+    }
+
+    private void sendAlertNotice(ConsistencyTaskAlertSummary summary) {
+        Map<String, ConsistencyFrameworkAlerter> beansOfTypeMap = SpringUtil.getBeansOfType(
+                ConsistencyFrameworkAlerter.class);
+        if (CollectionUtils.isEmpty(beansOfTypeMap)) {
+            log.warn("[consistency framework] can not get the implementations of ConsistencyFrameworkAlerter");
+            return;
+        }
+        ConsistencyFrameworkAlerter alerter = beansOfTypeMap.size() == 1 ? beansOfTypeMap.values().iterator().next()
+                : beansOfTypeMap.get(summary.getAlertActionBeanName());
+        if (alerter == null) {
+            log.warn("[consistency framework] can not find ConsistencyFrameworkAlerter named [{}]", summary.getAlertActionBeanName());
+            return;
+        }
+        try {
+            alerter.sendAlertNotice(summary);
+        } catch (Exception e) {
+            log.error("[consistency framework] invoke implementations of ConsistencyFrameworkAlerter failed", e);
+        }
+    }
+}
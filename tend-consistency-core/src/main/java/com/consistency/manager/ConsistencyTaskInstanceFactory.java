@@ -0,0 +1,195 @@
+package com.consistency.manager;
+
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.json.JSONUtil;
+import com.consistency.annotation.ConsistencyTask;
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.custom.shard.ShardingKeyGenerator;
+import com.consistency.enums.ConsistencyTaskStatusEnum;
+import com.consistency.enums.PerformanceEnum;
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.utils.ReflectTools;
+import com.consistency.utils.SpringUtil;
+import com.consistency.utils.TimeUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 一致性任务实例工厂 根据注解和方法入参构造任务实例，供切面和编程式入队共用
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConsistencyTaskInstanceFactory {
+
+    /**
+     * 框架配置类
+     */
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+
+    /**
+     * 未配置任务分片键生成类时使用的分片键生成器
+     */
+    private final ShardingKeyGenerator consistencyShardingKeyGenerator;
+
+    /**
+     * 配置的任务分片键生成器 首次使用时解析一次
+     */
+    private volatile ShardingKeyGenerator customShardingKeyGenerator = null;
+
+    /**
+     * 根据注解构造最终一致性任务的实例
+     *
+     * @param task        一致性任务注解信息 相当于任务的模板
+     * @param targetClass 任务方法所在的类
+     * @param method      任务方法
+     * @param args        任务方法的入参
+     * @return 一致性任务实例
+     */
+    public ConsistencyTaskInstance create(ConsistencyTask task, Class<?> targetClass, Method method, Object[] args) {
+        // 获取方法的全限定名称 格式：类路径#方法名（参数1的类型,参数2的类型，...参数N的类型）
+        String fullyQualifiedName = getMethodSignName(targetClass, method);
+        // 获取入参的类名称数组
+        String parameterTypes = ReflectTools.getArgsClassNames(method.getParameterTypes());
+
+        Date date = new Date();
+
+        ConsistencyTaskInstance instance = ConsistencyTaskInstance.builder()
+                .taskId(StringUtils.isEmpty(task.id()) ? fullyQualifiedName : task.id())
+                .methodSignName(fullyQualifiedName)
+                .methodName(method.getName())
+                .parameterTypes(parameterTypes)
+                .taskParameter(JSONUtil.toJsonStr(args))
+                // 保留原始入参 立即执行的任务无需再反序列化
+                .args(args)
+                .taskStatus(ConsistencyTaskStatusEnum.INIT.getCode())
+                .executeIntervalSec(task.executeIntervalSec())
+                .delayTime(task.delayTime())
+                .executeTimes(0)
+                .errorMsg("")
+                .performanceWay(task.performanceWay().getCode())
+                .threadWay(task.threadWay().getCode())
+                .alertExpression(StringUtils.isEmpty(task.alertExpression()) ? "" : task.alertExpression())
+                .alertActionBeanName(StringUtils.isEmpty(task.alertActionBeanName()) ? "" : task.alertActionBeanName())
+                .fallbackClassName(ReflectTools.getFullyQualifiedClassName(task.fallbackClass()))
+                .fallbackErrorMsg("")
+                .gmtCreate(date)
+                .gmtModified(date)
+                .build();
+        // 设置执行时间
+        instance.setExecuteTime(getExecuteTime(instance));
+        // 设置分片键
+        instance.setShardKey(tendConsistencyConfiguration.getTaskSharded() ? generateSharedKey() : 0l);
+
+        return instance;
+    }
+
+    /**
+     * 构造只包含任务定义信息的任务实例 用于启动时按任务方法的声明注册任务定义
+     *
+     * @param task        一致性任务注解信息
+     * @param targetClass 任务方法所在的类
+     * @param method      任务方法
+     * @return 只包含任务定义信息的任务实例
+     */
+    public ConsistencyTaskInstance createDefinition(ConsistencyTask task, Class<?> targetClass, Method method) {
+        return ConsistencyTaskInstance.builder()
+                .methodSignName(getMethodSignName(targetClass, method))
+                .methodName(method.getName())
+                .parameterTypes(ReflectTools.getArgsClassNames(method.getParameterTypes()))
+                .alertExpression(StringUtils.isEmpty(task.alertExpression()) ? "" : task.alertExpression())
+                .alertActionBeanName(StringUtils.isEmpty(task.alertActionBeanName()) ? "" : task.alertActionBeanName())
+                .fallbackClassName(ReflectTools.getFullyQualifiedClassName(task.fallbackClass()))
+                .build();
+    }
+
+    /**
+     * 获取任务方法的签名 使用声明的参数类型而不是实际入参的类型，保证同一个方法的任务、任务定义和限流配置使用同一个签名
+     *
+     * @param targetClass 任务方法所在的类
+     * @param method      任务方法
+     * @return 方法签名
+     */
+    private String getMethodSignName(Class<?> targetClass, Method method) {
+        return ReflectTools.getTargetMethodFullyQualifiedName(ClassUtils.getUserClass(targetClass), method.getName(),
+                method.getParameterTypes());
+    }
+
+    /**
+     * 获取任务执行时间
+     *
+     * @param taskInstance 一致性任务实例
+     * @return 下次执行时间
+     */
+    private Long getExecuteTime(ConsistencyTaskInstance taskInstance) {
+        if (PerformanceEnum.PERFORMANCE_SCHEDULE.getCode().equals(taskInstance.getPerformanceWay())) {
+            // 调度执行
+            long delayTimeMillSecond = TimeUtils.secToMill(taskInstance.getDelayTime());
+            return System.currentTimeMillis() + delayTimeMillSecond;
+        } else {
+            // 立即执行
+            return System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 获取分片键
+     *
+     * @return 生成分片键
+     */
+    private Long generateSharedKey() {
+        // 未配置任务分片键生成类，使用默认的分片键生成器
+        if (StringUtils.isEmpty(tendConsistencyConfiguration.getShardingKeyGeneratorClassName())) {
+            return consistencyShardingKeyGenerator.generateShardKey();
+        }
+        ShardingKeyGenerator generator = customShardingKeyGenerator;
+        if (generator == null) {
+            synchronized (this) {
+                generator = customShardingKeyGenerator;
+                if (generator == null) {
+                    generator = resolveCustomShardingKeyGenerator();
+                    customShardingKeyGenerator = generator;
+                }
+            }
+        }
+        return generator.generateShardKey();
+    }
+
+    /**
+     * 解析配置的任务分片键生成器 优先使用spring容器中该类型的bean，没有时创建实例
+     * 解析失败时使用默认的分片键生成器
+     *
+     * @return 任务分片键生成器
+     */
+    private ShardingKeyGenerator resolveCustomShardingKeyGenerator() {
+        String className = tendConsistencyConfiguration.getShardingKeyGeneratorClassName();
+        Class<?> shardingKeyGeneratorClass = ReflectTools.getClassByName(className);
+        if (ObjectUtils.isEmpty(shardingKeyGeneratorClass)
+                || !ShardingKeyGenerator.class.isAssignableFrom(shardingKeyGeneratorClass)) {
+            log.error("[consistency framework] configured ShardingKeyGeneratorClass {} is invalid, use the default one", className);
+            return consistencyShardingKeyGenerator;
+        }
+        Map<String, ? extends ShardingKeyGenerator> beans =
+                SpringUtil.getBeansOfType(shardingKeyGeneratorClass.asSubclass(ShardingKeyGenerator.class));
+        if (!beans.isEmpty()) {
+            return beans.values().iterator().next();
+        }
+        try {
+            return (ShardingKeyGenerator) ReflectUtil.newInstance(shardingKeyGeneratorClass);
+        } catch (RuntimeException e) {
+            log.error("[consistency framework] create configured ShardingKeyGeneratorClass {} failed, use the default one",
+                    className, e);
+            return consistencyShardingKeyGenerator;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.consistency.manager;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.model.RateLimitOverride;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.NodeCache;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 动态配置管理器 监听zk上的配置节点，节点内容变更时在运行中生效
+ * 节点内容为json对象，key为{@link TendConsistencyConfiguration}的字段名，只有白名单中的字段可以动态修改
+ * 特殊的key rateLimits为 方法签名 -> 限流参数，覆盖任务注解上的限流配置
+ * 每次生效的变更都会记录节点版本和变更前后的值，变更不合法时整体不生效
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DynamicConfigManager implements InitializingBean, DisposableBean {
+
+    private static final String RATE_LIMITS = "rateLimits";
+
+    /**
+     * 可以动态修改的配置 其余配置只在启动时读取
+     * 熔断器的滑动窗口大小在熔断器创建时分配，不能动态修改
+     */
+    private static final List<String> RELOADABLE_FIELDS = Arrays.asList(
+            "threadCorePoolSize", "threadMaxPoolSize", "threadPoolAdmissionHighWatermark",
+            "poolAdaptiveMinPoolSize", "poolAdaptiveMaxPoolSize", "poolAdaptiveLatencyToleranceRatio",
+            "poolAdaptiveDecreaseRatio", "taskScheduleScanLimit", "failCountThreshold",
+            "breakerFailureRateThreshold", "breakerSlowCallRateThreshold", "breakerSlowCallDurationThresholdMs",
+            "breakerMinimumNumberOfCalls", "breakerWaitDurationInOpenStateMs",
+            "breakerPermittedNumberOfCallsInHalfOpenState", "rateLimitClusterMode", "leaseDurationMs",
+            "leaseReaperBatchSize", "deadLetterMaxAttempts", "deadLetterMaxAgeMs", "deadLetterBatchSize");
+
+    private final CuratorFramework consistencyCuratorFramework;
+
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+
+    private final InstrumentedThreadPoolExecutor consistencyTaskExecutor;
+
+    private final TaskRateLimiter taskRateLimiter;
+
+    private NodeCache nodeCache;
+
+    /**
+     * 已生效的配置节点版本 未生效过时为-1
+     */
+    private volatile int appliedVersion = -1;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (!tendConsistencyConfiguration.getDynamicConfigEnabled()) {
+            return;
+        }
+        nodeCache = new NodeCache(consistencyCuratorFramework, tendConsistencyConfiguration.getDynamicConfigPath());
+        nodeCache.start(true);
+        reload();
+        nodeCache.getListenable().addListener(this::reload);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (nodeCache != null) {
+            nodeCache.close();
+        }
+    }
+
+    public int getAppliedVersion() {
+        return appliedVersion;
+    }
+
+    private synchronized void reload() {
+        ChildData data = nodeCache.getCurrentData();
+        if (data == null || data.getData() == null || data.getData().length == 0) {
+            return;
+        }
+        int version = data.getStat().getVersion();
+        if (version == appliedVersion) {
+            return;
+        }
+        try {
+            apply(JSONUtil.parseObj(new String(data.getData(), StandardCharsets.UTF_8)), version);
+        } catch (Exception e) {
+            log.error("[consistency framework] apply dynamic config version {} fail, keep current config", version, e);
+        }
+    }
+
+    private void apply(JSONObject config, int version) {
+        // 先计算全部变更并校验 通过后再一起生效
+        Map<String, Object> changes = new LinkedHashMap<>();
+        Map<String, Object> effective = new HashMap<>();
+        for (String name : RELOADABLE_FIELDS) {
+            effective.put(name, ReflectUtil.getFieldValue(tendConsistencyConfiguration, name));
+        }
+        for (String key : config.keySet()) {
+            if (RATE_LIMITS.equals(key)) {
+                continue;
+            }
+            if (!RELOADABLE_FIELDS.contains(key)) {
+                log.warn("[consistency framework] dynamic config {} is not reloadable, ignored", key);
+                continue;
+            }
+            Field field = ReflectUtil.getField(TendConsistencyConfiguration.class, key);
+            Object value = Convert.convert(field.getType(), config.get(key));
+            if (value != null && !Objects.equals(value, effective.get(key))) {
+                changes.put(key, value);
+                effective.put(key, value);
+            }
+        }
+        Map<String, RateLimitOverride> rateLimits = parseRateLimits(config.getJSONObject(RATE_LIMITS));
+        List<String> errors = validate(effective);
+        if (!errors.isEmpty()) {
+            log.error("[consistency framework] dynamic config version {} is invalid, keep current config: {}",
+                    version, errors);
+            return;
+        }
+
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            log.info("[consistency framework] dynamic config version {}, {}: {} -> {}", version, change.getKey(),
+                    ReflectUtil.getFieldValue(tendConsistencyConfiguration, change.getKey()), change.getValue());
+            ReflectUtil.setFieldValue(tendConsistencyConfiguration, change.getKey(), change.getValue());
+        }
+        // 开启自适应调整时线程数由调整器在新的范围内调整
+        if (!tendConsistencyConfiguration.getPoolAdaptiveEnabled()) {
+            resizePool(tendConsistencyConfiguration.getThreadCorePoolSize(), tendConsistencyConfiguration.getThreadMaxPoolSize());
+        }
+        taskRateLimiter.setOverrides(rateLimits);
+        appliedVersion = version;
+        log.info("[consistency framework] dynamic config version {} applied, {} changes, {} rate limit overrides",
+                version, changes.size(), rateLimits.size());
+    }
+
+    /**
+     * 校验变更后的配置 取值范围与启动时的配置检查一致
+     *
+     * @param effective 变更后的可动态修改的配置 字段名 -> 值
+     * @return 不合法的配置说明 全部合法时为空
+     */
+    private List<String> validate(Map<String, Object> effective) {
+        List<String> errors = new ArrayList<>();
+        int corePoolSize = (Integer) effective.get("threadCorePoolSize");
+        int maxPoolSize = (Integer) effective.get("threadMaxPoolSize");
+        check(errors, corePoolSize >= 1 && corePoolSize <= maxPoolSize,
+                "threadCorePoolSize must be in [1, threadMaxPoolSize]");
+        double watermark = (Double) effective.get("threadPoolAdmissionHighWatermark");
+        check(errors, watermark > 0 && watermark <= 1, "threadPoolAdmissionHighWatermark must be in (0, 1]");
+        int adaptiveMinPoolSize = (Integer) effective.get("poolAdaptiveMinPoolSize");
+        check(errors, adaptiveMinPoolSize >= 1 && adaptiveMinPoolSize <= (Integer) effective.get("poolAdaptiveMaxPoolSize"),
+                "poolAdaptiveMinPoolSize must be in [1, poolAdaptiveMaxPoolSize]");
+        check(errors, (Double) effective.get("poolAdaptiveLatencyToleranceRatio") > 1,
+                "poolAdaptiveLatencyToleranceRatio must be greater than 1");
+        double decreaseRatio = (Double) effective.get("poolAdaptiveDecreaseRatio");
+        check(errors, decreaseRatio > 0 && decreaseRatio < 1, "poolAdaptiveDecreaseRatio must be in (0, 1)");
+        check(errors, (Long) effective.get("taskScheduleScanLimit") >= 1, "taskScheduleScanLimit must be at least 1");
+        check(errors, (Integer) effective.get("failCountThreshold") >= 0, "failCountThreshold must not be negative");
+        checkPercentage(errors, effective, "breakerFailureRateThreshold");
+        checkPercentage(errors, effective, "breakerSlowCallRateThreshold");
+        check(errors, (Long) effective.get("breakerSlowCallDurationThresholdMs") > 0,
+                "breakerSlowCallDurationThresholdMs must be positive");
+        // 滑动窗口在熔断器创建时分配 不能动态修改，最小调用数不能超过它，否则熔断器永远不会打开
+        int minimumNumberOfCalls = (Integer) effective.get("breakerMinimumNumberOfCalls");
+        check(errors, minimumNumberOfCalls >= 1
+                        && minimumNumberOfCalls <= tendConsistencyConfiguration.getBreakerSlidingWindowSize(),
+                "breakerMinimumNumberOfCalls must be in [1, breakerSlidingWindowSize]");
+        check(errors, (Long) effective.get("breakerWaitDurationInOpenStateMs") > 0,
+                "breakerWaitDurationInOpenStateMs must be positive");
+        check(errors, (Integer) effective.get("breakerPermittedNumberOfCallsInHalfOpenState") >= 1,
+                "breakerPermittedNumberOfCallsInHalfOpenState must be at least 1");
+        check(errors, (Long) effective.get("leaseDurationMs") > tendConsistencyConfiguration.getLeaseHeartbeatIntervalMs(),
+                "leaseDurationMs must be greater than the lease heartbeat interval");
+        check(errors, (Integer) effective.get("leaseReaperBatchSize") >= 1, "leaseReaperBatchSize must be at least 1");
+        check(errors, (Integer) effective.get("deadLetterMaxAttempts") >= 1, "deadLetterMaxAttempts must be at least 1");
+        check(errors, (Long) effective.get("deadLetterMaxAgeMs") > 0, "deadLetterMaxAgeMs must be positive");
+        check(errors, (Integer) effective.get("deadLetterBatchSize") >= 1, "deadLetterBatchSize must be at least 1");
+        return errors;
+    }
+
+    private void checkPercentage(List<String> errors, Map<String, Object> effective, String name) {
+        int value = (Integer) effective.get(name);
+        check(errors, value > 0 && value <= 100, name + " must be in (0, 100]");
+    }
+
+    private void check(List<String> errors, boolean valid, String error) {
+        if (!valid) {
+            errors.add(error);
+        }
+    }
+
+    private Map<String, RateLimitOverride> parseRateLimits(JSONObject rateLimits) {
+        if (rateLimits == null || rateLimits.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, RateLimitOverride> overrides = new HashMap<>(rateLimits.size());
+        for (String methodSignName : rateLimits.keySet()) {
+            overrides.put(methodSignName, rateLimits.getJSONObject(methodSignName).toBean(RateLimitOverride.class));
+        }
+        return overrides;
+    }
+
+    /**
+     * 调整线程池大小 按调整方向决定设置顺序，保证核心线程数始终不大于最大线程数
+     */
+    private void resizePool(int corePoolSize, int maxPoolSize) {
+        if (maxPoolSize >= consistencyTaskExecutor.getMaximumPoolSize()) {
+            consistencyTaskExecutor.setMaximumPoolSize(maxPoolSize);
+            consistencyTaskExecutor.setCorePoolSize(corePoolSize);
+        } else {
+            consistencyTaskExecutor.setCorePoolSize(corePoolSize);
+            consistencyTaskExecutor.setMaximumPoolSize(maxPoolSize);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.consistency.manager;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 记录任务耗时和拒绝次数的线程池 供{@link AdaptiveTaskPoolTuner}读取
+ * 拒绝策略与默认的AbortPolicy相同，拒绝时抛出异常
+ *
+ * @author wzw
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final ThreadLocal<Long> startNanos = new ThreadLocal<>();
+
+    private final LongAdder completedCount = new LongAdder();
+
+    private final LongAdder totalExecuteNanos = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public InstrumentedThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                                          BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory);
+        setRejectedExecutionHandler((r, executor) -> {
+            rejectedCount.increment();
+            throw new RejectedExecutionException("Task " + r.toString() + " rejected from " + executor.toString());
+        });
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        startNanos.set(System.nanoTime());
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        try {
+            Long start = startNanos.get();
+            if (start != null) {
+                totalExecuteNanos.add(System.nanoTime() - start);
+                completedCount.increment();
+                startNanos.remove();
+            }
+        } finally {
+            super.afterExecute(r, t);
+        }
+    }
+
+    /**
+     * 调整线程数 核心线程数与最大线程数保持一致，有界队列的线程池只有队列满时才会创建超过核心线程数的线程
+     *
+     * @param poolSize 线程数
+     */
+    public void resize(int poolSize) {
+        if (poolSize > getMaximumPoolSize()) {
+            setMaximumPoolSize(poolSize);
+            setCorePoolSize(poolSize);
+        } else {
+            setCorePoolSize(poolSize);
+            setMaximumPoolSize(poolSize);
+        }
+    }
+
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    public long getTotalExecuteNanos() {
+        return totalExecuteNanos.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+}
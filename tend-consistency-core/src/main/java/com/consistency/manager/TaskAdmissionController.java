@@ -0,0 +1,100 @@
+package com.consistency.manager;
+
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.model.ConsistencyTaskInstance;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 执行任务线程池的准入控制
+ * 线程池满时不抛出异常，任务保持未完成状态留在数据库中，由后续的调度扫描执行
+ * 调度器只使用队列高水位以下的容量，队列剩余的部分留给立即执行的任务
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskAdmissionController {
+
+    private final CompletionService<ConsistencyTaskInstance> consistencyTaskPool;
+
+    private final InstrumentedThreadPoolExecutor consistencyTaskExecutor;
+
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+
+    /**
+     * 线程池满而推迟到后续调度的任务数
+     */
+    private final LongAdder deferredCount = new LongAdder();
+
+    /**
+     * 因线程池繁忙跳过或提前结束的调度轮数
+     */
+    private final LongAdder throttledCount = new LongAdder();
+
+    /**
+     * 尝试提交任务到执行任务线程池
+     *
+     * @param task 任务
+     * @return 是否提交成功 失败时任务推迟到后续调度
+     */
+    public boolean trySubmit(Callable<ConsistencyTaskInstance> task) {
+        try {
+            consistencyTaskPool.submit(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            deferredCount.increment();
+            return false;
+        }
+    }
+
+    /**
+     * 调度器本次可以派发的任务数 空闲线程数加上队列高水位以下的剩余容量
+     *
+     * @return 可以派发的任务数 小于等于0时调度器应停止派发
+     */
+    public int schedulableCapacity() {
+        int queueSize = consistencyTaskExecutor.getQueue().size();
+        int queueCapacity = queueSize + consistencyTaskExecutor.getQueue().remainingCapacity();
+        int highWatermark = (int) (queueCapacity * tendConsistencyConfiguration.getThreadPoolAdmissionHighWatermark());
+        int idleThreads = consistencyTaskExecutor.getMaximumPoolSize() - consistencyTaskExecutor.getActiveCount();
+        return Math.max(0, idleThreads) + highWatermark - queueSize;
+    }
+
+    /**
+     * 记录一次因线程池繁忙跳过或提前结束的调度
+     */
+    public void throttled() {
+        throttledCount.increment();
+    }
+
+    /**
+     * 队列占用率
+     *
+     * @return 队列中的任务数占队列容量的比例
+     */
+    public double getQueueOccupancy() {
+        int queueSize = consistencyTaskExecutor.getQueue().size();
+        int queueCapacity = queueSize + consistencyTaskExecutor.getQueue().remainingCapacity();
+        return queueCapacity == 0 ? 1D : (double) queueSize / queueCapacity;
+    }
+
+    public long getDeferredCount() {
+        return deferredCount.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttledCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return consistencyTaskExecutor.getRejectedCount();
+    }
+}
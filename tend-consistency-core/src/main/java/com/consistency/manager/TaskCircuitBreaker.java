@@ -0,0 +1,225 @@
+package com.consistency.manager;
+
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.enums.CircuitBreakerStateEnum;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 任务熔断器 按方法签名统计最近的执行结果
+ * 下游不可用时暂停该类任务的调度 避免加锁、启动任务、执行、标记失败和降级的无效开销
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskCircuitBreaker {
+
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+
+    /**
+     * 方法签名 -> 熔断器
+     */
+    private final Map<String, MethodCircuitBreaker> breakerMap = new ConcurrentHashMap<>();
+
+    /**
+     * 是否允许执行该方法签名的任务 半开状态下会占用一次试探名额
+     *
+     * @param methodSignName 方法签名
+     * @return 是否允许执行
+     */
+    public boolean tryAcquirePermission(String methodSignName) {
+        if (!tendConsistencyConfiguration.getBreakerEnabled()) {
+            return true;
+        }
+        return getBreaker(methodSignName).tryAcquirePermission();
+    }
+
+    /**
+     * 记录一次成功的执行
+     *
+     * @param methodSignName 方法签名
+     * @param durationMs     执行耗时
+     */
+    public void onSuccess(String methodSignName, long durationMs) {
+        if (!tendConsistencyConfiguration.getBreakerEnabled()) {
+            return;
+        }
+        getBreaker(methodSignName).onResult(false, durationMs);
+    }
+
+    /**
+     * 记录一次失败的执行
+     *
+     * @param methodSignName 方法签名
+     * @param durationMs     执行耗时
+     */
+    public void onError(String methodSignName, long durationMs) {
+        if (!tendConsistencyConfiguration.getBreakerEnabled()) {
+            return;
+        }
+        getBreaker(methodSignName).onResult(true, durationMs);
+    }
+
+    /**
+     * 获取熔断器当前状态
+     *
+     * @param methodSignName 方法签名
+     * @return 熔断器状态
+     */
+    public CircuitBreakerStateEnum getState(String methodSignName) {
+        MethodCircuitBreaker breaker = breakerMap.get(methodSignName);
+        return breaker == null ? CircuitBreakerStateEnum.CLOSED : breaker.getState();
+    }
+
+    private MethodCircuitBreaker getBreaker(String methodSignName) {
+        return breakerMap.computeIfAbsent(methodSignName, MethodCircuitBreaker::new);
+    }
+
+    /**
+     * 单个方法签名的熔断器 窗口为基于调用次数的环形缓冲区
+     */
+    private class MethodCircuitBreaker {
+
+        private static final byte FAILURE = 1;
+
+        private static final byte SLOW = 2;
+
+        private final String methodSignName;
+
+        private final byte[] window;
+
+        private int windowIndex;
+
+        private int windowCount;
+
+        private int failureCount;
+
+        private int slowCount;
+
+        private CircuitBreakerStateEnum state = CircuitBreakerStateEnum.CLOSED;
+
+        /**
+         * 进入当前状态的时间
+         */
+        private long stateTime = System.currentTimeMillis();
+
+        /**
+         * 半开状态下已发放的试探名额
+         */
+        private int halfOpenPermitted;
+
+        /**
+         * 半开状态下已返回结果的试探次数
+         */
+        private int halfOpenCalls;
+
+        private int halfOpenFailures;
+
+        private int halfOpenSlows;
+
+        MethodCircuitBreaker(String methodSignName) {
+            this.methodSignName = methodSignName;
+            this.window = new byte[Math.max(1, tendConsistencyConfiguration.getBreakerSlidingWindowSize())];
+        }
+
+        synchronized CircuitBreakerStateEnum getState() {
+            return state;
+        }
+
+        synchronized boolean tryAcquirePermission() {
+            long now = System.currentTimeMillis();
+            if (state == CircuitBreakerStateEnum.CLOSED) {
+                return true;
+            }
+            if (state == CircuitBreakerStateEnum.OPEN) {
+                if (now - stateTime < tendConsistencyConfiguration.getBreakerWaitDurationInOpenStateMs()) {
+                    return false;
+                }
+                transitionTo(CircuitBreakerStateEnum.HALF_OPEN, now);
+            }
+            // 半开状态下试探任务迟迟未返回结果（如未抢到锁），等待时间过后重新发放试探名额
+            if (halfOpenPermitted > halfOpenCalls
+                    && now - stateTime >= tendConsistencyConfiguration.getBreakerWaitDurationInOpenStateMs()) {
+                transitionTo(CircuitBreakerStateEnum.HALF_OPEN, now);
+            }
+            if (halfOpenPermitted >= tendConsistencyConfiguration.getBreakerPermittedNumberOfCallsInHalfOpenState()) {
+                return false;
+            }
+            halfOpenPermitted++;
+            return true;
+        }
+
+        synchronized void onResult(boolean failure, long durationMs) {
+            boolean slow = durationMs >= tendConsistencyConfiguration.getBreakerSlowCallDurationThresholdMs();
+            long now = System.currentTimeMillis();
+            if (state == CircuitBreakerStateEnum.HALF_OPEN) {
+                halfOpenCalls++;
+                halfOpenFailures += failure ? 1 : 0;
+                halfOpenSlows += slow ? 1 : 0;
+                if (halfOpenCalls < tendConsistencyConfiguration.getBreakerPermittedNumberOfCallsInHalfOpenState()) {
+                    return;
+                }
+                if (exceedsThreshold(halfOpenFailures, halfOpenSlows, halfOpenCalls)) {
+                    transitionTo(CircuitBreakerStateEnum.OPEN, now);
+                } else {
+                    transitionTo(CircuitBreakerStateEnum.CLOSED, now);
+                }
+                return;
+            }
+            if (state == CircuitBreakerStateEnum.OPEN) {
+                // 打开前已派发的任务陆续返回 不再计入窗口
+                return;
+            }
+            record(failure, slow);
+            if (windowCount >= tendConsistencyConfiguration.getBreakerMinimumNumberOfCalls()
+                    && exceedsThreshold(failureCount, slowCount, windowCount)) {
+                transitionTo(CircuitBreakerStateEnum.OPEN, now);
+            }
+        }
+
+        private void record(boolean failure, boolean slow) {
+            if (windowCount == window.length) {
+                byte evicted = window[windowIndex];
+                failureCount -= (evicted & FAILURE) != 0 ? 1 : 0;
+                slowCount -= (evicted & SLOW) != 0 ? 1 : 0;
+            } else {
+                windowCount++;
+            }
+            byte outcome = (byte) ((failure ? FAILURE : 0) | (slow ? SLOW : 0));
+            window[windowIndex] = outcome;
+            windowIndex = (windowIndex + 1) % window.length;
+            failureCount += failure ? 1 : 0;
+            slowCount += slow ? 1 : 0;
+        }
+
+        private boolean exceedsThreshold(int failures, int slows, int calls) {
+            return failures * 100 >= tendConsistencyConfiguration.getBreakerFailureRateThreshold() * calls
+                    || slows * 100 >= tendConsistencyConfiguration.getBreakerSlowCallRateThreshold() * calls;
+        }
+
+        private void transitionTo(CircuitBreakerStateEnum newState, long now) {
+            if (state != newState) {
+                log.warn("[consistency framework] circuit breaker of [{}] changed from {} to {}", methodSignName,
+                        state, newState);
+            }
+            state = newState;
+            stateTime = now;
+            halfOpenPermitted = 0;
+            halfOpenCalls = 0;
+            halfOpenFailures = 0;
+            halfOpenSlows = 0;
+            if (newState == CircuitBreakerStateEnum.CLOSED) {
+                windowIndex = 0;
+                windowCount = 0;
+                failureCount = 0;
+                slowCount = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.consistency.manager;
+
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.service.TaskStoreService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.consistency.config.Constant.COMPLETION_THREAD_NAME;
+import static com.consistency.config.Constant.KEY_FORMAT;
+
+/**
+ * 任务完成结果收集器
+ * 收集执行线程提交的成功和失败结果，按间隔或数量批量删除成功的任务、批量更新失败的任务，并以pipeline写入幂等标记
+ * 结果写入前任务仍处于执行中状态，不会被调度器重复扫描；节点宕机未写入的任务在租约过期后由回收任务重置
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskCompletionCollector implements InitializingBean, DisposableBean {
+
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+
+    private final TaskStoreService taskStoreService;
+
+    private final RedisTemplate<String, Object> consistencyRedisTemplate;
+
+    /**
+     * 等待写入的完成结果
+     */
+    private final BlockingQueue<TaskOutcome> outcomeQueue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+
+    private Thread collectorThread;
+
+    /**
+     * 获取任务的幂等标记key
+     *
+     * @param taskInstance 任务实例信息
+     * @return 幂等标记key
+     */
+    public static String getTaskKey(ConsistencyTaskInstance taskInstance) {
+        return String.format(KEY_FORMAT, taskInstance.getId(), taskInstance.getShardKey());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!tendConsistencyConfiguration.getStoreCompletionBatchEnabled()) {
+            return;
+        }
+        running = true;
+        collectorThread = new Thread(this::collectLoop, COMPLETION_THREAD_NAME);
+        collectorThread.setDaemon(true);
+        collectorThread.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (collectorThread == null) {
+            return;
+        }
+        running = false;
+        collectorThread.interrupt();
+        collectorThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * 提交执行成功的任务
+     *
+     * @param taskInstance 任务实例信息
+     */
+    public void success(ConsistencyTaskInstance taskInstance) {
+        if (running) {
+            outcomeQueue.add(new TaskOutcome(taskInstance, true));
+            return;
+        }
+        taskStoreService.markSuccess(taskInstance);
+        String taskKey = getTaskKey(taskInstance);
+        consistencyRedisTemplate.opsForValue().set(taskKey, taskKey, 2, TimeUnit.DAYS);
+    }
+
+    /**
+     * 提交执行失败的任务 任务实例中需已设置错误信息和下次执行时间
+     *
+     * @param taskInstance 任务实例信息
+     */
+    public void fail(ConsistencyTaskInstance taskInstance) {
+        if (running) {
+            outcomeQueue.add(new TaskOutcome(taskInstance, false));
+            return;
+        }
+        taskStoreService.markFail(taskInstance);
+    }
+
+    private void collectLoop() {
+        while (running || !outcomeQueue.isEmpty()) {
+            try {
+                TaskOutcome first = outcomeQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<TaskOutcome> batch = new ArrayList<>();
+                batch.add(first);
+                collect(batch);
+                flush(batch);
+            } catch (InterruptedException e) {
+                // 关闭时把队列中剩余的结果写完
+                log.info("[consistency framework] completion collector is stopping, {} pending outcomes left", outcomeQueue.size());
+            }
+        }
+    }
+
+    /**
+     * 在写入间隔内收集后续的完成结果
+     *
+     * @param batch 当前批次
+     * @throws InterruptedException 等待时被中断
+     */
+    private void collect(List<TaskOutcome> batch) throws InterruptedException {
+        int maxBatchSize = tendConsistencyConfiguration.getStoreCompletionMaxBatchSize();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tendConsistencyConfiguration.getStoreCompletionFlushIntervalMs());
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            TaskOutcome next = remaining > 0 ? outcomeQueue.poll(remaining, TimeUnit.NANOSECONDS) : outcomeQueue.poll();
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * 写入一批完成结果 同一任务既有失败又有成功（如降级成功）时以成功为准
+     *
+     * @param batch 当前批次
+     */
+    private void flush(List<TaskOutcome> batch) {
+        // 以幂等标记key区分任务 分片后各分片的任务id可能重复
+        Map<String, ConsistencyTaskInstance> successMap = new LinkedHashMap<>();
+        Map<String, ConsistencyTaskInstance> failMap = new LinkedHashMap<>();
+        for (TaskOutcome outcome : batch) {
+            String taskKey = getTaskKey(outcome.taskInstance);
+            if (outcome.success) {
+                successMap.put(taskKey, outcome.taskInstance);
+                failMap.remove(taskKey);
+            } else if (!successMap.containsKey(taskKey)) {
+                failMap.put(taskKey, outcome.taskInstance);
+            }
+        }
+        // 先写幂等标记 删除失败时下次调度可直接标记成功而不重复执行
+        writeTaskKeys(successMap.values());
+        try {
+            taskStoreService.markSuccessBatch(successMap.values());
+        } catch (Exception e) {
+            log.error("[consistency framework] mark {} tasks success failed", successMap.size(), e);
+        }
+        try {
+            taskStoreService.markFailBatch(failMap.values());
+        } catch (Exception e) {
+            log.error("[consistency framework] mark {} tasks fail failed, they will be reset after lease expired", failMap.size(), e);
+        }
+    }
+
+    private void writeTaskKeys(Collection<ConsistencyTaskInstance> taskInstances) {
+        if (taskInstances.isEmpty()) {
+            return;
+        }
+        try {
+            consistencyRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> redisOperations = (RedisOperations<String, Object>) operations;
+                    for (ConsistencyTaskInstance taskInstance : taskInstances) {
+                        String taskKey = getTaskKey(taskInstance);
+                        redisOperations.opsForValue().set(taskKey, taskKey, 2, TimeUnit.DAYS);
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.error("[consistency framework] write task keys of {} tasks failed", taskInstances.size(), e);
+        }
+    }
+
+    /**
+     * 任务的完成结果
+     */
+    private static class TaskOutcome {
+
+        private final ConsistencyTaskInstance taskInstance;
+
+        private final boolean success;
+
+        TaskOutcome(ConsistencyTaskInstance taskInstance, boolean success) {
+            this.taskInstance = taskInstance;
+            this.success = success;
+        }
+    }
+}
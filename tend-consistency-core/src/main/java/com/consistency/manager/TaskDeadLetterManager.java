@@ -0,0 +1,68 @@
+package com.consistency.manager;
+
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.custom.store.TaskStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 死信管理器
+ * 开启死信后定时把执行次数达到上限或存活时间过长的失败任务分批移入死信表，任务表中只保留仍需调度的任务
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskDeadLetterManager implements InitializingBean {
+    
+    /**
+     * 每轮最多移入的批数 避免积压较多时长时间占用定时任务线程
+     */
+    private static final int MAX_BATCHES_PER_ROUND = 20;
+    
+    private final TaskStore taskStore;
+    
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+    
+    private final ScheduledThreadPoolExecutor consistencyScheduledPool;
+    
+    @Override
+    public void afterPropertiesSet() {
+        if (!tendConsistencyConfiguration.getDeadLetterEnabled()) {
+            return;
+        }
+        long intervalMs = tendConsistencyConfiguration.getDeadLetterIntervalMs();
+        consistencyScheduledPool.scheduleWithFixedDelay(this::moveToDeadLetter, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 分批移入死信表 直到不足一批或达到每轮的上限
+     */
+    private void moveToDeadLetter() {
+        try {
+            int batchSize = tendConsistencyConfiguration.getDeadLetterBatchSize();
+            Date createdBefore = new Date(System.currentTimeMillis() - tendConsistencyConfiguration.getDeadLetterMaxAgeMs());
+            int total = 0;
+            for (int i = 0; i < MAX_BATCHES_PER_ROUND; i++) {
+                int count = taskStore.moveToDeadLetter(tendConsistencyConfiguration.getDeadLetterMaxAttempts(),
+                        createdBefore, batchSize);
+                total += count;
+                if (count < batchSize) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                log.warn("[consistency framework] moved {} failed tasks to dead letter", total);
+            }
+        } catch (Exception e) {
+            log.error("[consistency framework] move failed tasks to dead letter failed", e);
+        }
+    }
+}
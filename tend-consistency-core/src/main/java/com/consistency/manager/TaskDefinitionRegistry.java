@@ -0,0 +1,231 @@
+package com.consistency.manager;
+
+import com.consistency.annotation.ConsistencyTask;
+import com.consistency.custom.backoff.BackoffPolicy;
+import com.consistency.custom.backoff.LinearBackoffPolicy;
+import com.consistency.custom.store.DelegatingTaskStore;
+import com.consistency.custom.store.NormalizedTaskStore;
+import com.consistency.custom.store.TaskDefinitionStore;
+import com.consistency.custom.store.TaskStore;
+import com.consistency.model.ConsistencyTaskDefinition;
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.model.FallbackInvoker;
+import com.consistency.utils.SpringUtil;
+import com.consistency.utils.TimeUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanInstantiationException;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 任务定义注册表 缓存方法签名对应的任务方法及其注解信息
+ * 启动时扫描所有被@ConsistencyTask注解的方法，预先解析降级调用器并预编译告警表达式，规范化存储任务定义时同时注册任务定义
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskDefinitionRegistry implements SmartInitializingSingleton {
+
+    /**
+     * 解析失败时的占位 避免重复解析
+     */
+    private static final ConsistencyTaskDefinition MISSING = new ConsistencyTaskDefinition();
+
+    /**
+     * 无法解析任务定义时使用的默认退避策略
+     */
+    private static final BackoffPolicy DEFAULT_BACKOFF_POLICY = new LinearBackoffPolicy();
+
+    private final AlertExpressionEvaluator alertExpressionEvaluator;
+
+    private final ConsistencyTaskInstanceFactory consistencyTaskInstanceFactory;
+
+    private final TaskStore taskStore;
+
+    /**
+     * 方法签名 -> 任务定义
+     */
+    private final Map<String, ConsistencyTaskDefinition> definitionMap = new ConcurrentHashMap<>();
+
+    /**
+     * 任务方法 -> 降级调用器
+     */
+    private final Map<Method, FallbackInvoker> fallbackInvokerMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        ListableBeanFactory beanFactory = SpringUtil.getBeanFactory();
+        NormalizedTaskStore normalizedTaskStore = DelegatingTaskStore.unwrap(taskStore, NormalizedTaskStore.class);
+        TaskDefinitionStore taskDefinitionStore = normalizedTaskStore == null ? null : normalizedTaskStore.getTaskDefinitionStore();
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            Class<?> beanType = beanFactory.getType(beanName);
+            if (beanType == null) {
+                continue;
+            }
+            Class<?> userClass = ClassUtils.getUserClass(beanType);
+            ReflectionUtils.doWithMethods(userClass, method -> {
+                ConsistencyTask consistencyTask = AnnotationUtils.findAnnotation(method, ConsistencyTask.class);
+                if (consistencyTask == null) {
+                    return;
+                }
+                alertExpressionEvaluator.precompile(consistencyTask.alertExpression());
+                getFallbackInvoker(method, consistencyTask);
+                if (taskDefinitionStore != null) {
+                    taskDefinitionStore.register(consistencyTaskInstanceFactory.createDefinition(consistencyTask, userClass, method));
+                }
+            });
+        }
+        log.info("[consistency framework] {} fallback invokers are resolved", fallbackInvokerMap.size());
+    }
+
+    /**
+     * 获取任务实例对应的任务定义
+     *
+     * @param taskInstance 任务实例信息
+     * @return 任务定义 无法解析时返回null
+     */
+    public ConsistencyTaskDefinition getDefinition(ConsistencyTaskInstance taskInstance) {
+        ConsistencyTaskDefinition definition = definitionMap.computeIfAbsent(taskInstance.getMethodSignName(),
+                methodSignName -> resolve(methodSignName, taskInstance.getMethodName(), taskInstance.getParameterTypes()));
+        return definition == MISSING ? null : definition;
+    }
+
+    /**
+     * 获取任务实例对应方法上的注解
+     *
+     * @param taskInstance 任务实例信息
+     * @return 注解 无法解析时返回null
+     */
+    public ConsistencyTask getConsistencyTask(ConsistencyTaskInstance taskInstance) {
+        ConsistencyTaskDefinition definition = getDefinition(taskInstance);
+        return definition == null ? null : definition.getConsistencyTask();
+    }
+
+    /**
+     * 获取任务实例对应的退避策略
+     *
+     * @param taskInstance 任务实例信息
+     * @return 退避策略
+     */
+    public BackoffPolicy getBackoffPolicy(ConsistencyTaskInstance taskInstance) {
+        ConsistencyTaskDefinition definition = getDefinition(taskInstance);
+        return definition == null ? DEFAULT_BACKOFF_POLICY : definition.getBackoffPolicy();
+    }
+
+    /**
+     * 获取失败任务的下次执行时间 执行时间 + 退避策略计算出的执行间隔，默认为线性退避
+     *
+     * @param taskInstance 任务实例信息 执行时间为本次执行的时间
+     * @return 下次执行时间
+     */
+    public long getNextExecuteTime(ConsistencyTaskInstance taskInstance) {
+        ConsistencyTask consistencyTask = getConsistencyTask(taskInstance);
+        long maxIntervalMillis = consistencyTask == null || consistencyTask.maxExecuteIntervalSec() <= 0 ? Long.MAX_VALUE
+                : TimeUtils.secToMill(consistencyTask.maxExecuteIntervalSec());
+        long delayMillis = getBackoffPolicy(taskInstance)
+                .getNextDelayMillis(taskInstance, TimeUtils.secToMill(taskInstance.getExecuteIntervalSec()), maxIntervalMillis);
+        // 不限制最大执行间隔时 指数退避的间隔可能接近Long.MAX_VALUE
+        return delayMillis > Long.MAX_VALUE - taskInstance.getExecuteTime() ? Long.MAX_VALUE
+                : taskInstance.getExecuteTime() + delayMillis;
+    }
+
+    private ConsistencyTaskDefinition resolve(String methodSignName, String methodName, String parameterTypes) {
+        try {
+            Class<?> targetClass = ClassUtils.forName(methodSignName.substring(0, methodSignName.indexOf('#')),
+                    ClassUtils.getDefaultClassLoader());
+            Class<?>[] parameterClasses = resolveParameterClasses(parameterTypes);
+            Method method = ReflectionUtils.findMethod(targetClass, methodName, parameterClasses);
+            if (method == null) {
+                log.warn("[consistency framework] can not find task method of [{}]", methodSignName);
+                return MISSING;
+            }
+            ConsistencyTask consistencyTask = AnnotationUtils.findAnnotation(method, ConsistencyTask.class);
+            if (consistencyTask == null) {
+                return MISSING;
+            }
+            return ConsistencyTaskDefinition.builder()
+                    .methodSignName(methodSignName)
+                    .targetClass(targetClass)
+                    .method(method)
+                    .consistencyTask(consistencyTask)
+                    .backoffPolicy(resolveBackoffPolicy(consistencyTask.backoffPolicy()))
+                    .fallbackInvoker(getFallbackInvoker(method, consistencyTask))
+                    .build();
+        } catch (ClassNotFoundException | LinkageError | StringIndexOutOfBoundsException | BeanInstantiationException e) {
+            log.error("[consistency framework] resolve task definition of [{}] failed", methodSignName, e);
+            return MISSING;
+        }
+    }
+
+    /**
+     * 优先使用spring容器中的退避策略 否则通过无参构造实例化
+     *
+     * @param backoffPolicyClass 退避策略的Class类
+     * @return 退避策略
+     */
+    private BackoffPolicy resolveBackoffPolicy(Class<? extends BackoffPolicy> backoffPolicyClass) {
+        if (SpringUtil.getBeanNamesForType(backoffPolicyClass).length > 0) {
+            return SpringUtil.getBean(backoffPolicyClass);
+        }
+        return BeanUtils.instantiateClass(backoffPolicyClass);
+    }
+
+    /**
+     * 获取任务方法的降级调用器 降级类的bean只解析一次，容器中没有时由容器创建一个实例并缓存
+     *
+     * @param method          任务方法
+     * @param consistencyTask 任务方法上的注解
+     * @return 降级调用器 未配置降级类或解析失败时返回null
+     */
+    private FallbackInvoker getFallbackInvoker(Method method, ConsistencyTask consistencyTask) {
+        Class<?> fallbackClass = consistencyTask.fallbackClass();
+        if (fallbackClass == void.class) {
+            return null;
+        }
+        FallbackInvoker fallbackInvoker = fallbackInvokerMap.get(method);
+        if (fallbackInvoker != null) {
+            return fallbackInvoker;
+        }
+        Method fallbackMethod = ReflectionUtils.findMethod(fallbackClass, method.getName(), method.getParameterTypes());
+        if (fallbackMethod == null) {
+            log.error("[consistency framework] can not find fallback method {} in {}", method.getName(), fallbackClass.getName());
+            return null;
+        }
+        ReflectionUtils.makeAccessible(fallbackMethod);
+        try {
+            Object fallbackBean = SpringUtil.getBeanNamesForType(fallbackClass).length > 0
+                    ? SpringUtil.getBean(fallbackClass)
+                    : SpringUtil.getConfigurableBeanFactory().createBean(fallbackClass);
+            return fallbackInvokerMap.computeIfAbsent(method, key -> new FallbackInvoker(fallbackBean, fallbackMethod));
+        } catch (BeansException e) {
+            log.error("[consistency framework] resolve fallback bean {} failed", fallbackClass.getName(), e);
+            return null;
+        }
+    }
+
+    private Class<?>[] resolveParameterClasses(String parameterTypes) throws ClassNotFoundException {
+        if (StringUtils.isEmpty(parameterTypes)) {
+            return new Class<?>[0];
+        }
+        String[] typeNames = parameterTypes.split(",");
+        Class<?>[] parameterClasses = new Class<?>[typeNames.length];
+        for (int i = 0; i < typeNames.length; i++) {
+            parameterClasses[i] = ClassUtils.forName(typeNames[i], ClassUtils.getDefaultClassLoader());
+        }
+        return parameterClasses;
+    }
+}
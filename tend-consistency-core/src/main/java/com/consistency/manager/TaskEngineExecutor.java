@@ -16,6 +16,14 @@ public interface TaskEngineExecutor {
      */
     void executeTaskInstance(ConsistencyTaskInstance taskInstance);
     
+    /**
+     * 执行立即执行的任务 在任务入库的事务提交后调用，使用内存中的任务实例和原始入参执行
+     * 以一次条件更新认领任务，认领失败或被限流、熔断时留给调度器执行
+     *
+     * @param taskInstance 任务实例
+     */
+    void executeImmediateTask(ConsistencyTaskInstance taskInstance);
+    
     /**
      * 执行降级任务
      *
@@ -1,38 +1,26 @@
 package com.consistency.manager;
 
-import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.json.JSONUtil;
 import com.consistency.config.TendConsistencyConfiguration;
-import com.consistency.custom.alerter.ConsistencyFrameworkAlerter;
-import com.consistency.exceptions.ConsistencyException;
+import com.consistency.exceptions.TaskDeferredException;
+import com.consistency.exceptions.TaskTimeoutException;
+import com.consistency.model.ConsistencyTaskDefinition;
 import com.consistency.model.ConsistencyTaskInstance;
 import com.consistency.service.TaskStoreService;
 import com.consistency.utils.DistributedLockByCurator;
-import com.consistency.utils.ReflectTools;
-import com.consistency.utils.SpringUtil;
-import com.consistency.utils.TimeUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
-import java.util.Map;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
-import static com.consistency.config.Constant.KEY_FORMAT;
-import static com.consistency.utils.ExpressionUtils.RESULT_FLAG;
-import static com.consistency.utils.ExpressionUtils.buildDataMap;
-import static com.consistency.utils.ExpressionUtils.readExpr;
-import static com.consistency.utils.ExpressionUtils.rewriteExpr;
-
 @Slf4j
 @Component
 @RequiredArgsConstructor
@@ -40,8 +28,6 @@ public class TaskEngineExecutorImpl implements TaskEngineExecutor {
     
     private final TaskStoreService taskStoreService;
     
-    private final ThreadPoolExecutor alertNoticePool;
-    
     private final TendConsistencyConfiguration consistencyConfiguration;
     
     private final TaskExecutor taskExecutor;
@@ -50,19 +36,42 @@ public class TaskEngineExecutorImpl implements TaskEngineExecutor {
     
     private final RedisTemplate<String, Object> consistencyRedisTemplate;
     
-    private String taskKey = null;
+    private final TaskCircuitBreaker taskCircuitBreaker;
+    
+    private final TaskRateLimiter taskRateLimiter;
+    
+    private final TaskDefinitionRegistry taskDefinitionRegistry;
+    
+    private final TaskLeaseManager taskLeaseManager;
+    
+    private final AlertExpressionEvaluator alertExpressionEvaluator;
+    
+    private final AlertNoticeAggregator alertNoticeAggregator;
+    
+    private final TaskCompletionCollector taskCompletionCollector;
     
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void executeTaskInstance(ConsistencyTaskInstance taskInstance) {
+        // 限流：未获取到许可的任务不做任何处理，保持原状态等待下次调度
+        if (!taskRateLimiter.tryAcquire(taskInstance)) {
+            log.info("[consistency framework] task [{}] is deferred by rate limiter", taskInstance.getId());
+            return;
+        }
+        // 超时后任务体仍在执行时 租约和并发许可在任务体结束后释放
+        boolean bodyRunning = false;
+        // 认领前的状态和执行时间 推迟执行时用于撤销认领
+        int previousStatus = taskInstance.getTaskStatus();
+        long previousExecuteTime = taskInstance.getExecuteTime();
         try {
-            if (!distributedLock.acquireDistributedLock(String.valueOf(taskInstance.getId()))) {
+            // 分片后各分片的任务id可能重复 锁路径同时包含分片键
+            if (!distributedLock.acquireDistributedLock(taskInstance.getId() + "_" + taskInstance.getShardKey())) {
                 log.info("[consistency framework] current task [{}] is running", taskInstance.getId());
                 return;
             }
             
             // 幂等检查
-            taskKey = String.format(KEY_FORMAT, taskInstance.getId());
+            String taskKey = TaskCompletionCollector.getTaskKey(taskInstance);
             if (consistencyRedisTemplate.hasKey(taskKey)) {
                 try {
                     taskStoreService.markSuccess(taskInstance);
@@ -82,31 +91,150 @@ public class TaskEngineExecutorImpl implements TaskEngineExecutor {
                 distributedLock.releaseDistributedLock();
                 return;
             }
-    
-            // 获取最新任务信息
-            taskInstance = taskStoreService.getTaskByIdAndShardKey(taskInstance.getId(), taskInstance.getShardKey());
+            taskLeaseManager.register(taskInstance);
     
             // 执行任务
-            taskExecutor.executeTask(taskInstance);
+            executeWithCircuitBreaker(taskInstance);
     
-            // 删除任务
-            int successResult = 0;
-            successResult = taskStoreService.markSuccess(taskInstance);
-            consistencyRedisTemplate.opsForValue().set(taskKey, taskKey);
-            consistencyRedisTemplate.expire(taskKey, 2, TimeUnit.DAYS);
-            log.info("[consistency framework] task execute result is [{}]", successResult > 0);
+            // 删除任务 由完成结果收集器批量写入
+            taskCompletionCollector.success(taskInstance);
+            log.info("[consistency framework] task [{}] executed successful", taskInstance.getId());
+        } catch (TaskDeferredException e) {
+            deferTask(taskInstance, previousStatus, previousExecuteTime, e);
+        } catch (TaskTimeoutException e) {
+            bodyRunning = true;
+            failAfterBodyFinished(taskInstance, e);
         } catch (Exception e) {
-            log.error("[consistency framework] {} execute task failed, cause is ", JSONUtil.toJsonStr(taskInstance), e);
-            taskInstance.setErrorMsg(getErrorMsg(e));
-            taskInstance.setExecuteTime(getNextExecuteTime(taskInstance));
-            taskStoreService.markFail(taskInstance);
-            log.info("[consistency framework] failed task will be scheduled in {}", getFormatTime(taskInstance.getExecuteTime()));
-            executeFallbackTask(taskInstance);
+            handleTaskFailure(taskInstance, e);
         } finally {
+            if (!bodyRunning) {
+                taskLeaseManager.unregister(taskInstance);
+                taskRateLimiter.release(taskInstance);
+            }
             distributedLock.releaseDistributedLock();
         }
     }
     
+    @Override
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRES_NEW)
+    public void executeImmediateTask(ConsistencyTaskInstance taskInstance) {
+        // 被限流或熔断的任务保持初始状态，由调度器后续执行
+        if (!taskCircuitBreaker.tryAcquirePermission(taskInstance.getMethodSignName())) {
+            log.info("[consistency framework] task [{}] is deferred by circuit breaker", taskInstance.getId());
+            return;
+        }
+        if (!taskRateLimiter.tryAcquire(taskInstance)) {
+            log.info("[consistency framework] task [{}] is deferred by rate limiter", taskInstance.getId());
+            return;
+        }
+        boolean bodyRunning = false;
+        int previousStatus = taskInstance.getTaskStatus();
+        long previousExecuteTime = taskInstance.getExecuteTime();
+        try {
+            // 条件更新即完成认领 新任务只会被认领一次，无需分布式锁和幂等检查
+            if (!taskStoreService.claimInitTask(taskInstance)) {
+                log.info("[consistency framework] task [{}] was already started by scheduler", taskInstance.getId());
+                return;
+            }
+            taskLeaseManager.register(taskInstance);
+            
+            // 使用内存中的任务实例和原始入参执行任务
+            executeWithCircuitBreaker(taskInstance);
+            
+            taskCompletionCollector.success(taskInstance);
+            log.info("[consistency framework] task [{}] executed successful", taskInstance.getId());
+        } catch (TaskDeferredException e) {
+            deferTask(taskInstance, previousStatus, previousExecuteTime, e);
+        } catch (TaskTimeoutException e) {
+            bodyRunning = true;
+            failAfterBodyFinished(taskInstance, e);
+        } catch (Exception e) {
+            handleTaskFailure(taskInstance, e);
+        } finally {
+            if (!bodyRunning) {
+                taskLeaseManager.unregister(taskInstance);
+                taskRateLimiter.release(taskInstance);
+            }
+        }
+    }
+    
+    /**
+     * 推迟执行任务 认领已在独立事务中提交，需要撤销认领，任务恢复原状态和执行次数，等待下次调度
+     * 撤销失败（如任务已被回收）时任务由租约回收或后续调度处理
+     *
+     * @param taskInstance        任务实例
+     * @param previousStatus      认领前的任务状态
+     * @param previousExecuteTime 认领前的执行时间
+     * @param e                   推迟的原因
+     */
+    private void deferTask(ConsistencyTaskInstance taskInstance, int previousStatus, long previousExecuteTime,
+            TaskDeferredException e) {
+        log.info("[consistency framework] task [{}] is deferred, {}", taskInstance.getId(), e.getMessage());
+        // 先停止续约 再撤销认领
+        taskLeaseManager.unregister(taskInstance);
+        try {
+            if (!taskStoreService.releaseClaim(taskInstance, previousStatus, previousExecuteTime)) {
+                log.warn("[consistency framework] task [{}] claim was already reaped or re-claimed, skip release",
+                        taskInstance.getId());
+            }
+        } catch (Exception ex) {
+            log.error("[consistency framework] release claim of deferred task [{}] failed, the task will be reaped "
+                    + "after its lease expires", taskInstance.getId(), ex);
+        }
+    }
+    
+    /**
+     * 超时的任务体可能仍在执行 保持执行中状态并继续续约，任务体结束后再标记失败，避免重试与仍在执行的任务体并发
+     * 任务体超过宽限期仍未结束时不再等待，停止续约、释放并发许可并按退避策略记录失败
+     *
+     * @param taskInstance 任务实例
+     * @param e            超时异常
+     */
+    private void failAfterBodyFinished(ConsistencyTaskInstance taskInstance, TaskTimeoutException e) {
+        e.getBodyFinished().whenComplete((result, throwable) -> {
+            try {
+                handleTaskFailure(taskInstance, e);
+            } finally {
+                taskLeaseManager.unregister(taskInstance);
+                taskRateLimiter.release(taskInstance);
+            }
+        });
+    }
+    
+    /**
+     * 标记任务失败并安排下次执行 满足条件时执行降级
+     *
+     * @param taskInstance 任务实例
+     * @param e            任务执行的异常
+     */
+    private void handleTaskFailure(ConsistencyTaskInstance taskInstance, Exception e) {
+        log.error("[consistency framework] {} execute task failed, cause is ", JSONUtil.toJsonStr(taskInstance), e);
+        taskInstance.setErrorMsg(getErrorMsg(e));
+        taskInstance.setExecuteTime(taskDefinitionRegistry.getNextExecuteTime(taskInstance));
+        taskCompletionCollector.fail(taskInstance);
+        log.info("[consistency framework] failed task will be scheduled in {}", getFormatTime(taskInstance.getExecuteTime()));
+        executeFallbackTask(taskInstance);
+    }
+    
+    /**
+     * 执行任务并将执行结果和耗时记录到熔断器
+     *
+     * @param taskInstance 任务实例
+     */
+    private void executeWithCircuitBreaker(ConsistencyTaskInstance taskInstance) {
+        long startTime = System.currentTimeMillis();
+        try {
+            taskExecutor.executeTask(taskInstance);
+        } catch (TaskDeferredException e) {
+            // 任务未执行 不记录到熔断器
+            throw e;
+        } catch (RuntimeException e) {
+            taskCircuitBreaker.onError(taskInstance.getMethodSignName(), System.currentTimeMillis() - startTime);
+            throw e;
+        }
+        taskCircuitBreaker.onSuccess(taskInstance.getMethodSignName(), System.currentTimeMillis() - startTime);
+    }
+    
     @Override
     public void executeFallbackTask(ConsistencyTaskInstance taskInstance) {
         // 无降级类，触发告警
@@ -115,26 +243,19 @@ public class TaskEngineExecutorImpl implements TaskEngineExecutor {
             return;
         }
         // 未满足降级阈值
-        if (taskInstance.getExecuteTimes() <= consistencyConfiguration.getFailCountThreshold()) {
+        if (!taskDefinitionRegistry.getBackoffPolicy(taskInstance).isFallbackThresholdReached(taskInstance,
+                consistencyConfiguration.getFailCountThreshold())) {
             return;
         }
-        log.info("[consistency framework] execute task {} fallback action", taskInstance.getId());
-        Class<?> fallbackClass = ReflectTools.getClassByName(taskInstance.getFallbackClassName());
-        if (ObjectUtils.isEmpty(fallbackClass)) {
+        ConsistencyTaskDefinition definition = taskDefinitionRegistry.getDefinition(taskInstance);
+        if (ObjectUtils.isEmpty(definition) || ObjectUtils.isEmpty(definition.getFallbackInvoker())) {
             return;
         }
-        // 执行降级
-        String taskParameterText = taskInstance.getTaskParameter();
-        String parameterTypes = taskInstance.getParameterTypes();
-        Class<?>[] paramTypes = ReflectTools.getArgsClass(parameterTypes.split(","));
-        Object[] paramValues = ReflectTools.buildArgs(taskParameterText, paramTypes);
-        Object fallbackClassBean = SpringUtil.getBean(fallbackClass, paramValues);
-        Method fallbackMethod = ReflectUtil.getMethod(fallbackClass, taskInstance.getMethodName(), paramTypes);
+        log.info("[consistency framework] execute task {} fallback action", taskInstance.getId());
+        // 执行降级 复用已解析的降级bean、降级方法和任务入参
         try {
-            fallbackMethod.invoke(fallbackClassBean, paramValues);
-            taskStoreService.markSuccess(taskInstance);
-            consistencyRedisTemplate.opsForValue().set(taskKey, taskKey);
-            consistencyRedisTemplate.expire(taskKey, 2, TimeUnit.DAYS);
+            definition.getFallbackInvoker().invoke(taskExecutor.resolveArgs(taskInstance, definition));
+            taskCompletionCollector.success(taskInstance);
             log.info("[consistency framework] fallback action executed successful");
         } catch (Exception e) {
             parseExpressionAndDoAlert(taskInstance);
@@ -145,7 +266,7 @@ public class TaskEngineExecutorImpl implements TaskEngineExecutor {
     }
     
     /**
-     * 解析并对表达式结果进行校验，并执行相关的告警逻辑
+     * 解析并对表达式结果进行校验，满足告警表达式的任务交给告警聚合器统一发送
      *
      * @param taskInstance 任务实例信息
      */
@@ -154,68 +275,19 @@ public class TaskEngineExecutorImpl implements TaskEngineExecutor {
             if (StringUtils.isEmpty(taskInstance.getAlertExpression())) {
                 return;
             }
-            alertNoticePool.submit(() -> {
-                String expr = rewriteExpr(taskInstance.getAlertExpression());
-                String exprResult = readExpr(expr, buildDataMap(taskInstance));
-                doAlert(exprResult, taskInstance);
-            });
+            if (!taskDefinitionRegistry.getBackoffPolicy(taskInstance).isAlertThresholdReached(taskInstance)) {
+                return;
+            }
+            if (!alertExpressionEvaluator.evaluate(taskInstance)) {
+                return;
+            }
+            log.warn("[consistency framework] task {} triggered alert rule, please check", taskInstance.getId());
+            alertNoticeAggregator.record(taskInstance);
         } catch (Exception e) {
             log.error("[consistency framework] send alert notice failed, detail is ", e);
         }
     }
     
-    private void doAlert(String exprResult, ConsistencyTaskInstance taskInstance) {
-        if (StringUtils.isEmpty(exprResult)) {
-            return;
-        }
-        if (!RESULT_FLAG.equals(exprResult)) {
-            return;
-        }
-        log.warn("[consistency framework] task {} triggered alert rule, please check", taskInstance.getId());
-        if (!StringUtils.isEmpty(taskInstance.getAlertActionBeanName())) {
-            return;
-        }
-        sendAlertNotice(taskInstance);
-    }
-    
-    private void sendAlertNotice(ConsistencyTaskInstance taskInstance) {
-        Map<String, ConsistencyFrameworkAlerter> beansOfTypeMap = SpringUtil.getBeansOfType(
-                ConsistencyFrameworkAlerter.class);
-        if (CollectionUtils.isEmpty(beansOfTypeMap)) {
-            log.warn("[consistency framework] can not get the implementations of ConsistencyFrameworkAlerter");
-            return;
-        }
-        try {
-            getConsistencyFrameworkAlerterImpl(taskInstance, beansOfTypeMap).sendAlertNotice(taskInstance);
-        } catch (Exception e) {
-            log.error("[consistency framework] invoke implementations of ConsistencyFrameworkAlerter failed", e);
-            throw new ConsistencyException(e);
-        }
-    }
-    
-    private ConsistencyFrameworkAlerter getConsistencyFrameworkAlerterImpl(ConsistencyTaskInstance taskInstance,
-            Map<String, ConsistencyFrameworkAlerter> beansOfTypeMap) {
-        if (beansOfTypeMap.size() == 1) {
-            String[] beanNamesForType = SpringUtil.getBeanNamesForType(ConsistencyFrameworkAlerter.class);
-            return SpringUtil.getBean(beanNamesForType[0]);
-        }
-        return beansOfTypeMap.get(taskInstance.getAlertActionBeanName());
-    }
-    
-    /**
-     * 获取任务下一次的执行时间
-     *
-     * @param taskInstance 一致性任务实例
-     * @return 下次执行时间
-     */
-    private long getNextExecuteTime(ConsistencyTaskInstance taskInstance) {
-        // 上次执行时间 + （下一次执行的次数 * 执行间隔）
-        // 对于一个任务重试执行的时间间隔，是有一个参数配置
-        // 第一次执行失败之后，会用第一次执行之前的时间 + （1 + 1） * 20s = 第一次执行时间往后推40s
-        return taskInstance.getExecuteTime() + ((taskInstance.getExecuteTimes() + 1) *
-                TimeUtils.secToMill(taskInstance.getExecuteIntervalSec()));
-    }
-    
     private String getFormatTime(long timestamp) {
         SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         return format.format(timestamp);
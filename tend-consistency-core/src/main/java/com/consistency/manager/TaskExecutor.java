@@ -1,16 +1,32 @@
 package com.consistency.manager;
 
+import com.consistency.annotation.ConsistencyTask;
+import com.consistency.config.TendConsistencyConfiguration;
 import com.consistency.exceptions.ConsistencyException;
+import com.consistency.exceptions.TaskDeferredException;
+import com.consistency.exceptions.TaskTimeoutException;
+import com.consistency.model.ConsistencyTaskDefinition;
 import com.consistency.model.ConsistencyTaskInstance;
 import com.consistency.utils.ReflectTools;
 import com.consistency.utils.SpringUtil;
 import com.consistency.utils.ThreadLocalUtil;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ObjectUtils;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 任务执行器
@@ -19,47 +35,144 @@ import java.lang.reflect.Method;
  */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class TaskExecutor {
     
+    private final TaskDefinitionRegistry taskDefinitionRegistry;
+    
+    private final ThreadPoolExecutor consistencyTimeoutPool;
+    
+    private final ScheduledThreadPoolExecutor consistencyScheduledPool;
+    
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+    
     /**
-     * 执行指定任务
+     * 执行指定任务 配置了超时时间的任务在超时控制线程池中执行，超时后中断执行并抛出{@link TaskTimeoutException}
+     * 超时控制线程池已满时抛出{@link TaskDeferredException}，任务推迟执行
      *
      * @param taskInstance 任务实例信息
      */
     public void executeTask(ConsistencyTaskInstance taskInstance) {
-        // 获取方法签名 格式：类路径#方法名(参数1的类型,参数2的类型,...参数N的类型)
-        String methodSignName = taskInstance.getMethodSignName();
-        // 获取目标类
-        Class<?> clazz = ReflectTools.getTaskMethodClass(methodSignName);
-        if (ObjectUtils.isEmpty(clazz)) {
+        ConsistencyTask consistencyTask = taskDefinitionRegistry.getConsistencyTask(taskInstance);
+        if (consistencyTask == null || consistencyTask.timeoutMs() <= 0) {
+            invokeTask(taskInstance);
+            return;
+        }
+        AtomicBoolean started = new AtomicBoolean(false);
+        CompletableFuture<Void> bodyFinished = new CompletableFuture<>();
+        Future<?> future;
+        try {
+            future = consistencyTimeoutPool.submit(() -> {
+                // 已被放弃的任务不再开始执行
+                if (!started.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    invokeTask(taskInstance);
+                } finally {
+                    bodyFinished.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("[consistency framework] timeout pool is exhausted, task [{}] is deferred", taskInstance.getId());
+            throw new TaskDeferredException("timeout pool is exhausted");
+        }
+        try {
+            future.get(consistencyTask.timeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.error("[consistency framework] task [{}] execute timeout after {} ms", taskInstance.getId(), consistencyTask.timeoutMs());
+            throw abandon(taskInstance, future, started, bodyFinished,
+                    String.format("task execute timeout after %d ms", consistencyTask.timeoutMs()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw abandon(taskInstance, future, started, bodyFinished, "task execute is interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ConsistencyException) {
+                throw (ConsistencyException) cause;
+            }
+            throw new ConsistencyException(cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+    
+    /**
+     * 放弃等待任务 中断执行中的任务体，不响应中断的任务体会继续执行直到结束
+     * 任务体超过宽限期仍未结束时bodyFinished以异常完成，调用方不再等待它结束
+     *
+     * @param taskInstance 任务实例信息
+     * @param future       任务体的执行结果
+     * @param started      任务体是否已开始执行
+     * @param bodyFinished 任务体结束或超过宽限期时完成
+     * @param message      异常信息
+     * @return 超时异常
+     */
+    private TaskTimeoutException abandon(ConsistencyTaskInstance taskInstance, Future<?> future, AtomicBoolean started,
+            CompletableFuture<Void> bodyFinished, String message) {
+        future.cancel(true);
+        if (started.compareAndSet(false, true)) {
+            // 任务体尚未开始 不会再执行
+            bodyFinished.complete(null);
+            return new TaskTimeoutException(message, bodyFinished);
+        }
+        long graceMs = tendConsistencyConfiguration.getTimeoutGraceMs();
+        ScheduledFuture<?> graceTimer = consistencyScheduledPool.schedule(() -> {
+            if (bodyFinished.completeExceptionally(new TimeoutException("task body is still running after grace period"))) {
+                log.error("[consistency framework] task [{}] is still running {} ms after timeout, stop waiting for it",
+                        taskInstance.getId(), graceMs);
+            }
+        }, graceMs, TimeUnit.MILLISECONDS);
+        bodyFinished.whenComplete((result, throwable) -> graceTimer.cancel(false));
+        return new TaskTimeoutException(message, bodyFinished);
+    }
+    
+    /**
+     * 反射调用任务方法
+     *
+     * @param taskInstance 任务实例信息
+     */
+    private void invokeTask(ConsistencyTaskInstance taskInstance) {
+        // 获取任务定义 方法签名格式：类路径#方法名(参数1的类型,参数2的类型,...参数N的类型)
+        ConsistencyTaskDefinition definition = taskDefinitionRegistry.getDefinition(taskInstance);
+        if (ObjectUtils.isEmpty(definition)) {
             return;
         }
         // 获取目标对象
-        Object bean = SpringUtil.getBean(clazz);
+        Object bean = SpringUtil.getBean(definition.getTargetClass());
         if (ObjectUtils.isEmpty(bean)) {
             return;
         }
         // 获取目标方法
-        String methodName = taskInstance.getMethodName();
-        String[] parameterTypes = taskInstance.getParameterTypes().split(",");
-        Class<?>[] parameterClasses = ReflectTools.getArgsClass(parameterTypes);
-        Method targetMethod = ReflectTools.getTargetMethod(methodName, parameterClasses, clazz);
-        if (ObjectUtils.isEmpty(targetMethod)) {
-            return;
-        }
+        Method targetMethod = definition.getMethod();
         // 构造入参
-        Object[] args = ReflectTools.buildArgs(taskInstance.getTaskParameter(), parameterClasses);
+        Object[] args = resolveArgs(taskInstance, definition);
         try {
             ThreadLocalUtil.setFlag(true);
             //这里仍然是调用aop增强后的方法，所以使用threadlocal标记使其立即执行
             targetMethod.invoke(bean, args);
-            ThreadLocalUtil.setFlag(false);
         } catch (InvocationTargetException e) {
             log.error("[consistency framework] invoke target method failed, detail is ", e);
             Throwable target = e.getTargetException();
             throw new ConsistencyException((Exception) target);
         } catch (Exception e) {
             throw new ConsistencyException(e);
+        } finally {
+            // 线程会被复用，失败和中断时同样需要清除标记
+            ThreadLocalUtil.setFlag(false);
+        }
+    }
+    
+    /**
+     * 获取任务方法的入参 已解析过的入参保存在任务实例中，执行和降级时复用
+     *
+     * @param taskInstance 任务实例信息
+     * @param definition   任务定义
+     * @return 任务方法的入参
+     */
+    public Object[] resolveArgs(ConsistencyTaskInstance taskInstance, ConsistencyTaskDefinition definition) {
+        if (taskInstance.getArgs() == null) {
+            taskInstance.setArgs(ReflectTools.buildArgs(taskInstance.getTaskParameter(),
+                    definition.getMethod().getParameterTypes()));
         }
+        return taskInstance.getArgs();
     }
 }
@@ -0,0 +1,242 @@
+package com.consistency.manager;
+
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.custom.store.ShardingTaskStore;
+import com.consistency.custom.store.TaskStore;
+import com.consistency.exceptions.ConsistencyException;
+import com.consistency.model.ConsistencyTaskInstance;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static com.consistency.config.Constant.GROUP_COMMIT_THREAD_NAME;
+
+/**
+ * 任务入库的组提交写入器
+ * 收集窗口内并发的入库请求，在一个事务中批量写入，提交后再唤醒各个调用方，入库的持久性与逐条写入一致
+ * 调用方最多等待{@link #WAIT_TIMEOUT_SECONDS}秒，写入线程停止后剩余的请求以失败结束，调用方不会无限阻塞
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskGroupCommitWriter implements InitializingBean, DisposableBean {
+
+    /**
+     * 调用方等待所在批次提交的最长时间
+     */
+    private static final long WAIT_TIMEOUT_SECONDS = 30L;
+
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+
+    private final TaskStore taskStore;
+
+    private final ObjectProvider<DataSource> dataSourceProvider;
+
+    /**
+     * 写入事务 批量写入失败时整批回滚，逐条重试才不会写入重复的任务
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 等待写入的任务
+     */
+    private final BlockingQueue<PendingInsert> pendingQueue = new LinkedBlockingQueue<>();
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!tendConsistencyConfiguration.getStoreGroupCommitEnabled()) {
+            return;
+        }
+        DataSource dataSource = dataSourceProvider.getIfUnique();
+        if (dataSource == null) {
+            log.warn("[consistency framework] no unique data source, group commit is disabled");
+            return;
+        }
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        running = true;
+        writerThread = new Thread(this::writeLoop, GROUP_COMMIT_THREAD_NAME);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * 写入任务 阻塞到所在批次提交后返回
+     *
+     * @param taskInstance 任务实例信息
+     * @return 写入的行数
+     */
+    public int insert(ConsistencyTaskInstance taskInstance) {
+        if (!running) {
+            return taskStore.insert(taskInstance);
+        }
+        PendingInsert pendingInsert = new PendingInsert(taskInstance);
+        pendingQueue.add(pendingInsert);
+        // 写入线程可能在加入队列前已经退出 仍在队列中的请求改为直接写入
+        if (!running && pendingQueue.remove(pendingInsert)) {
+            return taskStore.insert(taskInstance);
+        }
+        return await(pendingInsert);
+    }
+
+    /**
+     * 等待所在批次提交 不响应中断，入库结果未知时不能提前返回
+     *
+     * @param pendingInsert 等待写入的任务
+     * @return 写入的行数
+     */
+    private int await(PendingInsert pendingInsert) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_TIMEOUT_SECONDS);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return pendingInsert.future.get(Math.max(deadline - System.nanoTime(), 0L), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new ConsistencyException(e);
+                } catch (TimeoutException e) {
+                    // 还在队列中说明尚未写入 可以安全地放弃
+                    if (pendingQueue.remove(pendingInsert)) {
+                        throw new ConsistencyException("group commit of task timed out, the task is not saved");
+                    }
+                    throw new ConsistencyException("group commit of task timed out, the task may or may not be saved");
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (running || !pendingQueue.isEmpty()) {
+                try {
+                    PendingInsert first = pendingQueue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    List<PendingInsert> batch = new ArrayList<>();
+                    batch.add(first);
+                    collect(batch);
+                    write(batch);
+                } catch (InterruptedException e) {
+                    // 关闭时把队列中剩余的任务写完
+                    log.info("[consistency framework] group commit writer is stopping, {} pending tasks left", pendingQueue.size());
+                }
+            }
+        } finally {
+            // 写入线程异常退出或关闭时 后续的请求直接写入，已在队列中的请求以失败结束
+            running = false;
+            failPending();
+        }
+    }
+
+    private void failPending() {
+        PendingInsert pendingInsert;
+        while ((pendingInsert = pendingQueue.poll()) != null) {
+            pendingInsert.future.completeExceptionally(new ConsistencyException("group commit writer is stopped"));
+        }
+    }
+
+    /**
+     * 在收集窗口内收集后续的入库请求
+     *
+     * @param batch 当前批次
+     * @throws InterruptedException 等待时被中断
+     */
+    private void collect(List<PendingInsert> batch) throws InterruptedException {
+        int maxBatchSize = tendConsistencyConfiguration.getStoreGroupCommitMaxBatchSize();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tendConsistencyConfiguration.getStoreGroupCommitWindowMs());
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingInsert next = remaining > 0 ? pendingQueue.poll(remaining, TimeUnit.NANOSECONDS) : pendingQueue.poll();
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * 批量写入 批量写入在一个事务中执行，失败时整批回滚，再逐条重试以免一条任务的错误影响同批的其他任务
+     *
+     * @param batch 当前批次
+     */
+    private void write(List<PendingInsert> batch) {
+        try {
+            // 组提交只合并没有事务的调用方的写入 写入事务是写入器自己的，不限制分片存储的分片
+            ShardingTaskStore.callerWithoutTransaction(() -> transactionTemplate.execute(status -> taskStore.insertBatch(
+                    batch.stream().map(pendingInsert -> pendingInsert.taskInstance).collect(Collectors.toList()))));
+            batch.forEach(pendingInsert -> pendingInsert.future.complete(1));
+            return;
+        } catch (Exception e) {
+            log.warn("[consistency framework] group commit of {} tasks failed, retry one by one", batch.size(), e);
+        } catch (Throwable e) {
+            batch.forEach(pendingInsert -> pendingInsert.future.completeExceptionally(e));
+            throw e;
+        }
+        for (PendingInsert pendingInsert : batch) {
+            try {
+                // 回滚后批量写入时回填的主键已无效
+                pendingInsert.taskInstance.setId(null);
+                pendingInsert.future.complete(ShardingTaskStore.callerWithoutTransaction(
+                        () -> transactionTemplate.execute(status -> taskStore.insert(pendingInsert.taskInstance))));
+            } catch (Throwable e) {
+                pendingInsert.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 等待写入的任务
+     */
+    private static class PendingInsert {
+
+        private final ConsistencyTaskInstance taskInstance;
+
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        PendingInsert(ConsistencyTaskInstance taskInstance) {
+            this.taskInstance = taskInstance;
+        }
+    }
+}
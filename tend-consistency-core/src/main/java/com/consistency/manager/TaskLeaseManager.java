@@ -0,0 +1,110 @@
+package com.consistency.manager;
+
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.service.TaskStoreService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务租约管理器
+ * 定时批量续约本节点执行中的任务，并回收租约过期（如节点宕机、重启）而遗留在执行状态的任务
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskLeaseManager implements InitializingBean {
+    
+    private final TaskStoreService taskStoreService;
+    
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+    
+    private final ScheduledThreadPoolExecutor consistencyScheduledPool;
+    
+    private final TaskDefinitionRegistry taskDefinitionRegistry;
+    
+    /**
+     * 本节点执行中的任务 任务id_分片键 -> 任务实例，分片后各分片的任务id可能重复
+     */
+    private final Map<String, ConsistencyTaskInstance> runningTaskMap = new ConcurrentHashMap<>();
+    
+    @Override
+    public void afterPropertiesSet() {
+        long heartbeatIntervalMs = tendConsistencyConfiguration.getLeaseHeartbeatIntervalMs();
+        long reaperIntervalMs = tendConsistencyConfiguration.getLeaseReaperIntervalMs();
+        consistencyScheduledPool.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs,
+                TimeUnit.MILLISECONDS);
+        consistencyScheduledPool.scheduleWithFixedDelay(this::reapExpiredTasks, reaperIntervalMs, reaperIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 登记执行中的任务
+     *
+     * @param taskInstance 任务实例信息
+     */
+    public void register(ConsistencyTaskInstance taskInstance) {
+        runningTaskMap.put(getLeaseKey(taskInstance), taskInstance);
+    }
+    
+    /**
+     * 移除执行结束的任务
+     *
+     * @param taskInstance 任务实例信息
+     */
+    public void unregister(ConsistencyTaskInstance taskInstance) {
+        runningTaskMap.remove(getLeaseKey(taskInstance));
+    }
+    
+    private String getLeaseKey(ConsistencyTaskInstance taskInstance) {
+        return taskInstance.getId() + "_" + taskInstance.getShardKey();
+    }
+    
+    /**
+     * 批量续约本节点执行中的任务
+     */
+    private void heartbeat() {
+        try {
+            List<ConsistencyTaskInstance> runningTasks = new ArrayList<>(runningTaskMap.values());
+            if (runningTasks.isEmpty()) {
+                return;
+            }
+            taskStoreService.renewLease(runningTasks);
+        } catch (Exception e) {
+            log.error("[consistency framework] renew lease of running tasks failed", e);
+        }
+    }
+    
+    /**
+     * 回收租约过期的执行中任务 与执行失败的任务一样按任务方法的退避策略安排重试
+     */
+    private void reapExpiredTasks() {
+        try {
+            long now = System.currentTimeMillis();
+            List<ConsistencyTaskInstance> expiredTasks = taskStoreService.listExpiredTasks(now);
+            for (ConsistencyTaskInstance taskInstance : expiredTasks) {
+                taskInstance.setErrorMsg("task lease expired");
+                // 从发现租约过期时开始退避
+                taskInstance.setExecuteTime(now);
+                taskInstance.setExecuteTime(taskDefinitionRegistry.getNextExecuteTime(taskInstance));
+            }
+            int count = taskStoreService.reapExpiredTasks(expiredTasks, now);
+            if (count > 0) {
+                log.warn("[consistency framework] reaped {} tasks with expired lease", count);
+            }
+        } catch (Exception e) {
+            log.error("[consistency framework] reap tasks with expired lease failed", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.consistency.manager;
+
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.custom.store.DelegatingTaskStore;
+import com.consistency.custom.store.PartitionedTaskStore;
+import com.consistency.custom.store.TaskStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务表分区管理器
+ * 使用分区存储时定时创建后续的分区，并摘除保留期之前任务全部完成的分区
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskPartitionManager implements InitializingBean {
+    
+    private final TaskStore taskStore;
+    
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+    
+    private final ScheduledThreadPoolExecutor consistencyScheduledPool;
+    
+    @Override
+    public void afterPropertiesSet() {
+        if (DelegatingTaskStore.unwrap(taskStore, PartitionedTaskStore.class) == null) {
+            return;
+        }
+        long maintainIntervalMs = tendConsistencyConfiguration.getStorePartitionMaintainIntervalMs();
+        consistencyScheduledPool.scheduleWithFixedDelay(this::maintain, 0, maintainIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 维护任务表分区
+     */
+    private void maintain() {
+        try {
+            DelegatingTaskStore.unwrap(taskStore, PartitionedTaskStore.class).maintain(LocalDateTime.now(),
+                    tendConsistencyConfiguration.getStorePartitionPrecreateCount(),
+                    tendConsistencyConfiguration.getStorePartitionRetentionCount(),
+                    tendConsistencyConfiguration.getStorePartitionDropDetached());
+        } catch (Exception e) {
+            log.error("[consistency framework] maintain task partitions failed", e);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.consistency.manager;
+
+import com.consistency.annotation.ConsistencyTask;
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.model.RateLimitOverride;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.consistency.config.Constant.RATE_LIMIT_KEY_FORMAT;
+
+/**
+ * 任务限流器 按方法签名限制任务的执行速率和并发数
+ * 未获取到执行许可的任务不会被启动，保持原状态等待下次调度，也不会增加执行次数
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskRateLimiter {
+
+    /**
+     * 集群限流脚本 以秒为窗口对执行次数计数
+     */
+    private static final RedisScript<Long> RATE_LIMIT_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('incr', KEYS[1]) " +
+                    "if current == 1 then redis.call('expire', KEYS[1], 2) end " +
+                    "return current", Long.class);
+
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+
+    private final TaskDefinitionRegistry taskDefinitionRegistry;
+
+    private final RedisTemplate<String, Object> consistencyRedisTemplate;
+
+    /**
+     * 方法签名 -> 令牌桶
+     */
+    private final Map<String, TokenBucket> tokenBucketMap = new ConcurrentHashMap<>();
+
+    /**
+     * 方法签名 -> 并发许可
+     */
+    private final Map<String, AdjustableSemaphore> concurrencyMap = new ConcurrentHashMap<>();
+
+    /**
+     * 方法签名 -> 动态配置的限流参数 优先于注解上的配置
+     */
+    private volatile Map<String, RateLimitOverride> overrideMap = Collections.emptyMap();
+
+    /**
+     * 设置动态配置的限流参数 速率限制在下一次获取许可时生效，并发限制按差值调整许可数
+     *
+     * @param overrides 方法签名 -> 限流参数
+     */
+    public void setOverrides(Map<String, RateLimitOverride> overrides) {
+        overrideMap = overrides;
+        tokenBucketMap.clear();
+    }
+
+    /**
+     * 尝试获取任务的执行许可 获取成功后需要调用release释放并发许可
+     *
+     * @param taskInstance 任务实例信息
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(ConsistencyTaskInstance taskInstance) {
+        ConsistencyTask consistencyTask = taskDefinitionRegistry.getConsistencyTask(taskInstance);
+        if (consistencyTask == null) {
+            return true;
+        }
+        String methodSignName = taskInstance.getMethodSignName();
+        RateLimitOverride override = overrideMap.get(methodSignName);
+        int maxConcurrency = override != null && override.getMaxConcurrency() != null
+                ? override.getMaxConcurrency() : consistencyTask.maxConcurrency();
+        double maxRatePerSecond = override != null && override.getMaxRatePerSecond() != null
+                ? override.getMaxRatePerSecond() : consistencyTask.maxRatePerSecond();
+        AdjustableSemaphore semaphore = concurrencyMap.get(methodSignName);
+        if (maxConcurrency > 0 || semaphore != null) {
+            // 已创建的并发许可不再移除 取消并发限制时放开许可数，保证获取和释放始终成对
+            int limit = maxConcurrency > 0 ? maxConcurrency : AdjustableSemaphore.UNLIMITED;
+            if (semaphore == null) {
+                semaphore = concurrencyMap.computeIfAbsent(methodSignName, key -> new AdjustableSemaphore(limit));
+            }
+            semaphore.adjust(limit);
+            if (!semaphore.tryAcquire()) {
+                return false;
+            }
+        }
+        if (maxRatePerSecond > 0 && !tryAcquireRate(methodSignName, maxRatePerSecond)) {
+            if (semaphore != null) {
+                semaphore.release();
+            }
+            return false;
+        }
+        // 记录获取的许可 释放时只释放这一个，动态配置在获取和释放之间新建的许可不受影响
+        taskInstance.setConcurrencyPermit(semaphore);
+        return true;
+    }
+
+    /**
+     * 释放任务的并发许可
+     *
+     * @param taskInstance 任务实例信息
+     */
+    public void release(ConsistencyTaskInstance taskInstance) {
+        Semaphore semaphore = taskInstance.getConcurrencyPermit();
+        if (semaphore != null) {
+            taskInstance.setConcurrencyPermit(null);
+            semaphore.release();
+        }
+    }
+
+    private boolean tryAcquireRate(String methodSignName, double maxRatePerSecond) {
+        if (tendConsistencyConfiguration.getRateLimitClusterMode()) {
+            try {
+                return tryAcquireClusterRate(methodSignName, maxRatePerSecond);
+            } catch (Exception e) {
+                log.warn("[consistency framework] cluster rate limit failed, fall back to local limit", e);
+            }
+        }
+        return tokenBucketMap.computeIfAbsent(methodSignName, key -> new TokenBucket(maxRatePerSecond)).tryAcquire();
+    }
+
+    private boolean tryAcquireClusterRate(String methodSignName, double maxRatePerSecond) {
+        long currentSecond = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        String key = String.format(RATE_LIMIT_KEY_FORMAT, methodSignName, currentSecond);
+        Long current = consistencyRedisTemplate.execute(RATE_LIMIT_SCRIPT, new StringRedisSerializer(),
+                new GenericToStringSerializer<>(Long.class), Collections.singletonList(key));
+        return current != null && current <= Math.max(1L, (long) maxRatePerSecond);
+    }
+
+    /**
+     * 可调整许可数的信号量
+     */
+    private static class AdjustableSemaphore extends Semaphore {
+
+        /**
+         * 不限制并发时的许可数
+         */
+        static final int UNLIMITED = Integer.MAX_VALUE / 2;
+
+        private static final long serialVersionUID = 1L;
+
+        private volatile int limit;
+
+        AdjustableSemaphore(int limit) {
+            super(limit);
+            this.limit = limit;
+        }
+
+        void adjust(int newLimit) {
+            if (newLimit == limit) {
+                return;
+            }
+            synchronized (this) {
+                if (newLimit > limit) {
+                    release(newLimit - limit);
+                } else if (newLimit < limit) {
+                    // 许可数可以减为负数 执行中的任务释放后才会有新的许可
+                    reducePermits(limit - newLimit);
+                }
+                limit = newLimit;
+            }
+        }
+    }
+
+    /**
+     * 本地令牌桶 桶容量为一秒的令牌数
+     */
+    private static class TokenBucket {
+
+        private final double permitsPerNanos;
+
+        private final double maxPermits;
+
+        private double storedPermits;
+
+        private long lastRefillNanos;
+
+        TokenBucket(double maxRatePerSecond) {
+            this.permitsPerNanos = maxRatePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.maxPermits = Math.max(1D, maxRatePerSecond);
+            this.storedPermits = maxPermits;
+            this.lastRefillNanos = System.nanoTime();
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            storedPermits = Math.min(maxPermits, storedPermits + (now - lastRefillNanos) * permitsPerNanos);
+            lastRefillNanos = now;
+            if (storedPermits < 1D) {
+                return false;
+            }
+            storedPermits -= 1D;
+            return true;
+        }
+    }
+}
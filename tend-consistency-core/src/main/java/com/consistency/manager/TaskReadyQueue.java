@@ -0,0 +1,151 @@
+package com.consistency.manager;
+
+import com.consistency.custom.store.TaskRefConsumer;
+
+import java.util.Arrays;
+
+/**
+ * 调度器的待执行任务队列 按执行时间排序的小顶堆
+ * 只保存任务的id、分片键和执行时间三个long，分别存放在三个并行数组中，不持有任务实例
+ * 每个任务占用24字节，百万级的待执行任务只需几十MB，任务实例在派发时才加载
+ * 非线程安全，只由调度线程使用
+ *
+ * @author wzw
+ */
+public class TaskReadyQueue {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private long[] ids;
+
+    private long[] shardKeys;
+
+    private long[] executeTimes;
+
+    private int size;
+
+    public TaskReadyQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TaskReadyQueue(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        this.ids = new long[capacity];
+        this.shardKeys = new long[capacity];
+        this.executeTimes = new long[capacity];
+    }
+
+    /**
+     * 加入一个任务
+     *
+     * @param id          任务id
+     * @param shardKey    任务分片键
+     * @param executeTime 执行时间
+     */
+    public void offer(long id, long shardKey, long executeTime) {
+        if (size == ids.length) {
+            int capacity = ids.length + (ids.length >> 1) + 1;
+            ids = Arrays.copyOf(ids, capacity);
+            shardKeys = Arrays.copyOf(shardKeys, capacity);
+            executeTimes = Arrays.copyOf(executeTimes, capacity);
+        }
+        ids[size] = id;
+        shardKeys[size] = shardKey;
+        executeTimes[size] = executeTime;
+        siftUp(size++);
+    }
+
+    /**
+     * 取出最多maxCount个执行时间不晚于now的任务 按执行时间从早到晚
+     *
+     * @param now      当前时间
+     * @param maxCount 最多取出的任务数
+     * @param consumer 取出的任务
+     * @return 取出的任务数
+     */
+    public int pollDue(long now, int maxCount, TaskRefConsumer consumer) {
+        int count = 0;
+        while (count < maxCount && size > 0 && executeTimes[0] <= now) {
+            long id = ids[0];
+            long shardKey = shardKeys[0];
+            long executeTime = executeTimes[0];
+            size--;
+            if (size > 0) {
+                move(size, 0);
+                siftDown(0);
+            }
+            consumer.accept(id, shardKey, executeTime);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 最早的执行时间
+     *
+     * @return 最早的执行时间 队列为空时返回Long.MAX_VALUE
+     */
+    public long peekExecuteTime() {
+        return size == 0 ? Long.MAX_VALUE : executeTimes[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 清空队列 保留已分配的数组供下次使用
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    private void siftUp(int index) {
+        long id = ids[index];
+        long shardKey = shardKeys[index];
+        long executeTime = executeTimes[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (executeTimes[parent] <= executeTime) {
+                break;
+            }
+            move(parent, index);
+            index = parent;
+        }
+        ids[index] = id;
+        shardKeys[index] = shardKey;
+        executeTimes[index] = executeTime;
+    }
+
+    private void siftDown(int index) {
+        long id = ids[index];
+        long shardKey = shardKeys[index];
+        long executeTime = executeTimes[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < size && executeTimes[right] < executeTimes[child]) {
+                child = right;
+            }
+            if (executeTime <= executeTimes[child]) {
+                break;
+            }
+            move(child, index);
+            index = child;
+        }
+        ids[index] = id;
+        shardKeys[index] = shardKey;
+        executeTimes[index] = executeTime;
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        shardKeys[to] = shardKeys[from];
+        executeTimes[to] = executeTimes[from];
+    }
+}
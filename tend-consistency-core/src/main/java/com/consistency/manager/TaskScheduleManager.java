@@ -1,19 +1,18 @@
 package com.consistency.manager;
 
+import com.consistency.enums.ConsistencyTaskStatusEnum;
 import com.consistency.model.ConsistencyTaskInstance;
 import com.consistency.service.TaskStoreService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.springframework.util.CollectionUtils;
 
-import java.util.List;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.CountDownLatch;
-import java.util.stream.Collectors;
 
 /**
  * 任务调度管理器
+ * 扫描时只加载未完成任务的id、分片键和执行时间放入{@link TaskReadyQueue}，派发时才加载任务实例
  *
  * @author wzw
  */
@@ -21,45 +20,100 @@ import java.util.stream.Collectors;
 @Component
 @RequiredArgsConstructor
 public class TaskScheduleManager {
-    
+
     private final TaskStoreService taskStoreService;
-    
+
     private final CompletionService<ConsistencyTaskInstance> consistencyTaskPool;
-    
+
+    private final TaskAdmissionController taskAdmissionController;
+
     private final TaskEngineExecutor taskEngineExecutor;
-    
+
+    private final TaskCircuitBreaker taskCircuitBreaker;
+
+    /**
+     * 待执行任务队列 每轮调度前清空，数组在各轮之间复用
+     */
+    private final TaskReadyQueue readyQueue = new TaskReadyQueue();
+
     /**
      * 调度任务，需要在业务代码中自定义调度
      *
      * @throws InterruptedException
      */
     public void performConsistencyTask() throws InterruptedException {
-        // 获取未完成任务列表
-        List<ConsistencyTaskInstance> consistencyTaskInstances = taskStoreService.listByUnFinishTask();
-        if (!CollectionUtils.isEmpty(consistencyTaskInstances)) {
-            return;
+        synchronized (readyQueue) {
+            // 线程池繁忙时本轮不扫描 未完成的任务留给后续调度
+            if (taskAdmissionController.schedulableCapacity() <= 0) {
+                taskAdmissionController.throttled();
+                log.info("[consistency framework] consistency task pool is busy, skip this round");
+                return;
+            }
+            readyQueue.clear();
+            // 获取未完成任务的引用
+            taskStoreService.scanUnFinishTaskRefs(readyQueue::offer);
+            if (readyQueue.isEmpty()) {
+                return;
+            }
+            // 按执行时间从早到晚分批派发到期的任务 每批不超过线程池当前可供调度的容量
+            int total = 0;
+            while (readyQueue.peekExecuteTime() <= System.currentTimeMillis()) {
+                int capacity = taskAdmissionController.schedulableCapacity();
+                if (capacity <= 0) {
+                    // 线程池繁忙 剩余的任务留给后续调度
+                    taskAdmissionController.throttled();
+                    break;
+                }
+                int count = Math.min(capacity, readyQueue.size());
+                CountDownLatch latch = new CountDownLatch(count);
+                int[] admitted = new int[1];
+                int polled = readyQueue.pollDue(System.currentTimeMillis(), count, (id, shardKey, executeTime) -> {
+                    boolean submitted = taskAdmissionController.trySubmit(() -> {
+                        try {
+                            return dispatch(id, shardKey);
+                        } finally {
+                            latch.countDown();
+                        }
+                    });
+                    if (submitted) {
+                        admitted[0]++;
+                    } else {
+                        latch.countDown();
+                    }
+                });
+                for (int i = polled; i < count; i++) {
+                    latch.countDown();
+                }
+                latch.await();
+                total += admitted[0];
+                // 取出已完成的结果 调度不关心结果，避免完成队列无限增长
+                while (consistencyTaskPool.poll() != null) {
+                    // ignore
+                }
+            }
+            log.info("[consistency framework] execute finished, {} tasks dispatched", total);
         }
-        // 过滤任务
-        consistencyTaskInstances = consistencyTaskInstances.stream()
-                //未到运行时间
-                .filter(v -> v.getExecuteTime() - System.currentTimeMillis() <= 0)
-                .collect(Collectors.toList());
-        if (!CollectionUtils.isEmpty(consistencyTaskInstances)) {
-            return;
+    }
+
+    /**
+     * 加载并执行任务 任务已完成、执行中或熔断中时跳过
+     *
+     * @param id       任务id
+     * @param shardKey 任务分片键
+     * @return 执行的任务实例 跳过时返回null
+     */
+    private ConsistencyTaskInstance dispatch(long id, long shardKey) {
+        ConsistencyTaskInstance taskInstance = taskStoreService.getTaskByIdAndShardKey(id, shardKey);
+        if (taskInstance == null
+                || taskInstance.getTaskStatus() != ConsistencyTaskStatusEnum.INIT.getCode()
+                && taskInstance.getTaskStatus() != ConsistencyTaskStatusEnum.FAIL.getCode()) {
+            return null;
         }
-        // 执行任务
-        CountDownLatch latch = new CountDownLatch(consistencyTaskInstances.size());
-        for (ConsistencyTaskInstance taskInstance : consistencyTaskInstances) {
-            consistencyTaskPool.submit(() -> {
-               try {
-                   taskEngineExecutor.executeTaskInstance(taskInstance);
-                   return taskInstance;
-               } finally {
-                   latch.countDown();
-               }
-            });
+        //熔断中的任务不做任何处理，保持原状态等待后续调度
+        if (!taskCircuitBreaker.tryAcquirePermission(taskInstance.getMethodSignName())) {
+            return null;
         }
-        latch.await();
-        log.info("[consistency framework] execute finished");
+        taskEngineExecutor.executeTaskInstance(taskInstance);
+        return taskInstance;
     }
 }
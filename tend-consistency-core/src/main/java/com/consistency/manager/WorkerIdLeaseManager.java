@@ -0,0 +1,179 @@
+package com.consistency.manager;
+
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.custom.shard.CasSnowflakeShardingKeyGenerator;
+import com.consistency.custom.shard.ShardingKeyGenerator;
+import com.consistency.exceptions.ConsistencyException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.consistency.config.Constant.WORKER_ID_PATH;
+
+/**
+ * 分片键生成器的机器id租约
+ * 启动时在zk的机器id目录下创建以机器id命名的临时节点，创建成功即租到该机器id，节点已存在则尝试下一个
+ * 连接中断时会话可能已在服务端过期、临时节点可能已被删除，分片键生成器暂停生成
+ * 重连后确认原节点仍属于当前会话才恢复生成，否则重新租用机器id并设置到分片键生成器
+ * 重新租用失败时按指数退避重试，直到租到机器id
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WorkerIdLeaseManager implements InitializingBean, DisposableBean {
+
+    /**
+     * 重新租用失败后的最短重试间隔
+     */
+    private static final long MIN_RETRY_DELAY_MS = 1000L;
+
+    /**
+     * 重新租用失败后的最长重试间隔
+     */
+    private static final long MAX_RETRY_DELAY_MS = 30000L;
+
+    private final CuratorFramework consistencyCuratorFramework;
+
+    private final ShardingKeyGenerator consistencyShardingKeyGenerator;
+
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+
+    private final ScheduledThreadPoolExecutor consistencyScheduledPool;
+
+    /**
+     * 是否正在重新租用 避免多次重连事件同时重新租用
+     */
+    private final AtomicBoolean renewing = new AtomicBoolean(false);
+
+    /**
+     * 连接是否中断过 中断后需要在重连时确认或重新租用机器id
+     */
+    private volatile boolean leaseUnverified = false;
+
+    /**
+     * 连接中断的次数 确认租约期间连接再次中断时确认结果无效
+     */
+    private final AtomicLong suspendCount = new AtomicLong();
+
+    /**
+     * 当前持有的机器id节点路径
+     */
+    private volatile String leasedPath;
+
+    private CasSnowflakeShardingKeyGenerator snowflakeGenerator;
+
+    @Override
+    public void afterPropertiesSet() {
+        // 只有snowflake生成器需要机器id
+        if (!tendConsistencyConfiguration.getShardWorkerIdLeaseEnabled()
+                || !(consistencyShardingKeyGenerator instanceof CasSnowflakeShardingKeyGenerator)) {
+            return;
+        }
+        snowflakeGenerator = (CasSnowflakeShardingKeyGenerator) consistencyShardingKeyGenerator;
+        lease();
+        consistencyCuratorFramework.getConnectionStateListenable().addListener(this::onStateChanged);
+    }
+
+    @Override
+    public void destroy() {
+        String path = leasedPath;
+        if (path == null) {
+            return;
+        }
+        try {
+            consistencyCuratorFramework.delete().forPath(path);
+        } catch (Exception e) {
+            log.warn("[consistency framework] release worker id {} fail, it will be removed when session expires", path, e);
+        }
+    }
+
+    /**
+     * 租用机器id 从当前的机器id开始依次尝试，优先保留原来的机器id
+     */
+    private synchronized void lease() {
+        long start = snowflakeGenerator.getWorkerId();
+        byte[] owner = ManagementFactory.getRuntimeMXBean().getName().getBytes(StandardCharsets.UTF_8);
+        for (long i = 0; i < CasSnowflakeShardingKeyGenerator.WORKER_ID_MAX_VALUE; i++) {
+            long workerId = (start + i) % CasSnowflakeShardingKeyGenerator.WORKER_ID_MAX_VALUE;
+            String path = WORKER_ID_PATH + "/" + workerId;
+            try {
+                consistencyCuratorFramework.create().creatingParentContainersIfNeeded()
+                        .withMode(CreateMode.EPHEMERAL).forPath(path, owner);
+            } catch (KeeperException.NodeExistsException e) {
+                continue;
+            } catch (Exception e) {
+                throw new ConsistencyException(e);
+            }
+            snowflakeGenerator.setWorkerId(workerId);
+            leasedPath = path;
+            log.info("[consistency framework] worker id {} is leased", workerId);
+            return;
+        }
+        throw new ConsistencyException("no free worker id, at most "
+                + CasSnowflakeShardingKeyGenerator.WORKER_ID_MAX_VALUE + " nodes are supported");
+    }
+
+    private void onStateChanged(CuratorFramework client, ConnectionState newState) {
+        if (newState == ConnectionState.SUSPENDED || newState == ConnectionState.LOST) {
+            leaseUnverified = true;
+            // 会话可能已在服务端过期 临时节点被删除后其他节点可能租到同一机器id
+            // 先增加中断次数再暂停，保证与确认租约后的恢复交错时仍能被发现
+            suspendCount.incrementAndGet();
+            snowflakeGenerator.suspend();
+            log.warn("[consistency framework] zookeeper connection {}, worker id {} is suspended until the lease is verified",
+                    newState, snowflakeGenerator.getWorkerId());
+        } else if (newState == ConnectionState.RECONNECTED && leaseUnverified && renewing.compareAndSet(false, true)) {
+            leaseUnverified = false;
+            // 不在curator的事件线程中访问zk
+            consistencyScheduledPool.execute(() -> renewLease(MIN_RETRY_DELAY_MS));
+        }
+    }
+
+    /**
+     * 重新租用机器id 原节点仍属于当前会话时（连接断开但会话未过期）继续使用原机器id
+     * 失败时按指数退避重试，确认或租到机器id前分片键生成器保持暂停
+     *
+     * @param retryDelayMs 失败后的重试间隔
+     */
+    private void renewLease(long retryDelayMs) {
+        try {
+            long suspendCountBefore = suspendCount.get();
+            String path = leasedPath;
+            Stat stat = path == null ? null : consistencyCuratorFramework.checkExists().forPath(path);
+            long sessionId = consistencyCuratorFramework.getZookeeperClient().getZooKeeper().getSessionId();
+            if (stat != null && stat.getEphemeralOwner() == sessionId) {
+                snowflakeGenerator.resume();
+                log.info("[consistency framework] worker id {} is still leased", path);
+            } else {
+                leasedPath = null;
+                lease();
+            }
+            if (suspendCount.get() != suspendCountBefore) {
+                // 确认期间连接再次中断 确认结果无效，保持暂停并重试
+                snowflakeGenerator.suspend();
+                throw new ConsistencyException("zookeeper connection was suspended while verifying worker id lease");
+            }
+            renewing.set(false);
+        } catch (Exception e) {
+            log.error("[consistency framework] lease worker id again fail, retry after {}ms", retryDelayMs, e);
+            consistencyScheduledPool.schedule(() -> renewLease(Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS)),
+                    retryDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.consistency.mapper;
+
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
+import com.consistency.config.TendConsistencyConfiguration;
+import com.consistency.exceptions.ConsistencyException;
+import com.consistency.model.ConsistencyTaskInstance;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * 任务批量写入
+ * PostgreSQL数据源使用COPY写入，其他数据源使用JDBC批量写入
+ * 使用与MyBatis相同的数据源和spring管理的连接，调用方存在事务时随调用方的事务一起提交
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskBulkLoader {
+
+    /**
+     * 写入的列 主键由数据库生成
+     */
+    private static final String COLUMNS = "task_id,method_sign_name,method_name,parameter_types,task_parameter,"
+            + "task_status,execute_interval_sec,delay_time,execute_times,execute_time,error_msg,performance_way,"
+            + "thread_way,alert_expression,alert_action_bean_name,fallback_class_name,fallback_error_msg,shard_key,"
+            + "gmt_create,gmt_modified";
+
+    private static final int COLUMN_COUNT = COLUMNS.split(",").length;
+
+    private final TendConsistencyConfiguration tendConsistencyConfiguration;
+
+    /**
+     * 批量写入任务
+     *
+     * @param taskInstances 任务实例
+     * @return 写入的行数
+     */
+    public int load(Collection<ConsistencyTaskInstance> taskInstances) {
+        if (taskInstances.isEmpty()) {
+            return 0;
+        }
+        DataSource dataSource = getDataSource();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            if (tendConsistencyConfiguration.getStoreBulkCopyEnabled() && connection.isWrapperFor(PGConnection.class)) {
+                return copy(connection.unwrap(PGConnection.class), taskInstances);
+            }
+            return batchInsert(connection, taskInstances);
+        } catch (SQLException e) {
+            log.error("[consistency framework] bulk load {} tasks failed", taskInstances.size(), e);
+            throw new ConsistencyException(e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * 使用COPY写入
+     *
+     * @param connection    PostgreSQL连接
+     * @param taskInstances 任务实例
+     * @return 写入的行数
+     * @throws SQLException 写入失败
+     */
+    private int copy(PGConnection connection, Collection<ConsistencyTaskInstance> taskInstances) throws SQLException {
+        CopyIn copyIn = connection.getCopyAPI().copyIn("COPY " + getTableName() + " (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)");
+        try {
+            StringBuilder rows = new StringBuilder();
+            int rowCount = 0;
+            for (ConsistencyTaskInstance taskInstance : taskInstances) {
+                appendCsvRow(rows, toRow(taskInstance));
+                if (++rowCount % tendConsistencyConfiguration.getStoreBulkBatchSize() == 0) {
+                    writeToCopy(copyIn, rows);
+                }
+            }
+            writeToCopy(copyIn, rows);
+            return (int) copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private void writeToCopy(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        if (rows.length() == 0) {
+            return;
+        }
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    /**
+     * 使用JDBC批量写入
+     *
+     * @param connection    数据库连接
+     * @param taskInstances 任务实例
+     * @return 写入的行数
+     * @throws SQLException 写入失败
+     */
+    private int batchInsert(Connection connection, Collection<ConsistencyTaskInstance> taskInstances) throws SQLException {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        String sql = "INSERT INTO " + getTableName() + " (" + COLUMNS + ") VALUES (" + placeholders + ")";
+        int rowCount = 0;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int batchCount = 0;
+            for (ConsistencyTaskInstance taskInstance : taskInstances) {
+                Object[] row = toRow(taskInstance);
+                for (int i = 0; i < row.length; i++) {
+                    statement.setObject(i + 1, row[i] instanceof Date ? new Timestamp(((Date) row[i]).getTime()) : row[i]);
+                }
+                statement.addBatch();
+                if (++batchCount == tendConsistencyConfiguration.getStoreBulkBatchSize()) {
+                    rowCount += executeBatch(statement);
+                    batchCount = 0;
+                }
+            }
+            if (batchCount > 0) {
+                rowCount += executeBatch(statement);
+            }
+        }
+        return rowCount;
+    }
+
+    private int executeBatch(PreparedStatement statement) throws SQLException {
+        int rowCount = 0;
+        for (int result : statement.executeBatch()) {
+            // 驱动无法返回影响行数时按成功处理
+            rowCount += result == PreparedStatement.SUCCESS_NO_INFO ? 1 : result;
+        }
+        return rowCount;
+    }
+
+    /**
+     * 按列的顺序取出任务实例的字段值
+     *
+     * @param taskInstance 任务实例
+     * @return 字段值
+     */
+    private Object[] toRow(ConsistencyTaskInstance taskInstance) {
+        return new Object[]{
+                taskInstance.getTaskId(),
+                taskInstance.getMethodSignName(),
+                taskInstance.getMethodName(),
+                taskInstance.getParameterTypes(),
+                taskInstance.getTaskParameter(),
+                taskInstance.getTaskStatus(),
+                taskInstance.getExecuteIntervalSec(),
+                taskInstance.getDelayTime(),
+                taskInstance.getExecuteTimes(),
+                taskInstance.getExecuteTime(),
+                taskInstance.getErrorMsg(),
+                taskInstance.getPerformanceWay(),
+                taskInstance.getThreadWay(),
+                taskInstance.getAlertExpression(),
+                taskInstance.getAlertActionBeanName(),
+                taskInstance.getFallbackClassName(),
+                taskInstance.getFallbackErrorMsg(),
+                taskInstance.getShardKey(),
+                taskInstance.getGmtCreate(),
+                taskInstance.getGmtModified()
+        };
+    }
+
+    /**
+     * 追加一行CSV 空值不加引号，其余值都加引号以保留空字符串
+     *
+     * @param rows 已有的行
+     * @param row  字段值
+     */
+    private void appendCsvRow(StringBuilder rows, Object[] row) {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                rows.append(',');
+            }
+            Object value = row[i];
+            if (value == null) {
+                continue;
+            }
+            String text = value instanceof Date ? new Timestamp(((Date) value).getTime()).toString() : value.toString();
+            rows.append('"').append(text.replace("\"", "\"\"")).append('"');
+        }
+        rows.append('\n');
+    }
+
+    private DataSource getDataSource() {
+        return SqlHelper.sqlSessionFactory(ConsistencyTaskInstance.class).getConfiguration().getEnvironment().getDataSource();
+    }
+
+    private String getTableName() {
+        return TableInfoHelper.getTableInfo(ConsistencyTaskInstance.class).getTableName();
+    }
+}
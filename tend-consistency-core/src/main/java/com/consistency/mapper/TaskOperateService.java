@@ -1,14 +1,26 @@
 package com.consistency.mapper;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.conditions.query.LambdaQueryChainWrapper;
 import com.baomidou.mybatisplus.extension.conditions.update.LambdaUpdateChainWrapper;
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
+import com.consistency.custom.store.TaskRefConsumer;
 import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.model.DeadLetterQuery;
 import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.session.SqlSession;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * 数据库操作
@@ -25,6 +37,11 @@ public class TaskOperateService {
         return taskStoreMapperImpl.getBaseMapper().insert(taskInstance);
     }
     
+    public boolean batchInitTask(Collection<ConsistencyTaskInstance> taskInstances) {
+        // 在一个事务中批量写入 只提交一次
+        return taskStoreMapperImpl.saveBatch(taskInstances, taskInstances.size());
+    }
+    
     public boolean turnOnTask(ConsistencyTaskInstance taskInstance) {
         return new LambdaUpdateChainWrapper<>(taskStoreMapperImpl.getBaseMapper())
                 .eq(ConsistencyTaskInstance::getId, taskInstance.getId())
@@ -33,9 +50,80 @@ public class TaskOperateService {
                 .set(ConsistencyTaskInstance::getTaskStatus, taskInstance.getTaskStatus())
                 .set(ConsistencyTaskInstance::getExecuteTimes, taskInstance.getExecuteTimes() + 1)
                 .set(ConsistencyTaskInstance::getExecuteTime, taskInstance.getExecuteTime())
+                .set(ConsistencyTaskInstance::getLeaseExpireTime, taskInstance.getLeaseExpireTime())
+                .update();
+    }
+    
+    public boolean claimInitTask(ConsistencyTaskInstance taskInstance) {
+        // 只有未被调度器启动过的新任务才能被认领
+        return new LambdaUpdateChainWrapper<>(taskStoreMapperImpl.getBaseMapper())
+                .eq(ConsistencyTaskInstance::getId, taskInstance.getId())
+                .eq(ConsistencyTaskInstance::getShardKey, taskInstance.getShardKey())
+                .eq(ConsistencyTaskInstance::getTaskStatus, 0)
+                .eq(ConsistencyTaskInstance::getExecuteTimes, 0)
+                .set(ConsistencyTaskInstance::getTaskStatus, taskInstance.getTaskStatus())
+                .set(ConsistencyTaskInstance::getExecuteTimes, taskInstance.getExecuteTimes())
+                .set(ConsistencyTaskInstance::getExecuteTime, taskInstance.getExecuteTime())
+                .set(ConsistencyTaskInstance::getLeaseExpireTime, taskInstance.getLeaseExpireTime())
+                .update();
+    }
+    
+    public boolean unclaimTask(ConsistencyTaskInstance taskInstance, int previousStatus, long previousExecuteTime) {
+        // 只撤销本次认领 执行次数或执行时间已被改写时说明任务已被回收或重新认领
+        return new LambdaUpdateChainWrapper<>(taskStoreMapperImpl.getBaseMapper())
+                .eq(ConsistencyTaskInstance::getId, taskInstance.getId())
+                .eq(ConsistencyTaskInstance::getShardKey, taskInstance.getShardKey())
+                .eq(ConsistencyTaskInstance::getTaskStatus, 1)
+                .eq(ConsistencyTaskInstance::getExecuteTimes, taskInstance.getExecuteTimes())
+                .eq(ConsistencyTaskInstance::getExecuteTime, taskInstance.getExecuteTime())
+                .set(ConsistencyTaskInstance::getTaskStatus, previousStatus)
+                .set(ConsistencyTaskInstance::getExecuteTimes, taskInstance.getExecuteTimes() - 1)
+                .set(ConsistencyTaskInstance::getExecuteTime, previousExecuteTime)
+                .set(ConsistencyTaskInstance::getLeaseExpireTime, null)
+                .update();
+    }
+    
+    public boolean renewLease(Collection<ConsistencyTaskInstance> taskInstances, long leaseExpireTime) {
+        // 按(id, shard_key)成对匹配 分别按id和分片键过滤会续约到其他分片的任务
+        return new LambdaUpdateChainWrapper<>(taskStoreMapperImpl.getBaseMapper())
+                .apply("(id, shard_key) in (" + taskInstances.stream()
+                        .map(taskInstance -> "(" + taskInstance.getId() + "," + taskInstance.getShardKey() + ")")
+                        .collect(Collectors.joining(",")) + ")")
+                .eq(ConsistencyTaskInstance::getTaskStatus, 1)
+                .set(ConsistencyTaskInstance::getLeaseExpireTime, leaseExpireTime)
                 .update();
     }
     
+    public List<ConsistencyTaskInstance> listExpiredLease(long now, long orphanBefore, int batchSize) {
+        return taskStoreMapperImpl.getBaseMapper().listExpiredLease(now, new Date(orphanBefore), batchSize);
+    }
+    
+    @Transactional(rollbackFor = Exception.class)
+    public int reapExpiredLease(Collection<ConsistencyTaskInstance> taskInstances, long now, long orphanBefore) {
+        // 只重置仍在执行中且租约仍然过期的任务 每个任务的下次执行时间不同，使用批量执行器逐条更新
+        Date orphanTime = new Date(orphanBefore);
+        try (SqlSession sqlSession = SqlHelper.sqlSessionBatch(ConsistencyTaskInstance.class)) {
+            TaskStoreMapper taskStoreMapper = sqlSession.getMapper(TaskStoreMapper.class);
+            for (ConsistencyTaskInstance taskInstance : taskInstances) {
+                taskStoreMapper.update(null, new LambdaUpdateWrapper<ConsistencyTaskInstance>()
+                        .eq(ConsistencyTaskInstance::getId, taskInstance.getId())
+                        .eq(ConsistencyTaskInstance::getShardKey, taskInstance.getShardKey())
+                        .eq(ConsistencyTaskInstance::getTaskStatus, 1)
+                        .and(wrapper -> wrapper.lt(ConsistencyTaskInstance::getLeaseExpireTime, now)
+                                .or(orphan -> orphan.isNull(ConsistencyTaskInstance::getLeaseExpireTime)
+                                        .lt(ConsistencyTaskInstance::getGmtModified, orphanTime)))
+                        .set(ConsistencyTaskInstance::getTaskStatus, 2)
+                        .set(ConsistencyTaskInstance::getErrorMsg, taskInstance.getErrorMsg())
+                        .set(ConsistencyTaskInstance::getLeaseExpireTime, null)
+                        .set(ConsistencyTaskInstance::getExecuteTime, taskInstance.getExecuteTime()));
+            }
+            return sqlSession.flushStatements().stream()
+                    .flatMapToInt(batchResult -> Arrays.stream(batchResult.getUpdateCounts()))
+                    .map(count -> count == Statement.SUCCESS_NO_INFO ? 1 : count)
+                    .sum();
+        }
+    }
+    
     public ConsistencyTaskInstance getTaskByIdAndShardKey(Long id, Long shardKey) {
         return new LambdaQueryChainWrapper<>(taskStoreMapperImpl.getBaseMapper())
                 .eq(ConsistencyTaskInstance::getId, id)
@@ -44,6 +132,14 @@ public class TaskOperateService {
                 
     }
     
+    @Transactional(rollbackFor = Exception.class)
+    public int markSuccessBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return taskStoreMapperImpl.getBaseMapper().delete(new LambdaQueryWrapper<ConsistencyTaskInstance>()
+                .apply("(id, shard_key) in (" + taskInstances.stream()
+                        .map(taskInstance -> "(" + taskInstance.getId() + "," + taskInstance.getShardKey() + ")")
+                        .collect(Collectors.joining(",")) + ")"));
+    }
+    
     public Integer markSuccess(ConsistencyTaskInstance taskInstance) {
         Map<String, Object> conditionMap = new HashMap<>();
         conditionMap.put("id", taskInstance.getId());
@@ -61,6 +157,26 @@ public class TaskOperateService {
                 .update();
     }
     
+    @Transactional(rollbackFor = Exception.class)
+    public int markFailBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        // 每个任务的错误信息和下次执行时间不同 使用批量执行器逐条更新
+        try (SqlSession sqlSession = SqlHelper.sqlSessionBatch(ConsistencyTaskInstance.class)) {
+            TaskStoreMapper taskStoreMapper = sqlSession.getMapper(TaskStoreMapper.class);
+            for (ConsistencyTaskInstance taskInstance : taskInstances) {
+                taskStoreMapper.update(null, new LambdaUpdateWrapper<ConsistencyTaskInstance>()
+                        .eq(ConsistencyTaskInstance::getId, taskInstance.getId())
+                        .eq(ConsistencyTaskInstance::getShardKey, taskInstance.getShardKey())
+                        .set(ConsistencyTaskInstance::getTaskStatus, 2)
+                        .set(ConsistencyTaskInstance::getErrorMsg, taskInstance.getErrorMsg())
+                        .set(ConsistencyTaskInstance::getExecuteTime, taskInstance.getExecuteTime()));
+            }
+            return sqlSession.flushStatements().stream()
+                    .flatMapToInt(batchResult -> Arrays.stream(batchResult.getUpdateCounts()))
+                    .map(count -> count == Statement.SUCCESS_NO_INFO ? 1 : count)
+                    .sum();
+        }
+    }
+    
     public boolean markFallbackFail(ConsistencyTaskInstance taskInstance) {
         return new LambdaUpdateChainWrapper<>(taskStoreMapperImpl.getBaseMapper())
                 .eq(ConsistencyTaskInstance::getId, taskInstance.getId())
@@ -71,11 +187,27 @@ public class TaskOperateService {
     
     public List<ConsistencyTaskInstance> listByUnFinishTask(Long startTime, Long endTime, Long limitTaskCount) {
         return new LambdaQueryChainWrapper<>(taskStoreMapperImpl.getBaseMapper())
-                .le(ConsistencyTaskInstance::getTaskStatus, 2)
+                // 执行中的任务由执行节点续约，租约过期后由回收任务重置为失败，不占用扫描数量
+                .in(ConsistencyTaskInstance::getTaskStatus, 0, 2)
                 .ge(ConsistencyTaskInstance::getExecuteTime, startTime)
                 .le(ConsistencyTaskInstance::getExecuteTime, endTime)
                 .orderByDesc(ConsistencyTaskInstance::getExecuteTime)
                 .apply("limit {0}", limitTaskCount)
                 .list();
     }
+    
+    public void scanUnFinishTaskRefs(long startTime, long endTime, long limitTaskCount, TaskRefConsumer consumer) {
+        taskStoreMapperImpl.getBaseMapper().scanUnFinishTaskRefs(startTime, endTime, limitTaskCount, context -> {
+            ConsistencyTaskInstance ref = context.getResultObject();
+            consumer.accept(ref.getId(), ref.getShardKey(), ref.getExecuteTime());
+        });
+    }
+    
+    public int moveToDeadLetter(int maxAttempts, Date createdBefore, int batchSize) {
+        return taskStoreMapperImpl.getBaseMapper().moveToDeadLetter(maxAttempts, createdBefore, batchSize);
+    }
+    
+    public int replayDeadLetter(DeadLetterQuery query, long executeTime) {
+        return taskStoreMapperImpl.getBaseMapper().replayDeadLetter(query, executeTime);
+    }
 }
@@ -2,8 +2,17 @@ package com.consistency.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.model.DeadLetterQuery;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.session.ResultHandler;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
+import java.util.List;
+
 /**
  * 任务表mapper
  *
@@ -12,4 +21,83 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface TaskStoreMapper extends BaseMapper<ConsistencyTaskInstance> {
 
+    /**
+     * 逐行获取未完成任务的引用 只查询id、分片键和执行时间，不加载完整的任务实例
+     *
+     * @param startTime      开始时间
+     * @param endTime        结束时间
+     * @param limitTaskCount 最多返回的任务数
+     * @param handler        每行结果的处理器 结果中只有id、分片键和执行时间
+     */
+    @Select("SELECT id, shard_key, execute_time FROM consistency.tend_consistency_task WHERE task_status IN (0, 2)"
+            + " AND execute_time >= #{startTime} AND execute_time <= #{endTime}"
+            + " ORDER BY execute_time DESC LIMIT #{limitTaskCount}")
+    @ResultType(ConsistencyTaskInstance.class)
+    void scanUnFinishTaskRefs(@Param("startTime") long startTime, @Param("endTime") long endTime,
+            @Param("limitTaskCount") long limitTaskCount, ResultHandler<ConsistencyTaskInstance> handler);
+
+    /**
+     * 查询租约过期的执行中任务 没有租约的执行中任务在修改时间早于orphanBefore时同样返回
+     *
+     * @param now          当前时间
+     * @param orphanBefore 没有租约的执行中任务的回收时间点
+     * @param batchSize    最多返回的任务数
+     * @return 租约过期的执行中任务
+     */
+    @Select("SELECT * FROM consistency.tend_consistency_task WHERE task_status = 1"
+            + " AND (lease_expire_time < #{now} OR lease_expire_time IS NULL AND gmt_modified < #{orphanBefore})"
+            + " LIMIT #{batchSize}")
+    List<ConsistencyTaskInstance> listExpiredLease(@Param("now") long now, @Param("orphanBefore") Date orphanBefore,
+            @Param("batchSize") int batchSize);
+
+    /**
+     * 在一条语句中把失败任务从任务表删除并写入死信表
+     *
+     * @param maxAttempts   最大执行次数
+     * @param createdBefore 创建时间早于该时间的失败任务也会被移入
+     * @param batchSize     最多移入的任务数
+     * @return 移入的任务数
+     */
+    @Insert("WITH moved AS (DELETE FROM consistency.tend_consistency_task WHERE (id, shard_key) IN ("
+            + "SELECT id, shard_key FROM consistency.tend_consistency_task WHERE task_status = 2"
+            + " AND (execute_times >= #{maxAttempts} OR gmt_create < #{createdBefore})"
+            + " LIMIT #{batchSize} FOR UPDATE SKIP LOCKED) RETURNING *)"
+            + " INSERT INTO consistency.tend_consistency_task_dead_letter"
+            + " (id,task_id,method_sign_name,method_name,parameter_types,task_parameter,task_status,"
+            + "execute_interval_sec,delay_time,execute_times,execute_time,error_msg,performance_way,thread_way,"
+            + "alert_expression,alert_action_bean_name,fallback_class_name,fallback_error_msg,shard_key,"
+            + "lease_expire_time,definition_id,gmt_create,gmt_modified,dead_time)"
+            + " SELECT id,task_id,method_sign_name,method_name,parameter_types,task_parameter,task_status,"
+            + "execute_interval_sec,delay_time,execute_times,execute_time,error_msg,performance_way,thread_way,"
+            + "alert_expression,alert_action_bean_name,fallback_class_name,fallback_error_msg,shard_key,"
+            + "lease_expire_time,definition_id,gmt_create,gmt_modified,now() FROM moved")
+    int moveToDeadLetter(@Param("maxAttempts") int maxAttempts, @Param("createdBefore") Date createdBefore,
+            @Param("batchSize") int batchSize);
+
+    /**
+     * 在一条语句中把满足条件的死信任务从死信表删除并以初始化状态写回任务表
+     *
+     * @param query       重放条件
+     * @param executeTime 重新执行的时间
+     * @return 移回的任务数
+     */
+    @Insert({"<script>",
+            "WITH replayed AS (DELETE FROM consistency.tend_consistency_task_dead_letter WHERE 1 = 1",
+            "<if test='query.taskId != null'> AND task_id = #{query.taskId}</if>",
+            "<if test='query.deadTimeFrom != null'> AND dead_time &gt;= #{query.deadTimeFrom}</if>",
+            "<if test='query.deadTimeTo != null'> AND dead_time &lt;= #{query.deadTimeTo}</if>",
+            "<if test='query.errorMsgPattern != null'> AND error_msg LIKE #{query.errorMsgPattern}</if>",
+            "RETURNING *)",
+            "INSERT INTO consistency.tend_consistency_task",
+            "(id,task_id,method_sign_name,method_name,parameter_types,task_parameter,task_status,",
+            "execute_interval_sec,delay_time,execute_times,execute_time,error_msg,performance_way,thread_way,",
+            "alert_expression,alert_action_bean_name,fallback_class_name,fallback_error_msg,shard_key,",
+            "lease_expire_time,definition_id,gmt_create,gmt_modified)",
+            "SELECT id,task_id,method_sign_name,method_name,parameter_types,task_parameter,0,",
+            "execute_interval_sec,delay_time,0,#{executeTime},'',performance_way,thread_way,",
+            "alert_expression,alert_action_bean_name,fallback_class_name,'',shard_key,",
+            "NULL,definition_id,now(),now() FROM replayed",
+            "</script>"})
+    int replayDeadLetter(@Param("query") DeadLetterQuery query, @Param("executeTime") long executeTime);
+
 }
@@ -0,0 +1,46 @@
+package com.consistency.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 聚合窗口内同一任务的告警汇总信息
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConsistencyTaskAlertSummary {
+
+    /**
+     * 用户在主接中自定义的task名称/action名称
+     */
+    private String taskId;
+    /**
+     * 告警的动作执行实现类的beanName
+     */
+    private String alertActionBeanName;
+    /**
+     * 窗口内触发告警的总次数
+     */
+    private long alertCount;
+    /**
+     * 窗口内第一次触发告警的时间
+     */
+    private long firstAlertTime;
+    /**
+     * 窗口内最后一次触发告警的时间
+     */
+    private long lastAlertTime;
+    /**
+     * 告警任务实例的采样 数量受配置限制，按触发顺序排列
+     */
+    private List<ConsistencyTaskInstance> sampleInstances;
+
+}
@@ -0,0 +1,48 @@
+package com.consistency.model;
+
+import com.consistency.annotation.ConsistencyTask;
+import com.consistency.custom.backoff.BackoffPolicy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.lang.reflect.Method;
+
+/**
+ * 一致性任务的定义信息 每个被@ConsistencyTask注解的方法对应一个定义
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConsistencyTaskDefinition {
+
+    /**
+     * 方法签名：格式：类路径#方法名(参数1的类型,参数2的类型,...参数N的类型)
+     */
+    private String methodSignName;
+    /**
+     * 任务方法所在的类
+     */
+    private Class<?> targetClass;
+    /**
+     * 任务方法
+     */
+    private Method method;
+    /**
+     * 任务方法上的注解
+     */
+    private ConsistencyTask consistencyTask;
+    /**
+     * 失败重试的退避策略
+     */
+    private BackoffPolicy backoffPolicy;
+    /**
+     * 降级方法的调用器 未配置降级类时为null
+     */
+    private FallbackInvoker fallbackInvoker;
+
+}
@@ -1,6 +1,7 @@
 package com.consistency.model;
 
 import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
 import lombok.AllArgsConstructor;
@@ -9,6 +10,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.Date;
+import java.util.concurrent.Semaphore;
 
 /**
  * 一致性任务的实例信息
@@ -96,6 +98,29 @@ public class ConsistencyTaskInstance {
      * 分片键
      */
     private Long shardKey;
+    /**
+     * 执行中任务的租约过期时间 执行节点定时续约
+     */
+    private Long leaseExpireTime;
+    /**
+     * 任务定义id 开启任务定义规范化存储时，方法签名、告警和降级等不变的信息只保存在任务定义表中
+     */
+    private Integer definitionId;
+    /**
+     * 已解析的任务方法入参 仅在内存中复用，不入库
+     */
+    @TableField(exist = false)
+    private transient Object[] args;
+    /**
+     * 去重存储的入参哈希 仅在内存中用于释放入参引用，不入库
+     */
+    @TableField(exist = false)
+    private transient String payloadHash;
+    /**
+     * 执行前获取的并发许可 仅在内存中用于释放同一个许可，不入库
+     */
+    @TableField(exist = false)
+    private transient Semaphore concurrencyPermit;
 
     private Date gmtCreate;
 
@@ -0,0 +1,38 @@
+package com.consistency.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 死信任务的重放条件 各条件同时满足，为空的条件不生效
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeadLetterQuery {
+
+    /**
+     * 用户在主接中自定义的task名称/action名称
+     */
+    private String taskId;
+    /**
+     * 移入死信表的开始时间
+     */
+    private Date deadTimeFrom;
+    /**
+     * 移入死信表的结束时间
+     */
+    private Date deadTimeTo;
+    /**
+     * 错误信息的匹配模式 SQL LIKE语法，如 %timeout%
+     */
+    private String errorMsgPattern;
+
+}
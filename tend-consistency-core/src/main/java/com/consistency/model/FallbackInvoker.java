@@ -0,0 +1,38 @@
+package com.consistency.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * 降级方法的调用器 持有已解析的降级bean和降级方法
+ *
+ * @author wzw
+ */
+@Getter
+@RequiredArgsConstructor
+public class FallbackInvoker {
+    
+    /**
+     * 降级类的bean
+     */
+    private final Object fallbackBean;
+    
+    /**
+     * 降级方法
+     */
+    private final Method fallbackMethod;
+    
+    /**
+     * 调用降级方法
+     *
+     * @param args 任务方法的入参
+     * @throws InvocationTargetException 降级方法抛出的异常
+     * @throws IllegalAccessException    降级方法无法访问
+     */
+    public void invoke(Object[] args) throws InvocationTargetException, IllegalAccessException {
+        fallbackMethod.invoke(fallbackBean, args);
+    }
+}
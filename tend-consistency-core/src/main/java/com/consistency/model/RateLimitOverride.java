@@ -0,0 +1,27 @@
+package com.consistency.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 动态配置的任务限流参数 覆盖任务注解上的限流配置，为null的参数仍使用注解上的配置
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RateLimitOverride {
+
+    /**
+     * 每秒最多执行的任务数 小于等于0表示不限制
+     */
+    private Double maxRatePerSecond;
+    /**
+     * 最多同时执行的任务数 小于等于0表示不限制
+     */
+    private Integer maxConcurrency;
+}
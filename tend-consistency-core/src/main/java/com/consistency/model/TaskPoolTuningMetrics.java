@@ -0,0 +1,63 @@
+package com.consistency.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 执行任务线程池最近一次自动调整的指标和决策
+ *
+ * @author wzw
+ **/
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaskPoolTuningMetrics {
+
+    /**
+     * 采样时间
+     */
+    private long sampleTime;
+    /**
+     * 调整后的线程数
+     */
+    private int poolSize;
+    /**
+     * 调整决策 INCREASE、DECREASE或HOLD
+     */
+    private String decision;
+    /**
+     * 窗口内任务的平均耗时 单位毫秒
+     */
+    private double latencyMs;
+    /**
+     * 基线耗时 单位毫秒
+     */
+    private double baselineLatencyMs;
+    /**
+     * 窗口内完成的任务数
+     */
+    private long completedCount;
+    /**
+     * 队列中积压的任务数
+     */
+    private int queueDepth;
+    /**
+     * 窗口内被拒绝的任务数
+     */
+    private long rejectedCount;
+    /**
+     * 等待数据库连接的线程数 无法获取时为-1
+     */
+    private int dbPoolWaiters;
+    /**
+     * 累计增加线程的次数
+     */
+    private long increaseCount;
+    /**
+     * 累计减少线程的次数
+     */
+    private long decreaseCount;
+}
@@ -0,0 +1,115 @@
+package com.consistency.service;
+
+import com.consistency.annotation.ConsistencyTask;
+import com.consistency.custom.store.JdbcTaskStore;
+import com.consistency.custom.store.MybatisTaskStore;
+import com.consistency.custom.store.TaskStore;
+import com.consistency.exceptions.ConsistencyException;
+import com.consistency.manager.ConsistencyTaskInstanceFactory;
+import com.consistency.mapper.TaskBulkLoader;
+import com.consistency.model.ConsistencyTaskInstance;
+import com.consistency.model.DeadLetterQuery;
+import com.consistency.utils.SpringUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 一致性任务的编程式入队API 用于数据回补、迁移等需要大量创建任务的场景
+ * 任务方法需要被@ConsistencyTask注解，任务配置与通过切面创建的任务一致
+ *
+ * @author wzw
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConsistencyTaskTemplate {
+
+    private final ConsistencyTaskInstanceFactory consistencyTaskInstanceFactory;
+
+    private final TaskStoreService taskStoreService;
+
+    private final TaskBulkLoader taskBulkLoader;
+
+    private final TaskStore taskStore;
+
+    /**
+     * 创建一个任务 与调用被@ConsistencyTask注解的方法效果相同
+     *
+     * @param method 任务方法
+     * @param args   任务方法的入参
+     * @return 任务实例
+     */
+    public ConsistencyTaskInstance enqueue(Method method, Object... args) {
+        ConsistencyTaskInstance taskInstance = consistencyTaskInstanceFactory.create(getConsistencyTask(method),
+                getTargetClass(method), method, args);
+        taskStoreService.initTask(taskInstance);
+        return taskInstance;
+    }
+
+    /**
+     * 批量创建任务 加入调用方的事务，调用方没有事务时在一个新事务中写入
+     * 批量创建的任务不会在入库后立即执行，统一由调度器执行
+     *
+     * @param method   任务方法
+     * @param argsList 每个任务的入参
+     * @return 创建的任务数
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int enqueueAll(Method method, Collection<Object[]> argsList) {
+        ConsistencyTask consistencyTask = getConsistencyTask(method);
+        Class<?> targetClass = getTargetClass(method);
+        List<ConsistencyTaskInstance> taskInstances = new ArrayList<>(argsList.size());
+        for (Object[] args : argsList) {
+            taskInstances.add(consistencyTaskInstanceFactory.create(consistencyTask, targetClass, method, args));
+        }
+        // 框架自带的数据库存储使用COPY或JDBC批量写入 其他存储交给存储自身的批量写入
+        int result = taskStore instanceof MybatisTaskStore || taskStore instanceof JdbcTaskStore
+                ? taskBulkLoader.load(taskInstances) : taskStore.insertBatch(taskInstances);
+        log.info("[consistency framework] bulk enqueue {} tasks of {}", result, method.getName());
+        return result;
+    }
+
+    /**
+     * 重放死信任务 满足条件的死信任务在一条语句中移回任务表，重置为初始化状态后由调度器执行
+     * 分片存储中部分分片失败时抛出异常，其他分片已重放的任务不会回滚，可按相同条件再次重放
+     *
+     * @param query 重放条件 至少指定一个条件
+     * @return 重放的任务数
+     */
+    public int replayDeadLetter(DeadLetterQuery query) {
+        if (query.getTaskId() == null && query.getDeadTimeFrom() == null && query.getDeadTimeTo() == null
+                && query.getErrorMsgPattern() == null) {
+            throw new ConsistencyException("重放死信任务时至少要指定一个条件");
+        }
+        int result = taskStore.replayDeadLetter(query, System.currentTimeMillis());
+        log.info("[consistency framework] replay {} dead letter tasks by {}", result, query);
+        return result;
+    }
+
+    private ConsistencyTask getConsistencyTask(Method method) {
+        ConsistencyTask consistencyTask = AnnotationUtils.findAnnotation(method, ConsistencyTask.class);
+        if (consistencyTask == null) {
+            throw new ConsistencyException(String.format("%s 方法未被@ConsistencyTask注解", method));
+        }
+        return consistencyTask;
+    }
+
+    /**
+     * 获取任务方法所在bean的实际类型 与切面中记录的类型保持一致
+     *
+     * @param method 任务方法
+     * @return bean的实际类型
+     */
+    private Class<?> getTargetClass(Method method) {
+        return AopProxyUtils.ultimateTargetClass(SpringUtil.getBean(method.getDeclaringClass()));
+    }
+}
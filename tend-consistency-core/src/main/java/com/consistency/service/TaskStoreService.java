@@ -1,7 +1,9 @@
 package com.consistency.service;
 
+import com.consistency.custom.store.TaskRefConsumer;
 import com.consistency.model.ConsistencyTaskInstance;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -34,6 +36,13 @@ public interface TaskStoreService {
      */
     List<ConsistencyTaskInstance> listByUnFinishTask();
     
+    /**
+     * 获取未完成任务的引用 只包含任务的id、分片键和执行时间
+     *
+     * @param consumer 任务引用的消费者
+     */
+    void scanUnFinishTaskRefs(TaskRefConsumer consumer);
+    
     /**
      * 启动任务
      *
@@ -42,6 +51,24 @@ public interface TaskStoreService {
      */
     boolean turnOnTask(ConsistencyTaskInstance consistencyTaskInstance);
     
+    /**
+     * 认领刚创建的任务 以一次条件更新启动任务，成功后同步更新内存中的任务实例
+     *
+     * @param consistencyTaskInstance 任务实例信息
+     * @return 是否认领成功 任务已被调度器启动时返回false
+     */
+    boolean claimInitTask(ConsistencyTaskInstance consistencyTaskInstance);
+    
+    /**
+     * 撤销本节点对任务的认领 成功后同步恢复内存中的任务实例
+     *
+     * @param consistencyTaskInstance 认领后的任务实例
+     * @param previousStatus          认领前的任务状态
+     * @param previousExecuteTime     认领前的执行时间
+     * @return 是否撤销成功 任务已被回收或重新认领时返回false
+     */
+    boolean releaseClaim(ConsistencyTaskInstance consistencyTaskInstance, int previousStatus, long previousExecuteTime);
+    
     /**
      * 标记任务成功
      *
@@ -50,6 +77,22 @@ public interface TaskStoreService {
      */
     int markSuccess(ConsistencyTaskInstance consistencyTaskInstance);
     
+    /**
+     * 批量标记任务成功
+     *
+     * @param taskInstances 任务实例信息
+     * @return 标记结果
+     */
+    int markSuccessBatch(Collection<ConsistencyTaskInstance> taskInstances);
+    
+    /**
+     * 批量标记任务为失败
+     *
+     * @param taskInstances 任务实例信息
+     * @return 标记结果
+     */
+    int markFailBatch(Collection<ConsistencyTaskInstance> taskInstances);
+    
     /**
      * 标记任务为失败
      *
@@ -66,6 +109,31 @@ public interface TaskStoreService {
      */
     boolean markFallbackFail(ConsistencyTaskInstance consistencyTaskInstance);
     
+    /**
+     * 批量续约执行中的任务
+     *
+     * @param taskInstances 执行中的任务实例
+     * @return 续约结果
+     */
+    boolean renewLease(Collection<ConsistencyTaskInstance> taskInstances);
+    
+    /**
+     * 查询租约过期的执行中任务
+     *
+     * @param now 当前时间
+     * @return 租约过期的执行中任务
+     */
+    List<ConsistencyTaskInstance> listExpiredTasks(long now);
+    
+    /**
+     * 回收租约过期的执行中任务 将其重置为失败，按任务实例中的下次执行时间安排重试
+     *
+     * @param taskInstances 租约过期的执行中任务 已设置错误信息和下次执行时间
+     * @param now           当前时间 与查询时相同
+     * @return 回收的任务数量
+     */
+    int reapExpiredTasks(Collection<ConsistencyTaskInstance> taskInstances, long now);
+    
     /**
      * 提交任务实例信息
      *
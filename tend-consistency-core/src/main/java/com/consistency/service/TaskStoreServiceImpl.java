@@ -2,17 +2,21 @@ package com.consistency.service;
 
 import com.consistency.config.TendConsistencyConfiguration;
 import com.consistency.custom.query.TaskTimeRangeQuery;
+import com.consistency.custom.store.TaskRefConsumer;
+import com.consistency.custom.store.TaskStore;
 import com.consistency.enums.ConsistencyTaskStatusEnum;
 import com.consistency.enums.PerformanceEnum;
 import com.consistency.enums.ThreadWayEnum;
 import com.consistency.exceptions.ConsistencyException;
-import com.consistency.manager.TaskExecutor;
-import com.consistency.mapper.TaskOperateService;
+import com.consistency.manager.TaskAdmissionController;
+import com.consistency.manager.TaskEngineExecutor;
+import com.consistency.manager.TaskGroupCommitWriter;
 import com.consistency.model.ConsistencyTaskInstance;
 import com.consistency.utils.ReflectTools;
 import com.consistency.utils.SpringUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,10 +24,10 @@ import org.springframework.transaction.support.TransactionSynchronizationAdapter
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletionService;
 
 /**
  * 任务存储的service实现类
@@ -35,23 +39,32 @@ import java.util.concurrent.CompletionService;
 @RequiredArgsConstructor
 public class TaskStoreServiceImpl implements TaskStoreService {
     
-    private final TaskOperateService taskOperateService;
+    private final TaskStore taskStore;
     
-    private final CompletionService<ConsistencyTaskInstance> consistencyTaskPool;
+    private final TaskGroupCommitWriter taskGroupCommitWriter;
+    
+    private final TaskAdmissionController taskAdmissionController;
     
     private final TendConsistencyConfiguration consistencyConfiguration;
     
-    private final TaskExecutor taskExecutor;
+    /**
+     * 任务执行器依赖本service 通过ObjectProvider延迟获取以避免循环依赖
+     */
+    private final ObjectProvider<TaskEngineExecutor> taskEngineExecutorProvider;
     
     @Override
     public void initTask(ConsistencyTaskInstance taskInstance) {
-        Integer result = taskOperateService.initTask(taskInstance);
+        // 不在事务中的入库请求交给组提交写入器合并写入
+        Integer result = TransactionSynchronizationManager.isActualTransactionActive()
+                ? taskStore.insert(taskInstance) : taskGroupCommitWriter.insert(taskInstance);
         log.info("[consistency framework] init task result [{}]", result > 0);
         
-        if (PerformanceEnum.PERFORMANCE_RIGHT_NOW.getCode().equals(taskInstance.getPerformanceWay())) {
+        // 调度执行的任务交给调度器
+        if (!PerformanceEnum.PERFORMANCE_RIGHT_NOW.getCode().equals(taskInstance.getPerformanceWay())) {
             return;
         }
         
+        // 立即执行的任务在事务提交后直接使用内存中的任务实例执行
         boolean synchronizationActive = TransactionSynchronizationManager.isSynchronizationActive();
         if (synchronizationActive) {
             TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
@@ -67,11 +80,27 @@ public class TaskStoreServiceImpl implements TaskStoreService {
     
     @Override
     public ConsistencyTaskInstance getTaskByIdAndShardKey(Long id, Long shardKey) {
-        return taskOperateService.getTaskByIdAndShardKey(id, shardKey);
+        return taskStore.get(id, shardKey);
     }
     
     @Override
     public List<ConsistencyTaskInstance> listByUnFinishTask() {
+        long[] timeRange = getScheduleTimeRange();
+        return taskStore.scan(timeRange[0], timeRange[1], timeRange[2]);
+    }
+    
+    @Override
+    public void scanUnFinishTaskRefs(TaskRefConsumer consumer) {
+        long[] timeRange = getScheduleTimeRange();
+        taskStore.scanRefs(timeRange[0], timeRange[1], timeRange[2], consumer);
+    }
+    
+    /**
+     * 获取调度扫描的时间范围和任务数上限
+     *
+     * @return 开始时间、结束时间和最多扫描的任务数
+     */
+    private long[] getScheduleTimeRange() {
         Date startTime, endTime;
         Long limitTaskCount;
         try {
@@ -85,13 +114,13 @@ public class TaskStoreServiceImpl implements TaskStoreService {
             } else {
                 startTime = TaskTimeRangeQuery.getStartTimeByStatic();
                 endTime = TaskTimeRangeQuery.getEndTimeByStatic();
-                limitTaskCount = TaskTimeRangeQuery.limitTaskCountByStatic();
+                limitTaskCount = consistencyConfiguration.getTaskScheduleScanLimit();
             }
         } catch (Exception e) {
             log.error("[consistency framework] list not finished tasks fail, detail is ", e);
             throw new ConsistencyException(e);
         }
-        return taskOperateService.listByUnFinishTask(startTime.getTime(), endTime.getTime(), limitTaskCount);
+        return new long[]{startTime.getTime(), endTime.getTime(), limitTaskCount};
     }
     
     /**
@@ -115,35 +144,117 @@ public class TaskStoreServiceImpl implements TaskStoreService {
         //任务实际运行时间
         taskInstance.setExecuteTime(System.currentTimeMillis());
         taskInstance.setTaskStatus(ConsistencyTaskStatusEnum.START.getCode());
-        return taskOperateService.turnOnTask(taskInstance);
+        taskInstance.setLeaseExpireTime(taskInstance.getExecuteTime() + consistencyConfiguration.getLeaseDurationMs());
+        if (!taskStore.claim(taskInstance)) {
+            return false;
+        }
+        // 与任务存储中的执行次数保持一致 认领后无需重新加载任务
+        taskInstance.setExecuteTimes(taskInstance.getExecuteTimes() + 1);
+        return true;
+    }
+    
+    @Override
+    public boolean renewLease(Collection<ConsistencyTaskInstance> taskInstances) {
+        if (taskInstances.isEmpty()) {
+            return true;
+        }
+        return taskStore.renewLease(taskInstances,
+                System.currentTimeMillis() + consistencyConfiguration.getLeaseDurationMs());
+    }
+    
+    @Override
+    public List<ConsistencyTaskInstance> listExpiredTasks(long now) {
+        return taskStore.listExpiredLease(now, now - consistencyConfiguration.getLeaseDurationMs(),
+                consistencyConfiguration.getLeaseReaperBatchSize());
+    }
+    
+    @Override
+    public int reapExpiredTasks(Collection<ConsistencyTaskInstance> taskInstances, long now) {
+        if (taskInstances.isEmpty()) {
+            return 0;
+        }
+        return taskStore.reapExpiredLease(taskInstances, now, now - consistencyConfiguration.getLeaseDurationMs());
+    }
+    
+    @Override
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRES_NEW)
+    public boolean claimInitTask(ConsistencyTaskInstance taskInstance) {
+        long now = System.currentTimeMillis();
+        ConsistencyTaskInstance claimInstance = ConsistencyTaskInstance.builder()
+                .id(taskInstance.getId())
+                .shardKey(taskInstance.getShardKey())
+                .taskStatus(ConsistencyTaskStatusEnum.START.getCode())
+                .executeTimes(taskInstance.getExecuteTimes() + 1)
+                .executeTime(now)
+                .leaseExpireTime(now + consistencyConfiguration.getLeaseDurationMs())
+                .build();
+        if (!taskStore.claimInit(claimInstance)) {
+            return false;
+        }
+        taskInstance.setTaskStatus(claimInstance.getTaskStatus());
+        taskInstance.setExecuteTimes(claimInstance.getExecuteTimes());
+        taskInstance.setExecuteTime(claimInstance.getExecuteTime());
+        taskInstance.setLeaseExpireTime(claimInstance.getLeaseExpireTime());
+        return true;
+    }
+    
+    @Override
+    @Transactional(rollbackFor = Exception.class, propagation = Propagation.REQUIRES_NEW)
+    public boolean releaseClaim(ConsistencyTaskInstance taskInstance, int previousStatus, long previousExecuteTime) {
+        if (!taskStore.unclaim(taskInstance, previousStatus, previousExecuteTime)) {
+            return false;
+        }
+        taskInstance.setTaskStatus(previousStatus);
+        taskInstance.setExecuteTimes(taskInstance.getExecuteTimes() - 1);
+        taskInstance.setExecuteTime(previousExecuteTime);
+        taskInstance.setLeaseExpireTime(null);
+        return true;
     }
     
     @Override
     @Transactional(rollbackFor = Exception.class)
     public int markSuccess(ConsistencyTaskInstance taskInstance) {
-        return taskOperateService.markSuccess(taskInstance);
+        return taskStore.complete(taskInstance);
     }
     
     @Override
     @Transactional(rollbackFor = Exception.class)
     public boolean markFail(ConsistencyTaskInstance taskInstance) {
-        return taskOperateService.markFail(taskInstance);
+        return taskStore.fail(taskInstance);
+    }
+    
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int markSuccessBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return taskInstances.isEmpty() ? 0 : taskStore.completeBatch(taskInstances);
+    }
+    
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int markFailBatch(Collection<ConsistencyTaskInstance> taskInstances) {
+        return taskInstances.isEmpty() ? 0 : taskStore.failBatch(taskInstances);
     }
     
     @Override
     public boolean markFallbackFail(ConsistencyTaskInstance taskInstance) {
-        return taskOperateService.markFallbackFail(taskInstance);
+        return taskStore.failFallback(taskInstance);
     }
     
     @Override
     public void submitTaskInstance(ConsistencyTaskInstance taskInstance) {
+        TaskEngineExecutor taskEngineExecutor = taskEngineExecutorProvider.getObject();
         if (ThreadWayEnum.SYNC.getCode().equals(taskInstance.getThreadWay())) {
-            taskExecutor.executeTask(taskInstance);
+            taskEngineExecutor.executeImmediateTask(taskInstance);
         } else if (ThreadWayEnum.ASYNC.getCode().equals(taskInstance.getThreadWay())) {
-            consistencyTaskPool.submit(() -> {
-                taskExecutor.executeTask(taskInstance);
+            boolean admitted = taskAdmissionController.trySubmit(() -> {
+                taskEngineExecutor.executeImmediateTask(taskInstance);
                 return taskInstance;
             });
+            // 线程池已满 任务保持初始化状态留在库中，由后续的调度扫描执行
+            if (!admitted) {
+                log.info("[consistency framework] consistency task pool is full, task {} is deferred to the next scan",
+                        taskInstance.getId());
+            }
         }
     }
 }
@@ -68,5 +68,19 @@ public class DefaultValueUtils {
         return value;
     }
 
+    /**
+     * 获取参数的值
+     *
+     * @param value        给定的值
+     * @param defaultValue 默认值
+     * @return 参数值
+     */
+    public static Double getOrDefault(Double value, Double defaultValue) {
+        if (ObjectUtils.isEmpty(value)) {
+            return defaultValue;
+        }
+        return value;
+    }
+
 
 }
@@ -117,7 +117,16 @@ public class ReflectTools {
      */
     public static String getArgsClassNames(Signature signature) {
         MethodSignature methodSignature = (MethodSignature) signature;
-        Class<?>[] parameterTypes = methodSignature.getParameterTypes();
+        return getArgsClassNames(methodSignature.getParameterTypes());
+    }
+
+    /**
+     * 获取入参类名称数组
+     *
+     * @param parameterTypes 方法声明的参数类型
+     * @return 签名类字符串 (多个用逗号分隔)
+     */
+    public static String getArgsClassNames(Class<?>[] parameterTypes) {
         StringBuilder parameterStrTypes = new StringBuilder();
         for (int i = 0; i < parameterTypes.length; i++) {
             parameterStrTypes.append(parameterTypes[i].getName());
@@ -136,11 +145,23 @@ public class ReflectTools {
      * @return 被拦截方法的全限定名称
      */
     public static String getTargetMethodFullyQualifiedName(JoinPoint point, Class<?>[] argsClazz) {
+        return getTargetMethodFullyQualifiedName(point.getTarget().getClass(), point.getSignature().getName(), argsClazz);
+    }
+
+    /**
+     * 获取方法的全限定名称 格式：类路径#方法名(参数1的类型,参数2的类型,...参数N的类型)
+     *
+     * @param targetClass 方法所在类
+     * @param methodName  方法名
+     * @param argsClazz   入参的Class对象
+     * @return 方法的全限定名称
+     */
+    public static String getTargetMethodFullyQualifiedName(Class<?> targetClass, String methodName, Class<?>[] argsClazz) {
         StringJoiner methodSignNameJoiner = new StringJoiner("", "", "");
         methodSignNameJoiner
-                .add(point.getTarget().getClass().getName())
+                .add(targetClass.getName())
                 .add("#")
-                .add(point.getSignature().getName());
+                .add(methodName);
         methodSignNameJoiner.add("(");
         for (int i = 0; i < argsClazz.length; i++) {
             String className = argsClazz[i].getName();
@@ -0,0 +1,50 @@
+-- 一致性任务表 (PostgreSQL)
+CREATE SCHEMA IF NOT EXISTS consistency;
+
+CREATE TABLE IF NOT EXISTS consistency.tend_consistency_task
+(
+    id                    BIGSERIAL     NOT NULL,
+    task_id               VARCHAR(500)  NOT NULL,
+    method_sign_name      VARCHAR(500)  NOT NULL,
+    method_name           VARCHAR(100)  NOT NULL,
+    parameter_types       VARCHAR(500)  NOT NULL,
+    task_parameter        TEXT          NOT NULL,
+    task_status           INT           NOT NULL DEFAULT 0,
+    execute_interval_sec  INT           NOT NULL DEFAULT 60,
+    delay_time            INT           NOT NULL DEFAULT 60,
+    execute_times         INT           NOT NULL DEFAULT 0,
+    execute_time          BIGINT        NOT NULL,
+    error_msg             VARCHAR(200)  NOT NULL DEFAULT '',
+    performance_way       INT           NOT NULL,
+    thread_way            INT           NOT NULL,
+    alert_expression      VARCHAR(100)  NOT NULL DEFAULT '',
+    alert_action_bean_name VARCHAR(100) NOT NULL DEFAULT '',
+    fallback_class_name   VARCHAR(255)  NOT NULL DEFAULT '',
+    fallback_error_msg    VARCHAR(200)  NOT NULL DEFAULT '',
+    shard_key             BIGINT        NOT NULL DEFAULT 0,
+    lease_expire_time     BIGINT,
+    definition_id         INT           NOT NULL DEFAULT 0,
+    gmt_create            TIMESTAMP     NOT NULL DEFAULT now(),
+    gmt_modified          TIMESTAMP     NOT NULL DEFAULT now(),
+    PRIMARY KEY (id, shard_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_tend_consistency_task_execute_time
+    ON consistency.tend_consistency_task (task_status, execute_time);
+
+-- 已有任务表升级时补充租约过期时间列 升级前遗留的执行中任务没有租约，修改时间超过租约时长后被回收
+ALTER TABLE consistency.tend_consistency_task ADD COLUMN IF NOT EXISTS lease_expire_time BIGINT;
+
+-- 执行中任务的租约过期时间 用于回收节点宕机后遗留在执行状态的任务
+CREATE INDEX IF NOT EXISTS idx_tend_consistency_task_lease
+    ON consistency.tend_consistency_task (lease_expire_time)
+    WHERE task_status = 1;
+
+-- 已有任务表升级时补充任务定义id列 未使用任务定义表的任务为0
+ALTER TABLE consistency.tend_consistency_task ADD COLUMN IF NOT EXISTS definition_id INT NOT NULL DEFAULT 0;
+
+-- 分库分表（tend.consistency.shard.taskSharded=true 且配置了 tableCount 或 dataSources）
+-- 每个分片都要建一张与上面结构相同的表，tableCount大于1时表名为 consistency.tend_consistency_task_{下标}
+-- 分片按 业务库的各分表、第1个分库的各分表 ... 的顺序编号，共 (分库数 + 1) * tableCount 个分片
+-- 任务id在所有分片间必须唯一，每个分片的主键序列按分片总数N递增、从分片下标+1开始，例如N=4时第2个分片：
+-- ALTER SEQUENCE consistency.tend_consistency_task_1_id_seq INCREMENT BY 4 RESTART WITH 2;
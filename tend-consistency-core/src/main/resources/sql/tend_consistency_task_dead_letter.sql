@@ -0,0 +1,41 @@
+-- 一致性任务死信表 (PostgreSQL) 用于 tend.consistency.dead-letter.enabled=true
+-- 结构与任务表相同，多出移入死信表的时间 dead_time；分表时每张任务表对应一张 {任务表名}_dead_letter
+CREATE TABLE IF NOT EXISTS consistency.tend_consistency_task_dead_letter
+(
+    id                    BIGINT        NOT NULL,
+    task_id               VARCHAR(500)  NOT NULL,
+    method_sign_name      VARCHAR(500)  NOT NULL,
+    method_name           VARCHAR(100)  NOT NULL,
+    parameter_types       VARCHAR(500)  NOT NULL,
+    task_parameter        TEXT          NOT NULL,
+    task_status           INT           NOT NULL,
+    execute_interval_sec  INT           NOT NULL,
+    delay_time            INT           NOT NULL,
+    execute_times         INT           NOT NULL,
+    execute_time          BIGINT        NOT NULL,
+    error_msg             VARCHAR(200)  NOT NULL DEFAULT '',
+    performance_way       INT           NOT NULL,
+    thread_way            INT           NOT NULL,
+    alert_expression      VARCHAR(100)  NOT NULL DEFAULT '',
+    alert_action_bean_name VARCHAR(100) NOT NULL DEFAULT '',
+    fallback_class_name   VARCHAR(255)  NOT NULL DEFAULT '',
+    fallback_error_msg    VARCHAR(200)  NOT NULL DEFAULT '',
+    shard_key             BIGINT        NOT NULL DEFAULT 0,
+    lease_expire_time     BIGINT,
+    definition_id         INT           NOT NULL DEFAULT 0,
+    gmt_create            TIMESTAMP     NOT NULL,
+    gmt_modified          TIMESTAMP     NOT NULL,
+    dead_time             TIMESTAMP     NOT NULL DEFAULT now(),
+    PRIMARY KEY (id, shard_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_tend_consistency_task_dead_letter_task_id
+    ON consistency.tend_consistency_task_dead_letter (task_id);
+
+CREATE INDEX IF NOT EXISTS idx_tend_consistency_task_dead_letter_dead_time
+    ON consistency.tend_consistency_task_dead_letter (dead_time);
+
+-- 自动移入时按执行次数和创建时间筛选失败任务
+CREATE INDEX IF NOT EXISTS idx_tend_consistency_task_fail
+    ON consistency.tend_consistency_task (execute_times, gmt_create)
+    WHERE task_status = 2;
@@ -0,0 +1,14 @@
+-- 一致性任务定义表 (PostgreSQL) 用于 tend.consistency.store.definitionNormalized=true
+-- 每个任务方法签名一行，任务表中只保存 definition_id，方法签名、告警和降级等字符串由各节点缓存后回填
+CREATE TABLE IF NOT EXISTS consistency.tend_consistency_task_definition
+(
+    id                     SERIAL        NOT NULL PRIMARY KEY,
+    method_sign_name       VARCHAR(500)  NOT NULL UNIQUE,
+    method_name            VARCHAR(100)  NOT NULL,
+    parameter_types        VARCHAR(500)  NOT NULL,
+    alert_expression       VARCHAR(100)  NOT NULL DEFAULT '',
+    alert_action_bean_name VARCHAR(100)  NOT NULL DEFAULT '',
+    fallback_class_name    VARCHAR(255)  NOT NULL DEFAULT '',
+    gmt_create             TIMESTAMP     NOT NULL DEFAULT now(),
+    gmt_modified           TIMESTAMP     NOT NULL DEFAULT now()
+);
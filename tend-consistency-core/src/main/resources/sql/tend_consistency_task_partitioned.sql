@@ -0,0 +1,45 @@
+-- 按创建时间分区的一致性任务表 (PostgreSQL 11+) 用于 tend.consistency.store.type=partitioned
+-- 分区由框架按 tend.consistency.store.partitionUnit 自动创建，表名为 tend_consistency_task_p{yyyyMMdd 或 yyyyMMddHH}
+-- 完成的任务状态改为3（执行成功）不再删除，保留期之前任务全部完成的分区由框架整体摘除或删除
+CREATE SCHEMA IF NOT EXISTS consistency;
+
+CREATE TABLE IF NOT EXISTS consistency.tend_consistency_task
+(
+    id                    BIGSERIAL     NOT NULL,
+    task_id               VARCHAR(500)  NOT NULL,
+    method_sign_name      VARCHAR(500)  NOT NULL,
+    method_name           VARCHAR(100)  NOT NULL,
+    parameter_types       VARCHAR(500)  NOT NULL,
+    task_parameter        TEXT          NOT NULL,
+    task_status           INT           NOT NULL DEFAULT 0,
+    execute_interval_sec  INT           NOT NULL DEFAULT 60,
+    delay_time            INT           NOT NULL DEFAULT 60,
+    execute_times         INT           NOT NULL DEFAULT 0,
+    execute_time          BIGINT        NOT NULL,
+    error_msg             VARCHAR(200)  NOT NULL DEFAULT '',
+    performance_way       INT           NOT NULL,
+    thread_way            INT           NOT NULL,
+    alert_expression      VARCHAR(100)  NOT NULL DEFAULT '',
+    alert_action_bean_name VARCHAR(100) NOT NULL DEFAULT '',
+    fallback_class_name   VARCHAR(255)  NOT NULL DEFAULT '',
+    fallback_error_msg    VARCHAR(200)  NOT NULL DEFAULT '',
+    shard_key             BIGINT        NOT NULL DEFAULT 0,
+    lease_expire_time     BIGINT,
+    definition_id         INT           NOT NULL DEFAULT 0,
+    gmt_create            TIMESTAMP     NOT NULL DEFAULT now(),
+    gmt_modified          TIMESTAMP     NOT NULL DEFAULT now(),
+    PRIMARY KEY (id, shard_key, gmt_create)
+) PARTITION BY RANGE (gmt_create);
+
+-- 兜底分区 框架创建分区之前写入的任务落在这里
+CREATE TABLE IF NOT EXISTS consistency.tend_consistency_task_default
+    PARTITION OF consistency.tend_consistency_task DEFAULT;
+
+-- 只索引未完成的任务 已完成的任务不参与扫描
+CREATE INDEX IF NOT EXISTS idx_tend_consistency_task_execute_time
+    ON consistency.tend_consistency_task (task_status, execute_time)
+    WHERE task_status <> 3;
+
+CREATE INDEX IF NOT EXISTS idx_tend_consistency_task_lease
+    ON consistency.tend_consistency_task (lease_expire_time)
+    WHERE task_status = 1;
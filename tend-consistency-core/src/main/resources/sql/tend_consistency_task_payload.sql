@@ -0,0 +1,10 @@
+-- 一致性任务入参表 (PostgreSQL) 用于 tend.consistency.store.payloadDedupEnabled=true
+-- 相同的任务入参只保存一份，任务表的 task_parameter 中保存 #sha256:{hash}，任务完成后引用数减一，减到0时删除
+CREATE TABLE IF NOT EXISTS consistency.tend_consistency_task_payload
+(
+    hash          CHAR(64)   NOT NULL PRIMARY KEY,
+    payload       TEXT       NOT NULL,
+    ref_count     INT        NOT NULL DEFAULT 0,
+    gmt_create    TIMESTAMP  NOT NULL DEFAULT now(),
+    gmt_modified  TIMESTAMP  NOT NULL DEFAULT now()
+);